@@ -0,0 +1,37 @@
+package nl.han.ica.icss.benchmarks;
+
+import nl.han.ica.icss.tools.StylesheetGenerator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Benchmark inputs: "level0" to "level3" are the example files bundled with the compiler,
+ * "synthetic-N" is a stylesheet of N stylerules from the {@link StylesheetGenerator} defaults.
+ */
+class Inputs {
+
+    private static final String SYNTHETIC = "synthetic-";
+
+    private Inputs() { }
+
+    static String load(String name) {
+        if (name.startsWith(SYNTHETIC)) {
+            return synthetic(Integer.parseInt(name.substring(SYNTHETIC.length())));
+        }
+        try (InputStream in = Inputs.class.getClassLoader().getResourceAsStream(name + ".icss")) {
+            if (in == null) {
+                throw new IllegalArgumentException("Unknown input: " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static String synthetic(int rules) {
+        return StylesheetGenerator.defaults().withRules(rules).generate();
+    }
+}
@@ -0,0 +1,179 @@
+package nl.han.ica.icss.benchmarks;
+
+import nl.han.ica.icss.CompileResult;
+import nl.han.ica.icss.ICSSCompiler;
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.checker.Checker;
+import nl.han.ica.icss.generator.Generator;
+import nl.han.ica.icss.parser.ASTListener;
+import nl.han.ica.icss.parser.FastLexer;
+import nl.han.ica.icss.parser.ICSSLexer;
+import nl.han.ica.icss.parser.ICSSParser;
+import nl.han.ica.icss.parser.RecursiveDescentParser;
+import nl.han.ica.icss.parser.SourceParser;
+import nl.han.ica.icss.transforms.CheckingEvaluator;
+import nl.han.ica.icss.transforms.Evaluator;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ConsoleErrorListener;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.IterativeParseTreeWalker;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every compiler phase on its own, and all of them together, on the bundled examples and on
+ * synthetic stylesheets of growing size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PhaseBenchmarks {
+
+    @Param({"level0", "level1", "level2", "level3", "synthetic-100", "synthetic-1000", "synthetic-10000"})
+    public String input;
+
+    private String source;
+    private ParseTree parseTree;
+    private AST checkedAST;
+    private AST transformedAST;
+    private final ICSSCompiler compiler = new ICSSCompiler();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        source = Inputs.load(input);
+        CompileResult result = compiler.compile(source);
+        if (!result.isSuccess()) {
+            throw new IllegalStateException(input + " does not compile: " + result.getErrors());
+        }
+        parseTree = newParser(source).stylesheet();
+
+        checkedAST = parseAST(source);
+        new Checker().check(checkedAST);
+        transformedAST = parseAST(source);
+        new Evaluator().apply(transformedAST);
+    }
+
+    /**
+     * The Evaluator rewrites the AST, so every invocation gets a fresh one.
+     */
+    @State(Scope.Thread)
+    public static class FreshAST {
+        AST ast;
+
+        @Setup(Level.Invocation)
+        public void setUp(PhaseBenchmarks benchmarks) {
+            ast = parseAST(benchmarks.source);
+        }
+    }
+
+    @Benchmark
+    public int lex() {
+        ICSSLexer lexer = new ICSSLexer(CharStreams.fromString(source));
+        lexer.removeErrorListeners();
+        int tokens = 0;
+        while (lexer.nextToken().getType() != Token.EOF) {
+            tokens++;
+        }
+        return tokens;
+    }
+
+    @Benchmark
+    public int lexFast() {
+        return new FastLexer(source.toCharArray()).tokenize(null);
+    }
+
+    @Benchmark
+    public ParseTree parse() {
+        return newParser(source).stylesheet();
+    }
+
+    /**
+     * SLL prediction alone, the first stage of {@link nl.han.ica.icss.parser.ParseMode#SLL_THEN_LL}.
+     */
+    @Benchmark
+    public ParseTree parseSll() {
+        ICSSParser parser = newParser(source);
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        return parser.stylesheet();
+    }
+
+    /**
+     * Lexing, parsing and building the AST in one go, to compare with lex + parse + astBuild.
+     */
+    @Benchmark
+    public AST parseRecursiveDescent() {
+        FastLexer lexer = new FastLexer(source.toCharArray());
+        lexer.tokenize(null);
+        return RecursiveDescentParser.parse(lexer);
+    }
+
+    /**
+     * Parsing without a parse tree while building the AST, from unbuffered streams.
+     */
+    @Benchmark
+    public AST parseStreaming() {
+        return SourceParser.parse(new StringReader(source), ConsoleErrorListener.INSTANCE);
+    }
+
+    @Benchmark
+    public AST astBuild() {
+        ASTListener listener = new ASTListener();
+        new IterativeParseTreeWalker().walk(listener, parseTree);
+        return listener.getAST();
+    }
+
+    @Benchmark
+    public AST check() {
+        new Checker().check(checkedAST);
+        return checkedAST;
+    }
+
+    @Benchmark
+    public AST evaluate(FreshAST fresh) {
+        new Evaluator().apply(fresh.ast);
+        return fresh.ast;
+    }
+
+    @Benchmark
+    public AST checkThenEvaluate(FreshAST fresh) {
+        new Checker().check(fresh.ast);
+        new Evaluator().apply(fresh.ast);
+        return fresh.ast;
+    }
+
+    @Benchmark
+    public AST checkAndEvaluateFused(FreshAST fresh) {
+        new CheckingEvaluator().apply(fresh.ast);
+        return fresh.ast;
+    }
+
+    @Benchmark
+    public String generate() {
+        return new Generator().generate(transformedAST);
+    }
+
+    @Benchmark
+    public CompileResult endToEnd() {
+        return compiler.compile(source);
+    }
+
+    private static ICSSParser newParser(String source) {
+        ICSSLexer lexer = new ICSSLexer(CharStreams.fromString(source));
+        lexer.removeErrorListener(ConsoleErrorListener.INSTANCE);
+        ICSSParser parser = new ICSSParser(new CommonTokenStream(lexer));
+        parser.removeErrorListener(ConsoleErrorListener.INSTANCE);
+        return parser;
+    }
+
+    private static AST parseAST(String source) {
+        return SourceParser.parse(CharStreams.fromString(source), ConsoleErrorListener.INSTANCE);
+    }
+}
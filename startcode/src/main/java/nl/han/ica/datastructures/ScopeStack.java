@@ -0,0 +1,73 @@
+package nl.han.ica.datastructures;
+
+import java.util.Arrays;
+
+/**
+ * Nested scopes that map small int ids to values. Every id has one slot holding its innermost value,
+ * so a lookup is an array access however many scopes are open. Overwritten values are kept on an undo log
+ * and restored when their scope is popped.
+ *
+ * A null value means the id is not defined.
+ */
+public class ScopeStack<T> {
+
+    private Object[] values = new Object[64];
+    private int[] undoIds = new int[64];
+    private Object[] undoValues = new Object[64];
+    private int undoSize = 0;
+    private int[] scopeStarts = new int[16];
+    private int depth = 0;
+
+    /**
+     * Opens a new innermost scope.
+     */
+    public void push() {
+        if (depth == scopeStarts.length) {
+            scopeStarts = Arrays.copyOf(scopeStarts, depth * 2);
+        }
+        scopeStarts[depth++] = undoSize;
+    }
+
+    /**
+     * Closes the innermost scope, restoring the values its definitions replaced.
+     */
+    public void pop() {
+        int start = scopeStarts[--depth];
+        while (undoSize > start) {
+            undoSize--;
+            values[undoIds[undoSize]] = undoValues[undoSize];
+            undoValues[undoSize] = null;
+        }
+    }
+
+    /**
+     * Defines the id in the innermost scope.
+     */
+    public void put(int id, T value) {
+        if (id >= values.length) {
+            values = Arrays.copyOf(values, Math.max(id + 1, values.length * 2));
+        }
+        if (undoSize == undoIds.length) {
+            undoIds = Arrays.copyOf(undoIds, undoSize * 2);
+            undoValues = Arrays.copyOf(undoValues, undoSize * 2);
+        }
+        undoIds[undoSize] = id;
+        undoValues[undoSize++] = values[id];
+        values[id] = value;
+    }
+
+    /**
+     * The value of the id in the innermost scope that defines it, or null.
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int id) {
+        return id < values.length ? (T) values[id] : null;
+    }
+
+    /**
+     * The number of open scopes.
+     */
+    public int depth() {
+        return depth;
+    }
+}
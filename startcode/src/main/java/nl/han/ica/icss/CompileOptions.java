@@ -0,0 +1,135 @@
+package nl.han.ica.icss;
+
+import nl.han.ica.icss.parser.LexerBackend;
+import nl.han.ica.icss.parser.ParseMode;
+import nl.han.ica.icss.parser.ParserBackend;
+
+/**
+ * Immutable settings for a single {@link ICSSCompiler#compile} call. Use {@link #defaults()} and
+ * the with-methods to derive variations; instances can be shared between threads.
+ */
+public final class CompileOptions {
+
+    private static final CompileOptions DEFAULTS = new CompileOptions(true, true, false, 0, false,
+            ParseMode.SLL_THEN_LL, LexerBackend.ANTLR, ParserBackend.ANTLR);
+
+    private final boolean transform;
+    private final boolean generate;
+    private final boolean fused;
+    private final int errorLimit;
+    private final boolean failFast;
+    private final ParseMode parseMode;
+    private final LexerBackend lexerBackend;
+    private final ParserBackend parserBackend;
+
+    private CompileOptions(boolean transform, boolean generate, boolean fused, int errorLimit, boolean failFast,
+                           ParseMode parseMode, LexerBackend lexerBackend, ParserBackend parserBackend) {
+        this.transform = transform;
+        this.generate = generate;
+        this.fused = fused;
+        this.errorLimit = errorLimit;
+        this.failFast = failFast;
+        this.parseMode = parseMode;
+        this.lexerBackend = lexerBackend;
+        this.parserBackend = parserBackend;
+    }
+
+    /**
+     * Parse, check, transform and generate.
+     */
+    public static CompileOptions defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Whether to evaluate expressions and if-clauses after a successful check.
+     */
+    public boolean isTransform() {
+        return transform;
+    }
+    /**
+     * Whether to generate CSS after a successful transform.
+     */
+    public boolean isGenerate() {
+        return generate;
+    }
+
+    /**
+     * Whether to check and transform in one pass with the {@link nl.han.ica.icss.transforms.CheckingEvaluator}
+     * instead of running the Checker and the Evaluator one after the other. Only used when transforming.
+     */
+    public boolean isFused() {
+        return fused;
+    }
+
+    /**
+     * Maximum number of errors to report: lexing, parsing and checking stop as soon as it is reached.
+     * 1 when failing fast, 0 for no limit.
+     */
+    public int getErrorLimit() {
+        return failFast ? 1 : errorLimit;
+    }
+    /**
+     * Whether to stop at the first error.
+     */
+    public boolean isFailFast() {
+        return failFast;
+    }
+
+    /**
+     * How the parser predicts alternatives; {@link ParseMode#SLL_THEN_LL} by default.
+     */
+    public ParseMode getParseMode() {
+        return parseMode;
+    }
+    /**
+     * Which lexer to use; the generated {@link LexerBackend#ANTLR} lexer by default.
+     */
+    public LexerBackend getLexerBackend() {
+        return lexerBackend;
+    }
+    /**
+     * Which parser to use; the generated {@link ParserBackend#ANTLR} parser by default.
+     */
+    public ParserBackend getParserBackend() {
+        return parserBackend;
+    }
+
+    public CompileOptions withTransform(boolean transform) {
+        return new CompileOptions(transform, generate, fused, errorLimit, failFast, parseMode, lexerBackend, parserBackend);
+    }
+    public CompileOptions withGenerate(boolean generate) {
+        return new CompileOptions(transform, generate, fused, errorLimit, failFast, parseMode, lexerBackend, parserBackend);
+    }
+    public CompileOptions withFused(boolean fused) {
+        return new CompileOptions(transform, generate, fused, errorLimit, failFast, parseMode, lexerBackend, parserBackend);
+    }
+    public CompileOptions withErrorLimit(int errorLimit) {
+        if (errorLimit < 0) {
+            throw new IllegalArgumentException("Error limit must not be negative: " + errorLimit);
+        }
+        return new CompileOptions(transform, generate, fused, errorLimit, failFast, parseMode, lexerBackend, parserBackend);
+    }
+    public CompileOptions withFailFast(boolean failFast) {
+        return new CompileOptions(transform, generate, fused, errorLimit, failFast, parseMode, lexerBackend, parserBackend);
+    }
+    public CompileOptions withParseMode(ParseMode parseMode) {
+        return new CompileOptions(transform, generate, fused, errorLimit, failFast, parseMode, lexerBackend, parserBackend);
+    }
+    public CompileOptions withLexerBackend(LexerBackend lexerBackend) {
+        return new CompileOptions(transform, generate, fused, errorLimit, failFast, parseMode, lexerBackend, parserBackend);
+    }
+    public CompileOptions withParserBackend(ParserBackend parserBackend) {
+        return new CompileOptions(transform, generate, fused, errorLimit, failFast, parseMode, lexerBackend, parserBackend);
+    }
+
+    /**
+     * Lists every setting; two options with the same string compile identically.
+     */
+    @Override
+    public String toString() {
+        return "transform=" + transform + ",generate=" + generate + ",fused=" + fused
+                + ",errorLimit=" + errorLimit + ",failFast=" + failFast + ",parseMode=" + parseMode + ",lexerBackend=" + lexerBackend
+                + ",parserBackend=" + parserBackend;
+    }
+}
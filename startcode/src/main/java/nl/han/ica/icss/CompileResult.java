@@ -0,0 +1,70 @@
+package nl.han.ica.icss;
+
+import nl.han.ica.icss.ast.AST;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outcome of one compilation: the AST, all diagnostics, the generated CSS and the time spent per phase.
+ */
+public final class CompileResult {
+
+    private final AST ast;
+    private final List<String> errors;
+    private final String css;
+    private final Map<Phase, Long> timings;
+    private final boolean truncated;
+
+    public CompileResult(AST ast, List<String> errors, String css, Map<Phase, Long> timings) {
+        this(ast, errors, css, timings, false);
+    }
+
+    /**
+     * @param truncated whether compilation stopped at the error limit, see {@link #isTruncated()}
+     */
+    public CompileResult(AST ast, List<String> errors, String css, Map<Phase, Long> timings, boolean truncated) {
+        this.ast = ast;
+        this.errors = Collections.unmodifiableList(new ArrayList<>(errors));
+        this.css = css;
+        this.timings = Collections.unmodifiableMap(new EnumMap<>(timings));
+        this.truncated = truncated;
+    }
+
+    /**
+     * The AST after the last phase that ran. It is owned by this result and should not be modified.
+     */
+    public AST getAST() {
+        return ast;
+    }
+    public List<String> getErrors() {
+        return errors;
+    }
+    /**
+     * The generated CSS, or null when compilation stopped before generating.
+     */
+    public String getCss() {
+        return css;
+    }
+    /**
+     * Wall time in nanoseconds of each phase that ran.
+     */
+    public Map<Phase, Long> getTimings() {
+        return timings;
+    }
+    public long getTiming(Phase phase) {
+        return timings.getOrDefault(phase, 0L);
+    }
+    /**
+     * Whether compilation stopped at the error limit of the options; the input may have more errors.
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+    public boolean isSuccess() {
+        return errors.isEmpty();
+    }
+}
@@ -0,0 +1,181 @@
+package nl.han.ica.icss;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.cache.CompilationCache;
+import nl.han.ica.icss.checker.Checker;
+import nl.han.ica.icss.checker.SemanticError;
+import nl.han.ica.icss.generator.Generator;
+import nl.han.ica.icss.metrics.MetricsRegistry;
+import nl.han.ica.icss.metrics.PhaseTimer;
+import nl.han.ica.icss.parser.ErrorLimitReachedException;
+import nl.han.ica.icss.parser.MappedCharStream;
+import nl.han.ica.icss.parser.SourceParser;
+import nl.han.ica.icss.parser.SyntaxErrorCollector;
+import nl.han.ica.icss.transforms.CheckingEvaluator;
+import nl.han.ica.icss.transforms.Evaluator;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Stateless alternative to {@link Pipeline}: every call to compile runs all phases on its own
+ * AST and error list, so one instance can be shared by any number of threads.
+ */
+public class ICSSCompiler {
+
+    /**
+     * Part of every cache key: the project version, which changes with every release of the compiler.
+     */
+    public static final String VERSION = readVersion();
+
+    private final CompilationCache cache;
+    private final MetricsRegistry metrics;
+
+    public ICSSCompiler() {
+        this(null, null);
+    }
+
+    /**
+     * Creates a compiler that looks up results in the given cache before compiling, and stores them afterwards.
+     * Results served from the cache have no AST and no timings.
+     */
+    public ICSSCompiler(CompilationCache cache) {
+        this(cache, null);
+    }
+
+    /**
+     * @param cache cache to consult before compiling, or null
+     * @param metrics registry in which every phase that runs is recorded, or null
+     */
+    public ICSSCompiler(CompilationCache cache, MetricsRegistry metrics) {
+        this.cache = cache;
+        this.metrics = metrics;
+    }
+
+    public CompileResult compile(String source) {
+        return compile(source, CompileOptions.defaults());
+    }
+
+    public CompileResult compile(String source, CompileOptions options) {
+        if (cache == null) {
+            return compileUncached(CharStreams.fromString(source), options);
+        }
+        String key = CompilationCache.key(source, options);
+        CompileResult result = cache.get(key);
+        if (result == null) {
+            result = compileUncached(CharStreams.fromString(source), options);
+            cache.put(key, result);
+        }
+        return result;
+    }
+
+    public CompileResult compile(Path source) throws IOException {
+        return compile(source, CompileOptions.defaults());
+    }
+
+    /**
+     * Compiles a file. Without a cache the file is memory-mapped instead of read into a String,
+     * see {@link MappedCharStream}; with a cache it is read, as its content is part of the key.
+     */
+    public CompileResult compile(Path source, CompileOptions options) throws IOException {
+        if (cache != null) {
+            return compile(Files.readString(source, StandardCharsets.UTF_8), options);
+        }
+        return compileUncached(MappedCharStream.fromPath(source), options);
+    }
+
+    private CompileResult compileUncached(CharStream source, CompileOptions options) {
+        List<String> errors = new ArrayList<>();
+        Map<Phase, Long> timings = new EnumMap<>(Phase.class);
+        int errorLimit = options.getErrorLimit();
+
+        PhaseTimer timer = PhaseTimer.start(metrics, Phase.PARSE);
+        AST ast;
+        boolean truncated = false;
+        try {
+            ast = SourceParser.parse(source, new SyntaxErrorCollector(errors, errorLimit), options.getParseMode(),
+                    options.getLexerBackend(), options.getParserBackend());
+        } catch (ErrorLimitReachedException e) {
+            ast = new AST();
+            truncated = true;
+        } catch (RecognitionException e) {
+            ast = new AST();
+            errors.add(e.getMessage());
+        } catch (ParseCancellationException e) {
+            ast = new AST();
+            errors.add("Syntax error");
+        }
+        long nodes = PhaseTimer.countNodes(metrics, ast);
+        timings.put(Phase.PARSE, timer.stop(nodes));
+        if (!errors.isEmpty()) {
+            return new CompileResult(ast, errors, null, timings, truncated);
+        }
+
+        //The fused pass is recorded as the check phase
+        boolean fused = options.isFused() && options.isTransform();
+        timer = PhaseTimer.start(metrics, Phase.CHECK);
+        if (fused) {
+            CheckingEvaluator checkingEvaluator = new CheckingEvaluator(errorLimit);
+            checkingEvaluator.apply(ast);
+            truncated = checkingEvaluator.isTruncated();
+        } else {
+            Checker checker = new Checker(errorLimit);
+            checker.check(ast);
+            truncated = checker.isTruncated();
+        }
+        for (SemanticError error : ast.getErrors(errorLimit)) {
+            errors.add(error.toString());
+        }
+        timings.put(Phase.CHECK, timer.stop(nodes));
+        if (!errors.isEmpty() || !options.isTransform()) {
+            return new CompileResult(ast, errors, null, timings, truncated);
+        }
+
+        if (!fused) {
+            timer = PhaseTimer.start(metrics, Phase.TRANSFORM);
+            new Evaluator().apply(ast);
+            timings.put(Phase.TRANSFORM, timer.stop(nodes));
+        }
+        if (!options.isGenerate()) {
+            return new CompileResult(ast, errors, null, timings);
+        }
+
+        timer = PhaseTimer.start(metrics, Phase.GENERATE);
+        String css = new Generator().generate(ast);
+        timings.put(Phase.GENERATE, timer.stop(nodes));
+        return new CompileResult(ast, errors, css, timings);
+    }
+
+    /*
+     Maven writes the project version into this resource. Builds that skip the filtering, such as some IDEs, fall back
+     to the version in the jar manifest, if any.
+     */
+    private static String readVersion() {
+        try (InputStream in = ICSSCompiler.class.getResourceAsStream("version.properties")) {
+            if (in != null) {
+                Properties properties = new Properties();
+                properties.load(in);
+                String version = properties.getProperty("version");
+                if (version != null && !version.startsWith("${")) {
+                    return version;
+                }
+            }
+        } catch (IOException e) {
+            //Use the fallback below
+        }
+        String version = ICSSCompiler.class.getPackage().getImplementationVersion();
+        return version == null ? "unknown" : version;
+    }
+}
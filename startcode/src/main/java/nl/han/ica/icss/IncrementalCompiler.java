@@ -0,0 +1,294 @@
+package nl.han.ica.icss;
+
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.types.ExpressionType;
+import nl.han.ica.icss.checker.Checker;
+import nl.han.ica.icss.checker.SemanticError;
+import nl.han.ica.icss.generator.Generator;
+import nl.han.ica.icss.parser.ICSSLexer;
+import nl.han.ica.icss.parser.SourceParser;
+import nl.han.ica.icss.parser.SyntaxErrorCollector;
+import nl.han.ica.icss.parser.TopLevelSegmenter;
+import nl.han.ica.icss.transforms.Evaluator;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+
+import java.util.*;
+
+/**
+ * Recompiles successive versions of one document, reusing work at the granularity of its
+ * top-level variable assignments and stylerules.
+ *
+ * Every top-level statement is fingerprinted by its tokens. A statement whose fingerprint was seen in
+ * the previous version is not parsed again, and its check and evaluation results are reused as long as
+ * the global variables it references still have the same type and value. Inputs that cannot be split
+ * into valid statements are handed to a regular {@link ICSSCompiler}, so diagnostics stay the same.
+ *
+ * An IncrementalCompiler holds the state of one document and is not thread-safe.
+ */
+public class IncrementalCompiler {
+
+    private final CompileOptions options;
+    private final ICSSCompiler compiler = new ICSSCompiler();
+    private final Checker checker = new Checker();
+    private final Generator generator = new Generator();
+
+    //Segments of the previous version, by fingerprint (a statement may occur more than once)
+    private HashMap<String, ArrayDeque<Segment>> segments = new HashMap<>();
+    private int reusedSegments;
+    private int recompiledSegments;
+
+    public IncrementalCompiler() {
+        this(CompileOptions.defaults());
+    }
+
+    public IncrementalCompiler(CompileOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * Number of top-level statements of the last compile that needed no work at all.
+     */
+    public int getReusedSegments() {
+        return reusedSegments;
+    }
+    /**
+     * Number of top-level statements of the last compile that were parsed, checked or evaluated again.
+     */
+    public int getRecompiledSegments() {
+        return recompiledSegments;
+    }
+
+    public CompileResult compile(String source) {
+        List<String> errors = new ArrayList<>();
+        Map<Phase, Long> timings = new EnumMap<>(Phase.class);
+        reusedSegments = recompiledSegments = 0;
+
+        //Lex and split into statements, parsing only the statements that were not seen before
+        long start = System.nanoTime();
+        ICSSLexer lexer = new ICSSLexer(CharStreams.fromString(source));
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(new SyntaxErrorCollector(errors));
+        TopLevelSegmenter segmenter = new TopLevelSegmenter(lexer);
+
+        HashMap<String, ArrayDeque<Segment>> current = new HashMap<>();
+        List<Segment> order = new ArrayList<>();
+        Set<Segment> changed = new HashSet<>();
+        for (List<Token> tokens = segmenter.next(); tokens != null; tokens = segmenter.next()) {
+            String fingerprint = TopLevelSegmenter.fingerprint(tokens);
+            Segment segment = take(segments, fingerprint);
+            if (segment == null) {
+                AST statement = parseStatement(new ListTokenSource(tokens));
+                if (statement == null) {
+                    return compiler.compile(source, options);
+                }
+                segment = new Segment(fingerprint, statement);
+                changed.add(segment);
+            }
+            order.add(segment);
+            current.computeIfAbsent(fingerprint, key -> new ArrayDeque<>()).add(segment);
+        }
+        if (!errors.isEmpty() || order.isEmpty()) {
+            return compiler.compile(source, options);
+        }
+        segments = current;
+        timings.put(Phase.PARSE, System.nanoTime() - start);
+
+        start = System.nanoTime();
+        HashMap<String, ExpressionType> types = new HashMap<>();
+        for (Segment segment : order) {
+            if (!segment.isCheckedAgainst(types)) {
+                segment.check(types);
+                changed.add(segment);
+            } else if (segment.assignedName != null) {
+                types.put(segment.assignedName, segment.assignedType);
+            }
+            errors.addAll(segment.errors);
+        }
+        timings.put(Phase.CHECK, System.nanoTime() - start);
+        if (!errors.isEmpty() || !options.isTransform()) {
+            countSegments(order, changed);
+            ArrayList<ASTNode> body = new ArrayList<>();
+            for (Segment segment : order) {
+                body.add(segment.checkedNode);
+            }
+            return new CompileResult(new AST(new Stylesheet(body)), errors, null, timings);
+        }
+
+        start = System.nanoTime();
+        HashMap<String, Literal> values = new HashMap<>();
+        Evaluator evaluator = new Evaluator();
+        ArrayList<ASTNode> body = new ArrayList<>();
+        for (Segment segment : order) {
+            if (!segment.isEvaluatedAgainst(values)) {
+                segment.evaluate(values, evaluator);
+                changed.add(segment);
+            } else if (segment.assignedName != null) {
+                values.put(segment.assignedName, segment.assignedValue);
+            }
+            //Like the Evaluator, drop top-level variable assignments from the transformed stylesheet
+            if (segment.evaluatedNode instanceof Stylerule) {
+                body.add(segment.evaluatedNode);
+            }
+        }
+        timings.put(Phase.TRANSFORM, System.nanoTime() - start);
+        countSegments(order, changed);
+        AST ast = new AST(new Stylesheet(body));
+        if (!options.isGenerate()) {
+            return new CompileResult(ast, errors, null, timings);
+        }
+
+        start = System.nanoTime();
+        StringBuilder css = new StringBuilder();
+        for (Segment segment : order) {
+            if (segment.evaluatedNode instanceof Stylerule) {
+                if (segment.css == null) {
+                    ArrayList<ASTNode> rule = new ArrayList<>();
+                    rule.add(segment.evaluatedNode);
+                    segment.css = generator.generate(new AST(new Stylesheet(rule)));
+                }
+                css.append(segment.css);
+            }
+        }
+        timings.put(Phase.GENERATE, System.nanoTime() - start);
+        return new CompileResult(ast, errors, css.toString(), timings);
+    }
+
+    private void countSegments(List<Segment> order, Set<Segment> changed) {
+        recompiledSegments = changed.size();
+        reusedSegments = order.size() - changed.size();
+    }
+
+    private static Segment take(HashMap<String, ArrayDeque<Segment>> segments, String fingerprint) {
+        ArrayDeque<Segment> candidates = segments.get(fingerprint);
+        return candidates == null ? null : candidates.poll();
+    }
+
+    /*
+     Parses the tokens of a single statement. Returns null when they do not form exactly one valid statement.
+     */
+    private static AST parseStatement(TokenSource tokens) {
+        List<String> errors = new ArrayList<>();
+        AST ast = SourceParser.parse(tokens, new SyntaxErrorCollector(errors));
+        if (!errors.isEmpty() || ast.root.body.size() != 1) {
+            return null;
+        }
+        return ast;
+    }
+
+    private static void collectReferences(ASTNode node, Set<String> names) {
+        //A stack instead of recursion, as long expressions make deep trees
+        ArrayDeque<ASTNode> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            ASTNode next = stack.pop();
+            if (next instanceof VariableReference) {
+                names.add(((VariableReference) next).name);
+            }
+            for (int i = 0; i < next.childCount(); i++) {
+                if (next.childAt(i) != null) {
+                    stack.push(next.childAt(i));
+                }
+            }
+        }
+    }
+
+    /*
+     One top-level statement together with what it produced during its last check and evaluation,
+     and the global variables those results depended on.
+     */
+    private class Segment {
+        final String fingerprint;
+        final String assignedName;
+        final Set<String> references = new HashSet<>();
+
+        ASTNode checkedNode;
+        SymbolTable checkedSymbols;
+        boolean pristine = true;
+        Map<String, ExpressionType> typeDependencies;
+        List<String> errors;
+        ExpressionType assignedType;
+
+        ASTNode evaluatedNode;
+        Map<String, Literal> valueDependencies;
+        Literal assignedValue;
+        String css;
+
+        Segment(String fingerprint, AST statement) {
+            ASTNode node = statement.root.body.get(0);
+            this.fingerprint = fingerprint;
+            this.checkedNode = node;
+            this.checkedSymbols = statement.symbols;
+            this.assignedName = node instanceof VariableAssignment ? ((VariableAssignment) node).name.name : null;
+            collectReferences(node, references);
+        }
+
+        boolean isCheckedAgainst(Map<String, ExpressionType> types) {
+            return typeDependencies != null && dependenciesMatch(typeDependencies, types);
+        }
+
+        void check(HashMap<String, ExpressionType> types) {
+            //Errors of an earlier check are still attached to the nodes, so start from a fresh parse
+            if (!pristine) {
+                AST statement = parseStatement(lexStatement());
+                checkedNode = statement.root.body.get(0);
+                checkedSymbols = statement.symbols;
+            }
+            pristine = false;
+            typeDependencies = snapshot(types);
+            checker.checkTopLevel(checkedNode, checkedSymbols, types);
+            assignedType = assignedName == null ? null : types.get(assignedName);
+
+            errors = new ArrayList<>();
+            ArrayList<ASTNode> body = new ArrayList<>();
+            body.add(checkedNode);
+            for (SemanticError error : new AST(new Stylesheet(body)).getErrors()) {
+                errors.add(error.toString());
+            }
+            //A new check invalidates the evaluation
+            valueDependencies = null;
+        }
+
+        boolean isEvaluatedAgainst(Map<String, Literal> values) {
+            return valueDependencies != null && dependenciesMatch(valueDependencies, values);
+        }
+
+        void evaluate(HashMap<String, Literal> values, Evaluator evaluator) {
+            //The Evaluator rewrites the tree in place, so it works on its own copy of the statement
+            AST statement = parseStatement(lexStatement());
+            evaluatedNode = statement.root.body.get(0);
+            valueDependencies = snapshot(values);
+            evaluator.applyTopLevel(evaluatedNode, statement.symbols, values);
+            assignedValue = assignedName == null ? null : values.get(assignedName);
+            css = null;
+        }
+
+        /*
+         The fingerprint holds the token texts separated by spaces, which lexes to the same tokens again.
+         */
+        private TokenSource lexStatement() {
+            ICSSLexer lexer = new ICSSLexer(CharStreams.fromString(fingerprint));
+            lexer.removeErrorListeners();
+            return lexer;
+        }
+
+        private <T> Map<String, T> snapshot(Map<String, T> scope) {
+            Map<String, T> dependencies = new HashMap<>();
+            for (String name : references) {
+                dependencies.put(name, scope.get(name));
+            }
+            return dependencies;
+        }
+
+        private <T> boolean dependenciesMatch(Map<String, T> dependencies, Map<String, T> scope) {
+            for (Map.Entry<String, T> dependency : dependencies.entrySet()) {
+                if (!Objects.equals(dependency.getValue(), scope.get(dependency.getKey()))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package nl.han.ica.icss;
+
+/**
+ * The stages of the compiler, in the order in which they run.
+ */
+public enum Phase {
+    PARSE,
+    CHECK,
+    TRANSFORM,
+    GENERATE
+}
@@ -4,31 +4,60 @@ import nl.han.ica.icss.ast.AST;
 import nl.han.ica.icss.checker.Checker;
 import nl.han.ica.icss.checker.SemanticError;
 import nl.han.ica.icss.generator.Generator;
-import nl.han.ica.icss.parser.ASTListener;
-import nl.han.ica.icss.parser.ICSSLexer;
-import nl.han.ica.icss.parser.ICSSParser;
+import nl.han.ica.icss.metrics.MetricsRegistry;
+import nl.han.ica.icss.metrics.PhaseTimer;
+import nl.han.ica.icss.parser.ErrorLimitReachedException;
+import nl.han.ica.icss.parser.LexerBackend;
+import nl.han.ica.icss.parser.MappedCharStream;
+import nl.han.ica.icss.parser.ParseMode;
+import nl.han.ica.icss.parser.ParserBackend;
+import nl.han.ica.icss.parser.SourceParser;
 import nl.han.ica.icss.transforms.Evaluator;
 import org.antlr.v4.runtime.*;
 import org.antlr.v4.runtime.atn.ATNConfigSet;
 import org.antlr.v4.runtime.dfa.DFA;
 import org.antlr.v4.runtime.misc.ParseCancellationException;
-import org.antlr.v4.runtime.tree.ParseTree;
-import org.antlr.v4.runtime.tree.ParseTreeWalker;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.List;
+import java.util.function.Supplier;
 
 public class Pipeline implements ANTLRErrorListener {
 
     private AST ast;
+    //Counted once after parsing, for the metrics of every phase
+    private long nodeCount = 0;
     private boolean parsed = false;
     private boolean checked = false;
     private boolean transformed = false;
     private List<String> errors;
-
+    private final MetricsRegistry metrics;
+    private int errorLimit = 0;
+    private boolean truncated = false;
+    private ParseMode parseMode = ParseMode.SLL_THEN_LL;
+    private LexerBackend lexerBackend = LexerBackend.ANTLR;
+    private ParserBackend parserBackend = ParserBackend.ANTLR;
+
+    /**
+     * A pipeline that records no metrics.
+     */
     public Pipeline() {
+        this(null);
+    }
+
+    /**
+     * @param metrics registry in which every phase is recorded, or null to not record anything
+     */
+    public Pipeline(MetricsRegistry metrics) {
         errors = new ArrayList<>();
+        this.metrics = metrics;
     }
 
     public AST getAST() {
@@ -37,6 +66,36 @@ public class Pipeline implements ANTLRErrorListener {
     public List<String> getErrors() {
         return errors;
     }
+    /**
+     * Stops parsing and checking once this many errors were reported; 0, the default, means no limit.
+     */
+    public void setErrorLimit(int errorLimit) {
+        this.errorLimit = errorLimit;
+    }
+    /**
+     * How to parse; {@link ParseMode#SLL_THEN_LL}, the default, gives the same result and errors as full LL.
+     */
+    public void setParseMode(ParseMode parseMode) {
+        this.parseMode = parseMode;
+    }
+    /**
+     * Which lexer to use; {@link LexerBackend#ANTLR}, the reference, by default.
+     */
+    public void setLexerBackend(LexerBackend lexerBackend) {
+        this.lexerBackend = lexerBackend;
+    }
+    /**
+     * Which parser to use; {@link ParserBackend#ANTLR}, the reference, by default.
+     */
+    public void setParserBackend(ParserBackend parserBackend) {
+        this.parserBackend = parserBackend;
+    }
+    /**
+     * Whether the last parse or check stopped at the error limit.
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
     public boolean isParsed() {
         return parsed;
     }
@@ -47,30 +106,43 @@ public class Pipeline implements ANTLRErrorListener {
         return transformed;
     }
 
+    /**
+     * With {@link ParserBackend#ANTLR_STREAMING} the input is read through a Reader, so no copy of it
+     * and no tokens or parse tree are kept in memory.
+     */
     public void parseString(String input) {
+        if (parserBackend == ParserBackend.ANTLR_STREAMING) {
+            parse(() -> SourceParser.parse(new StringReader(input), this));
+        } else {
+            parse(() -> SourceParser.parse(CharStreams.fromString(input), this, parseMode, lexerBackend, parserBackend));
+        }
+    }
+
+    /**
+     * Parses a file without reading it into a String first, see {@link MappedCharStream}, or by streaming it
+     * with {@link ParserBackend#ANTLR_STREAMING}.
+     */
+    public void parseFile(Path input) throws IOException {
+        if (parserBackend == ParserBackend.ANTLR_STREAMING) {
+            try (Reader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+                parse(() -> SourceParser.parse(reader, this));
+            }
+        } else {
+            CharStream stream = MappedCharStream.fromPath(input);
+            parse(() -> SourceParser.parse(stream, this, parseMode, lexerBackend, parserBackend));
+        }
+    }
 
-        //Lex (with Antlr's generated lexer)
-        CharStream inputStream = CharStreams.fromString(input);
-        ICSSLexer lexer = new ICSSLexer(inputStream);
-        lexer.removeErrorListeners();
-        lexer.addErrorListener(this);
+    private void parse(Supplier<AST> parser) {
         errors.clear();
+        truncated = false;
+        PhaseTimer timer = PhaseTimer.start(metrics, Phase.PARSE);
         try {
-            CommonTokenStream tokens = new CommonTokenStream(lexer);
-
-            //Parse (with Antlr's generated parser)
-            ICSSParser parser = new ICSSParser(tokens);
-            parser.removeErrorListeners();
-            parser.addErrorListener(this);
-
-            ParseTree parseTree = parser.stylesheet();
-
-            //Extract AST from the Antlr parse tree
-            ASTListener listener = new ASTListener();
-            ParseTreeWalker walker = new ParseTreeWalker();
-            walker.walk(listener, parseTree);
+            this.ast = parser.get();
 
-            this.ast = listener.getAST();
+        } catch (ErrorLimitReachedException e) {
+            this.ast = new AST();
+            truncated = true;
 
         } catch (RecognitionException e) {
             this.ast = new AST();
@@ -80,6 +152,8 @@ public class Pipeline implements ANTLRErrorListener {
             this.ast = new AST();
             errors.add("Syntax error");
         }
+        nodeCount = PhaseTimer.countNodes(metrics, ast);
+        timer.stop(nodeCount);
         parsed = errors.isEmpty();
         checked = transformed = false;
     }
@@ -87,14 +161,18 @@ public class Pipeline implements ANTLRErrorListener {
             if(ast == null)
                 return false;
 
-           (new Checker()).check(this.ast);
+           PhaseTimer timer = PhaseTimer.start(metrics, Phase.CHECK);
+           Checker checker = new Checker(errorLimit);
+           checker.check(this.ast);
+           truncated = checker.isTruncated();
 
-            ArrayList<SemanticError> errors = this.ast.getErrors();
+            ArrayList<SemanticError> errors = this.ast.getErrors(errorLimit);
             if (!errors.isEmpty()) {
                 for (SemanticError e : errors) {
                     this.errors.add(e.toString());
                 }
             }
+            timer.stop(nodeCount);
 
             checked = errors.isEmpty();
             transformed = false;
@@ -109,14 +187,27 @@ public class Pipeline implements ANTLRErrorListener {
         if(ast == null)
             return;
 
+        PhaseTimer timer = PhaseTimer.start(metrics, Phase.TRANSFORM);
         (new Evaluator()).apply(ast);
-
+        timer.stop(nodeCount);
 
         transformed = errors.isEmpty();
     }
     public String generate() {
+        PhaseTimer timer = PhaseTimer.start(metrics, Phase.GENERATE);
         Generator generator = new Generator();
-        return generator.generate(ast);
+        String css = generator.generate(ast);
+        timer.stop(nodeCount);
+        return css;
+    }
+
+    /**
+     * Writes the CSS to the sink instead of returning it, for large outputs.
+     */
+    public void generate(Appendable out) throws IOException {
+        PhaseTimer timer = PhaseTimer.start(metrics, Phase.GENERATE);
+        new Generator().generate(ast, out);
+        timer.stop(nodeCount);
     }
 
     //Catch ANTLR errors
@@ -139,5 +230,8 @@ public class Pipeline implements ANTLRErrorListener {
     public void syntaxError(Recognizer<?, ?> arg0, Object arg1, int arg2,
                             int arg3, String arg4, RecognitionException arg5) {
         errors.add("Syntax error: " + arg4);
+        if (errorLimit > 0 && errors.size() >= errorLimit) {
+            throw new ErrorLimitReachedException(errorLimit);
+        }
     }
 }
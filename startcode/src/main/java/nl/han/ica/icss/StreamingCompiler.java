@@ -0,0 +1,121 @@
+package nl.han.ica.icss;
+
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.types.ExpressionType;
+import nl.han.ica.icss.checker.Checker;
+import nl.han.ica.icss.checker.SemanticError;
+import nl.han.ica.icss.generator.Generator;
+import nl.han.ica.icss.parser.ErrorLimitReachedException;
+import nl.han.ica.icss.parser.ICSSLexer;
+import nl.han.ica.icss.parser.SourceParser;
+import nl.han.ica.icss.parser.StreamingCharStream;
+import nl.han.ica.icss.parser.SyntaxErrorCollector;
+import nl.han.ica.icss.parser.TopLevelSegmenter;
+import nl.han.ica.icss.transforms.Evaluator;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenFactory;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.Token;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.*;
+
+/**
+ * Compiles a stylesheet one top-level statement at a time, writing the CSS of every stylerule as soon as
+ * it is evaluated. Only the global variables and the statement being compiled are kept in memory, so the
+ * memory needed is bounded by the largest stylerule instead of the size of the input.
+ *
+ * The diagnostics are those of {@link ICSSCompiler}, except that syntax errors are reported per statement,
+ * so error recovery can word them differently. CSS is written until the first error is found; the output
+ * is only complete when the result has no errors. With an error limit the compile stops at the limit,
+ * even when a later statement has a syntax error. Results have no AST and no CSS string.
+ *
+ * A StreamingCompiler keeps no state between calls and can be shared between threads.
+ */
+public class StreamingCompiler {
+
+    private final CompileOptions options;
+
+    public StreamingCompiler() {
+        this(CompileOptions.defaults());
+    }
+
+    public StreamingCompiler(CompileOptions options) {
+        this.options = options;
+    }
+
+    public CompileResult compile(Reader source, Appendable out) throws IOException {
+        List<String> syntaxErrors = new ArrayList<>();
+        List<String> semanticErrors = new ArrayList<>();
+        Map<Phase, Long> timings = new EnumMap<>(Phase.class);
+        int errorLimit = options.getErrorLimit();
+
+        //Copy the token texts, the characters themselves are discarded by the unbuffered stream
+        ICSSLexer lexer = new ICSSLexer(new StreamingCharStream(source));
+        lexer.setTokenFactory(new CommonTokenFactory(true));
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(new SyntaxErrorCollector(syntaxErrors, errorLimit));
+        TopLevelSegmenter segmenter = new TopLevelSegmenter(lexer);
+
+        HashMap<String, ExpressionType> types = new HashMap<>();
+        HashMap<String, Literal> values = new HashMap<>();
+        Checker checker = new Checker(errorLimit);
+        Evaluator evaluator = new Evaluator();
+        Generator generator = new Generator();
+        boolean empty = true;
+        boolean truncated = false;
+        long start = System.nanoTime();
+        try {
+            statements:
+            for (List<Token> tokens = segmenter.next(); tokens != null; tokens = segmenter.next()) {
+                AST statements = SourceParser.parse(new ListTokenSource(tokens),
+                        new SyntaxErrorCollector(syntaxErrors, errorLimit));
+                addTiming(timings, Phase.PARSE, start);
+                empty = false;
+                //Like a regular compile, stop checking at the first syntax error but keep looking for more
+                if (!syntaxErrors.isEmpty()) {
+                    continue;
+                }
+
+                for (ASTNode node : statements.root.body) {
+                    start = System.nanoTime();
+                    checker.checkTopLevel(node, statements.symbols, types);
+                    for (SemanticError error : new AST(new Stylesheet(new ArrayList<>(List.of(node)))).getErrors()) {
+                        semanticErrors.add(error.toString());
+                    }
+                    addTiming(timings, Phase.CHECK, start);
+                    if (checker.isTruncated()) {
+                        truncated = true;
+                        break statements;
+                    }
+                    if (!semanticErrors.isEmpty() || !options.isTransform()) {
+                        continue;
+                    }
+
+                    start = System.nanoTime();
+                    evaluator.applyTopLevel(node, statements.symbols, values);
+                    addTiming(timings, Phase.TRANSFORM, start);
+                    if (options.isGenerate() && node instanceof Stylerule) {
+                        start = System.nanoTime();
+                        generator.generate(new AST(new Stylesheet(new ArrayList<>(List.of(node)))), out);
+                        addTiming(timings, Phase.GENERATE, start);
+                    }
+                }
+                start = System.nanoTime();
+            }
+        } catch (ErrorLimitReachedException e) {
+            truncated = true;
+        }
+        if (empty && syntaxErrors.isEmpty() && !truncated) {
+            //Parse the empty input for the same error as a regular compile
+            SourceParser.parse(CharStreams.fromString(""), new SyntaxErrorCollector(syntaxErrors));
+        }
+        return new CompileResult(null, syntaxErrors.isEmpty() ? semanticErrors : syntaxErrors, null, timings,
+                truncated);
+    }
+
+    private static void addTiming(Map<Phase, Long> timings, Phase phase, long start) {
+        timings.merge(phase, System.nanoTime() - start, Long::sum);
+    }
+}
@@ -2,6 +2,7 @@ package nl.han.ica.icss.ast;
 
 import nl.han.ica.icss.checker.SemanticError;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Objects;
@@ -9,27 +10,64 @@ import java.util.Objects;
 public class AST {
 	//The root of the tree
 	public Stylesheet root;
+	//The names in the tree; the ids on its nodes are ids in this table
+	public final SymbolTable symbols;
 
 	public AST() {
-		root = new Stylesheet();
+		this(new Stylesheet());
 	}
 	public AST(Stylesheet stylesheet) {
+		this(stylesheet, new SymbolTable());
+	}
+	public AST(Stylesheet stylesheet, SymbolTable symbols) {
 		root = stylesheet;
+		this.symbols = symbols;
 	}
 	public void setRoot(Stylesheet stylesheet) {
 		root = stylesheet;
 	}
     public ArrayList<SemanticError> getErrors() {
+	    return getErrors(0);
+    }
+    /*
+     The first limit errors in the tree, or all of them for a limit of 0. Stops walking the tree at the limit.
+     */
+    public ArrayList<SemanticError> getErrors(int limit) {
 	    ArrayList<SemanticError> errors = new ArrayList<>();
-        collectErrors(errors,root);
+	    //Pre-order, with a stack instead of recursion so deep trees fit
+	    ArrayDeque<ASTNode> stack = new ArrayDeque<>();
+	    stack.push(root);
+	    while (!stack.isEmpty()) {
+	        ASTNode node = stack.pop();
+	        if(node.hasError()) {
+	            errors.add(node.getError());
+	            if (limit > 0 && errors.size() >= limit) {
+	                break;
+                }
+            }
+	        pushChildren(stack, node);
+        }
         return errors;
     }
-    private void collectErrors(ArrayList<SemanticError> errors, ASTNode node) {
-	    if(node.hasError()) {
-	        errors.add(node.getError());
+    /*
+     Number of nodes in the tree, including the root.
+     */
+    public long getNodeCount() {
+	    long count = 0;
+	    ArrayDeque<ASTNode> stack = new ArrayDeque<>();
+	    stack.push(root);
+	    while (!stack.isEmpty()) {
+	        count++;
+	        pushChildren(stack, stack.pop());
         }
-        for(ASTNode child: node.getChildren()) {
-	        collectErrors(errors,child);
+        return count;
+    }
+    private static void pushChildren(ArrayDeque<ASTNode> stack, ASTNode node) {
+	    for (int i = node.childCount() - 1; i >= 0; i--) {
+	        ASTNode child = node.childAt(i);
+	        if (child != null) {
+	            stack.push(child);
+            }
         }
     }
 	@Override
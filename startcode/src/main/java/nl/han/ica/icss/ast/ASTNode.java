@@ -24,6 +24,16 @@ public class ASTNode {
     public ArrayList<ASTNode> getChildren() {
         return new ArrayList<>();
     }
+    /*
+     The same children without building a list: their number, and the child at an index in the order of
+     getChildren(). Walks over whole trees use these. A subclass that overrides getChildren overrides them too.
+     */
+    public int childCount() {
+        return 0;
+    }
+    public ASTNode childAt(int index) {
+        throw new IndexOutOfBoundsException(index);
+    }
     /*
     By implementing this method in a subclass you can easily create AST nodes
       incrementally.
@@ -50,36 +60,93 @@ public class ASTNode {
         return error != null;
     }
 
+	/*
+	 The tree utilities below walk the tree with a stack of their own instead of recursing,
+	 so a long chain of operations or deeply nested if-clauses cannot overflow the call stack.
+	 */
 	@Override
 	public String toString() {
-		StringBuilder result = new StringBuilder();
-		toString(result);
-		return result.toString();
-	}
-	private void toString(StringBuilder builder) {
-		builder.append("[");
-		builder.append(getNodeLabel());	
-		builder.append("|");
-		for(ASTNode child : getChildren()) {
-			child.toString(builder);
-		}	
-		builder.append("]");
+		StringBuilder builder = new StringBuilder();
+		//A null entry closes the node opened before it
+		ArrayList<ASTNode> stack = new ArrayList<>();
+		stack.add(this);
+		while (!stack.isEmpty()) {
+			ASTNode node = stack.remove(stack.size() - 1);
+			if (node == null) {
+				builder.append("]");
+				continue;
+			}
+			builder.append("[");
+			builder.append(node.getNodeLabel());
+			builder.append("|");
+			stack.add(null);
+			pushReversed(stack, node);
+		}
+		return builder.toString();
 	}
 
+	/*
+	 Two nodes are equal when their trees have the same shape and the same classes, and every pair of nodes
+	 without children is equal by its own equals, which compares attributes such as literal values.
+	 */
 	@Override
     public boolean equals(Object o) {
         if(! (o instanceof ASTNode))
             return false;
-        //Compare all children
-        List<ASTNode> thisChildren = this.getChildren();
-        List<ASTNode> otherChildren = ((ASTNode) o).getChildren();
-        if(otherChildren.size() != thisChildren.size())
+        ArrayList<ASTNode> pairs = new ArrayList<>();
+        if(!pushChildPairs(pairs, this, (ASTNode) o))
             return false;
-        for(int i = 0; i < thisChildren.size(); i++ ) {
-            if(!thisChildren.get(i).equals(otherChildren.get(i))) {
+        while (!pairs.isEmpty()) {
+            ASTNode other = pairs.remove(pairs.size() - 1);
+            ASTNode node = pairs.remove(pairs.size() - 1);
+            if (node == null || other == null) {
+                if (node != other)
+                    return false;
+            } else if (node.getClass() != other.getClass()) {
                 return false;
+            } else if (node.childCount() == 0) {
+                if (!node.equals(other))
+                    return false;
+            } else if (!pushChildPairs(pairs, node, other)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        ArrayList<ASTNode> stack = new ArrayList<>();
+        pushReversed(stack, this);
+        while (!stack.isEmpty()) {
+            ASTNode node = stack.remove(stack.size() - 1);
+            if (node == null) {
+                hash = 31 * hash;
+            } else if (node.childCount() == 0) {
+                hash = 31 * hash + node.hashCode();
+            } else {
+                hash = 31 * hash + node.getClass().getName().hashCode();
+                pushReversed(stack, node);
             }
         }
+        return hash;
+    }
+
+    private static void pushReversed(List<ASTNode> stack, ASTNode node) {
+        for (int i = node.childCount() - 1; i >= 0; i--) {
+            stack.add(node.childAt(i));
+        }
+    }
+
+    private static boolean pushChildPairs(List<ASTNode> pairs, ASTNode node, ASTNode other) {
+        int count = node.childCount();
+        if(other.childCount() != count)
+            return false;
+        for(int i = 0; i < count; i++ ) {
+            pairs.add(node.childAt(i));
+            pairs.add(other.childAt(i));
+        }
         return true;
     }
 }
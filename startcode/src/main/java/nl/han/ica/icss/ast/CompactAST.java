@@ -0,0 +1,340 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+import nl.han.ica.icss.checker.SemanticError;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * An AST stored in parallel arrays instead of a node object per node. A node is an int index; its kind,
+ * first child, next sibling, payload and source offset are entries in the arrays at that index. That takes
+ * about 25 bytes per node, where the object AST needs a node object, a literal or name object and the lists of its
+ * parent. Errors are rare, so they are kept in a map by node.
+ *
+ * The payload depends on the kind: the value of a number literal, 1 or 0 for a boolean literal, the 24-bit
+ * rgb value of a color, and the id in the {@link #symbols()} of the tree of the name of a selector, variable or property.
+ *
+ * The children of a node are in the order of {@link ASTNode#childAt}, except that the name of a declaration
+ * or variable assignment is its payload instead of a child.
+ */
+public class CompactAST {
+
+    public enum Kind {
+        STYLESHEET, STYLERULE, TAG_SELECTOR, ID_SELECTOR, CLASS_SELECTOR, VARIABLE_ASSIGNMENT, DECLARATION,
+        IF_CLAUSE, ELSE_CLAUSE, ADD_OPERATION, SUBTRACT_OPERATION, MULTIPLY_OPERATION, VARIABLE_REFERENCE,
+        BOOL_LITERAL, COLOR_LITERAL, PERCENTAGE_LITERAL, PIXEL_LITERAL, SCALAR_LITERAL;
+
+        private static final Kind[] KINDS = values();
+
+        public boolean isSelector() {
+            return this == TAG_SELECTOR || this == ID_SELECTOR || this == CLASS_SELECTOR;
+        }
+
+        public boolean isOperation() {
+            return this == ADD_OPERATION || this == SUBTRACT_OPERATION || this == MULTIPLY_OPERATION;
+        }
+
+        public boolean isLiteral() {
+            return ordinal() >= BOOL_LITERAL.ordinal();
+        }
+    }
+
+    /**
+     * The index of no node: the first child of a leaf, or the next sibling of a last child.
+     */
+    public static final int NONE = -1;
+
+    private byte[] kinds;
+    private int[] firstChildren;
+    private int[] nextSiblings;
+    //Only used to append children
+    private int[] lastChildren;
+    private int[] payloads;
+    private int[] offsets;
+    private int size = 0;
+    private final HashMap<Integer, String> errors = new HashMap<>();
+    private final SymbolTable symbols;
+
+    public CompactAST() {
+        this(64);
+    }
+
+    public CompactAST(int capacity) {
+        this(capacity, new SymbolTable());
+    }
+
+    /**
+     * A tree whose payloads are ids in the given table, such as a tree derived from another one.
+     */
+    public CompactAST(int capacity, SymbolTable symbols) {
+        this.symbols = symbols;
+        capacity = Math.max(capacity, 1);
+        kinds = new byte[capacity];
+        firstChildren = new int[capacity];
+        nextSiblings = new int[capacity];
+        lastChildren = new int[capacity];
+        payloads = new int[capacity];
+        offsets = new int[capacity];
+    }
+
+    /**
+     * Adds a node without a parent. The first node added is the root.
+     * @param offset the index of the node in the source, or {@link #NONE}
+     * @return the new node
+     */
+    public int add(Kind kind, int payload, int offset) {
+        if (size == kinds.length) {
+            int capacity = size * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            firstChildren = Arrays.copyOf(firstChildren, capacity);
+            nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+            lastChildren = Arrays.copyOf(lastChildren, capacity);
+            payloads = Arrays.copyOf(payloads, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+        }
+        kinds[size] = (byte) kind.ordinal();
+        firstChildren[size] = NONE;
+        nextSiblings[size] = NONE;
+        lastChildren[size] = NONE;
+        payloads[size] = payload;
+        offsets[size] = offset;
+        return size++;
+    }
+
+    /**
+     * Adds a node as the last child of the parent.
+     */
+    public int add(int parent, Kind kind, int payload, int offset) {
+        int node = add(kind, payload, offset);
+        appendChild(parent, node);
+        return node;
+    }
+
+    /**
+     * Makes a node without a parent the last child of the parent.
+     */
+    public void appendChild(int parent, int child) {
+        if (lastChildren[parent] == NONE) {
+            firstChildren[parent] = child;
+        } else {
+            nextSiblings[lastChildren[parent]] = child;
+        }
+        lastChildren[parent] = child;
+    }
+
+    public int root() {
+        return size == 0 ? NONE : 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Kind kind(int node) {
+        return Kind.KINDS[kinds[node]];
+    }
+
+    public int firstChild(int node) {
+        return firstChildren[node];
+    }
+
+    public int nextSibling(int node) {
+        return nextSiblings[node];
+    }
+
+    public int payload(int node) {
+        return payloads[node];
+    }
+
+    /**
+     * The name of a node whose payload is a symbol, or the "#rrggbb" text of a color.
+     */
+    public String text(int node) {
+        if (kinds[node] == Kind.COLOR_LITERAL.ordinal()) {
+            return ColorLiteral.text(payloads[node]);
+        }
+        return symbols.name(payloads[node]);
+    }
+
+    /**
+     * The table of the names in this tree. It lives as long as the tree.
+     */
+    public SymbolTable symbols() {
+        return symbols;
+    }
+
+    /**
+     * The index of the node in the source it was parsed from, or {@link #NONE}.
+     */
+    public int offset(int node) {
+        return offsets[node];
+    }
+
+    public boolean hasError(int node) {
+        return errors.containsKey(node);
+    }
+
+    public String getError(int node) {
+        return errors.get(node);
+    }
+
+    public void setError(int node, String description) {
+        errors.put(node, description);
+    }
+
+    /**
+     * The errors in the tree, in the same order as {@link AST#getErrors()}.
+     */
+    public ArrayList<SemanticError> getErrors() {
+        ArrayList<SemanticError> found = new ArrayList<>();
+        if (errors.isEmpty()) {
+            return found;
+        }
+        //Pre-order, with a stack of next siblings instead of recursion
+        int[] stack = new int[16];
+        int depth = 0;
+        int node = root();
+        while (node != NONE || depth > 0) {
+            if (node == NONE) {
+                node = stack[--depth];
+                continue;
+            }
+            String error = errors.get(node);
+            if (error != null) {
+                found.add(new SemanticError(error));
+            }
+            if (depth == stack.length) {
+                stack = Arrays.copyOf(stack, depth * 2);
+            }
+            stack[depth++] = nextSiblings[node];
+            node = firstChildren[node];
+        }
+        return found;
+    }
+
+    /**
+     * Converts an object AST, with its errors. The compact AST shares the symbol table of the AST.
+     */
+    public static CompactAST of(AST ast) {
+        CompactAST compact = new CompactAST(64, ast.symbols);
+        ArrayList<ASTNode> nodes = new ArrayList<>();
+        ArrayList<Integer> parents = new ArrayList<>();
+        nodes.add(ast.root);
+        parents.add(NONE);
+        while (!nodes.isEmpty()) {
+            ASTNode node = nodes.remove(nodes.size() - 1);
+            int parent = parents.remove(parents.size() - 1);
+            int index = compact.add(kindOf(node), compact.payloadOf(node), NONE);
+            if (parent != NONE) {
+                compact.appendChild(parent, index);
+            }
+            if (node.hasError()) {
+                compact.setError(index, node.getError().description);
+            }
+            for (int i = node.childCount() - 1; i >= 0; i--) {
+                ASTNode child = node.childAt(i);
+                if (child != null && !(child instanceof PropertyName)
+                        && !(node instanceof VariableAssignment && child == ((VariableAssignment) node).name)) {
+                    nodes.add(child);
+                    parents.add(index);
+                }
+            }
+        }
+        return compact;
+    }
+
+    private static Kind kindOf(ASTNode node) {
+        if (node instanceof Stylesheet) return Kind.STYLESHEET;
+        if (node instanceof Stylerule) return Kind.STYLERULE;
+        if (node instanceof TagSelector) return Kind.TAG_SELECTOR;
+        if (node instanceof IdSelector) return Kind.ID_SELECTOR;
+        if (node instanceof ClassSelector) return Kind.CLASS_SELECTOR;
+        if (node instanceof VariableAssignment) return Kind.VARIABLE_ASSIGNMENT;
+        if (node instanceof Declaration) return Kind.DECLARATION;
+        if (node instanceof IfClause) return Kind.IF_CLAUSE;
+        if (node instanceof ElseClause) return Kind.ELSE_CLAUSE;
+        if (node instanceof AddOperation) return Kind.ADD_OPERATION;
+        if (node instanceof SubtractOperation) return Kind.SUBTRACT_OPERATION;
+        if (node instanceof MultiplyOperation) return Kind.MULTIPLY_OPERATION;
+        if (node instanceof VariableReference) return Kind.VARIABLE_REFERENCE;
+        if (node instanceof BoolLiteral) return Kind.BOOL_LITERAL;
+        if (node instanceof ColorLiteral) return Kind.COLOR_LITERAL;
+        if (node instanceof PercentageLiteral) return Kind.PERCENTAGE_LITERAL;
+        if (node instanceof PixelLiteral) return Kind.PIXEL_LITERAL;
+        if (node instanceof ScalarLiteral) return Kind.SCALAR_LITERAL;
+        throw new IllegalArgumentException("No compact form for " + node.getNodeLabel());
+    }
+
+    private int payloadOf(ASTNode node) {
+        if (node instanceof Selector) return symbols.intern(node.toString());
+        if (node instanceof VariableAssignment) return ((VariableAssignment) node).name.symbol(symbols);
+        if (node instanceof Declaration) return ((Declaration) node).property.symbol(symbols);
+        if (node instanceof VariableReference) return ((VariableReference) node).symbol(symbols);
+        if (node instanceof BoolLiteral) return ((BoolLiteral) node).value ? 1 : 0;
+        if (node instanceof ColorLiteral) return ((ColorLiteral) node).rgb();
+        if (node instanceof PercentageLiteral) return ((PercentageLiteral) node).value;
+        if (node instanceof PixelLiteral) return ((PixelLiteral) node).value;
+        if (node instanceof ScalarLiteral) return ((ScalarLiteral) node).value;
+        return 0;
+    }
+
+    /**
+     * Converts back to an object AST, with the errors. The AST shares the symbol table.
+     */
+    public AST toAST() {
+        ASTNode[] nodes = new ASTNode[size];
+        for (int node = 0; node < size; node++) {
+            nodes[node] = toNode(node);
+        }
+        for (int node = 0; node < size; node++) {
+            for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+                nodes[node].addChild(nodes[child]);
+            }
+        }
+        return new AST(size == 0 ? new Stylesheet() : (Stylesheet) nodes[0], symbols);
+    }
+
+    private ASTNode toNode(int node) {
+        int payload = payloads[node];
+        ASTNode result;
+        switch (kind(node)) {
+            case STYLESHEET: result = new Stylesheet(); break;
+            case STYLERULE: result = new Stylerule(); break;
+            case TAG_SELECTOR: result = new TagSelector(text(node)); break;
+            case ID_SELECTOR: result = new IdSelector(text(node)); break;
+            case CLASS_SELECTOR: result = new ClassSelector(text(node)); break;
+            case VARIABLE_ASSIGNMENT:
+                VariableAssignment assignment = new VariableAssignment();
+                assignment.name = new VariableReference(text(node), symbols);
+                result = assignment;
+                break;
+            case DECLARATION: result = new Declaration(text(node), symbols); break;
+            case IF_CLAUSE: result = new IfClause(); break;
+            case ELSE_CLAUSE: result = new ElseClause(); break;
+            case ADD_OPERATION: result = new AddOperation(); break;
+            case SUBTRACT_OPERATION: result = new SubtractOperation(); break;
+            case MULTIPLY_OPERATION: result = new MultiplyOperation(); break;
+            case VARIABLE_REFERENCE: result = new VariableReference(text(node), symbols); break;
+            case BOOL_LITERAL: result = BoolLiteral.of(payload != 0); break;
+            case COLOR_LITERAL: result = ColorLiteral.of(payload); break;
+            case PERCENTAGE_LITERAL: result = PercentageLiteral.of(payload); break;
+            case PIXEL_LITERAL: result = PixelLiteral.of(payload); break;
+            default: result = ScalarLiteral.of(payload); break;
+        }
+        if (hasError(node)) {
+            if (result instanceof Literal) {
+                result = ((Literal) result).unshared();
+            }
+            result.setError(getError(node));
+        }
+        return result;
+    }
+}
@@ -17,6 +17,10 @@ public class Declaration extends ASTNode {
 		super();
 		this.property = new PropertyName(property);
 	}
+	public Declaration(String property, SymbolTable symbols) {
+		super();
+		this.property = new PropertyName(property, symbols);
+	}
 	@Override
 	public String getNodeLabel() {
 	    return "Declaration";
@@ -33,6 +37,15 @@ public class Declaration extends ASTNode {
 		return children;
 	}
 	@Override
+	public int childCount() {
+		return (property != null ? 1 : 0) + (expression != null ? 1 : 0);
+	}
+	@Override
+	public ASTNode childAt(int index) {
+		Objects.checkIndex(index, childCount());
+		return index == 0 && property != null ? property : expression;
+	}
+	@Override
 	public ASTNode addChild(ASTNode child) {
 		if(child instanceof PropertyName) {
 			property = (PropertyName) child;
@@ -46,13 +59,10 @@ public class Declaration extends ASTNode {
 	public boolean equals(Object o) {
 		if (this == o) return true;
 		if (o == null || getClass() != o.getClass()) return false;
-		if (!super.equals(o)) return false;
-		Declaration that = (Declaration) o;
-		return Objects.equals(property, that.property) &&
-				Objects.equals(expression, that.expression);
+		return super.equals(o);
 	}
 	@Override
 	public int hashCode() {
-		return Objects.hash(property, expression);
+		return super.hashCode();
 	}
 }
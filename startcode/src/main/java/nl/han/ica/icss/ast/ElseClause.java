@@ -1,7 +1,6 @@
 package nl.han.ica.icss.ast;
 
 import java.util.ArrayList;
-import java.util.Objects;
 
 public class ElseClause extends ASTNode{
 
@@ -25,6 +24,14 @@ public class ElseClause extends ASTNode{
 
         return children;
     }
+    @Override
+    public int childCount() {
+        return body.size();
+    }
+    @Override
+    public ASTNode childAt(int index) {
+        return body.get(index);
+    }
 
     @Override
     public ASTNode addChild(ASTNode child) {
@@ -37,14 +44,12 @@ public class ElseClause extends ASTNode{
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
-        if (!super.equals(o)) return false;
-        ElseClause ElseClause = (ElseClause) o;
-        return Objects.equals(body, ElseClause.body);
+        return super.equals(o);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(body);
+        return super.hashCode();
     }
 
 
@@ -38,6 +38,17 @@ public class IfClause extends ASTNode {
 
         return children;
     }
+    @Override
+    public int childCount() {
+        return 1 + body.size() + (elseClause != null ? 1 : 0);
+    }
+    @Override
+    public ASTNode childAt(int index) {
+        Objects.checkIndex(index, childCount());
+        if (index == 0)
+            return conditionalExpression;
+        return index <= body.size() ? body.get(index - 1) : elseClause;
+    }
 
     @Override
     public ASTNode addChild(ASTNode child) {
@@ -54,21 +65,12 @@ public class IfClause extends ASTNode {
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
-        if (!super.equals(o)) return false;
-        IfClause ifClause = (IfClause) o;
-        if (this.elseClause == null)
-            return Objects.equals(conditionalExpression, ifClause.getConditionalExpression()) &&
-                Objects.equals(body, ifClause.body);
-        else
-            return Objects.equals(conditionalExpression, ifClause.getConditionalExpression()) &&
-                    Objects.equals(body, ifClause.body) &&
-                    Objects.equals(elseClause, ifClause.elseClause);
-
+        return super.equals(o);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(conditionalExpression, body, elseClause);
+        return super.hashCode();
     }
 
     public Expression getConditionalExpression() {
@@ -1,4 +1,40 @@
 package nl.han.ica.icss.ast;
 
+/*
+ Literals are immutable, so the parsers and the evaluator use shared instances for common values
+ (see the of methods of the literal classes). A shared literal stands for every place it is used,
+ so it cannot hold an error; the checker puts the error on an unshared copy instead.
+ */
 public abstract class Literal extends Expression {
+
+    private boolean shared;
+
+    public boolean isShared() {
+        return shared;
+    }
+
+    /**
+     * This literal, or a copy that can hold an error when this one is shared.
+     */
+    public Literal unshared() {
+        return shared ? copy() : this;
+    }
+
+    protected abstract Literal copy();
+
+    /*
+     Marks a canonical instance, when it is created
+     */
+    protected static <T extends Literal> T share(T literal) {
+        ((Literal) literal).shared = true;
+        return literal;
+    }
+
+    @Override
+    public void setError(String description) {
+        if (shared) {
+            throw new IllegalStateException("A shared literal cannot hold an error, use unshared()");
+        }
+        super.setError(description);
+    }
 }
@@ -1,6 +1,7 @@
 package nl.han.ica.icss.ast;
 
 import java.util.ArrayList;
+import java.util.Objects;
 
 public abstract class Operation extends Expression {
 
@@ -16,6 +17,15 @@ public abstract class Operation extends Expression {
             children.add(rhs);
         return children;
     }
+    @Override
+    public int childCount() {
+        return (lhs != null ? 1 : 0) + (rhs != null ? 1 : 0);
+    }
+    @Override
+    public ASTNode childAt(int index) {
+        Objects.checkIndex(index, childCount());
+        return index == 0 && lhs != null ? lhs : rhs;
+    }
 
     @Override
     public ASTNode addChild(ASTNode child) {
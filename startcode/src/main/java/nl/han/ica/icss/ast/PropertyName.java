@@ -3,6 +3,8 @@ package nl.han.ica.icss.ast;
 public class PropertyName extends ASTNode {
 
     public String name;
+    //The id of the name in the SymbolTable of the AST, or SymbolTable.NONE until it is first needed
+    public int symbol = SymbolTable.NONE;
 
     public PropertyName() {
         super();
@@ -12,6 +14,21 @@ public class PropertyName extends ASTNode {
         super();
         this.name = name;
     }
+    public PropertyName(String name, SymbolTable symbols) {
+        super();
+        this.symbol = symbols.intern(name);
+        this.name = symbols.name(symbol);
+    }
+
+    /**
+     * The id of the name in the table of the AST, interned the first time for a node built without one.
+     */
+    public int symbol(SymbolTable symbols) {
+        if (symbol == SymbolTable.NONE) {
+            symbol = symbols.intern(name);
+        }
+        return symbol;
+    }
 
     @Override
     public String getNodeLabel() {
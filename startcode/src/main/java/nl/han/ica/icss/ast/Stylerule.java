@@ -1,7 +1,6 @@
 package nl.han.ica.icss.ast;
 
 import java.util.ArrayList;
-import java.util.Objects;
 
 public class Stylerule extends ASTNode {
 	
@@ -29,6 +28,14 @@ public class Stylerule extends ASTNode {
 
 		return children;
 	}
+	@Override
+	public int childCount() {
+		return selectors.size() + body.size();
+	}
+	@Override
+	public ASTNode childAt(int index) {
+		return index < selectors.size() ? selectors.get(index) : body.get(index - selectors.size());
+	}
 
     @Override
     public ASTNode addChild(ASTNode child) {
@@ -43,14 +50,11 @@ public class Stylerule extends ASTNode {
 	public boolean equals(Object o) {
 		if (this == o) return true;
 		if (o == null || getClass() != o.getClass()) return false;
-		if (!super.equals(o)) return false;
-		Stylerule stylerule = (Stylerule) o;
-		return Objects.equals(selectors, stylerule.selectors) &&
-				Objects.equals(body, stylerule.body);
+		return super.equals(o);
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(selectors, body);
+		return super.hashCode();
 	}
 }
@@ -3,7 +3,6 @@ package nl.han.ica.icss.ast;
 import nl.han.ica.icss.checker.SemanticError;
 
 import java.util.ArrayList;
-import java.util.Objects;
 
 /**
  * A stylesheet is the root node of the AST, it consists of one or more statements
@@ -29,6 +28,14 @@ public class Stylesheet extends ASTNode {
 		return this.body;
 	}
 	@Override
+	public int childCount() {
+		return body.size();
+	}
+	@Override
+	public ASTNode childAt(int index) {
+		return body.get(index);
+	}
+	@Override
 	public ASTNode addChild(ASTNode child) {
 	    	body.add(child);
 	    	return this;
@@ -43,14 +50,11 @@ public class Stylesheet extends ASTNode {
 	public boolean equals(Object o) {
 		if (this == o) return true;
 		if (o == null || getClass() != o.getClass()) return false;
-		if (!super.equals(o)) return false;
-		Stylesheet that = (Stylesheet) o;
-		return Objects.equals(body, that.body);
+		return super.equals(o);
 	}
 
 	@Override
 	public int hashCode() {
-
-		return Objects.hash(body);
+		return super.hashCode();
 	}
 }
@@ -0,0 +1,76 @@
+package nl.han.ica.icss.ast;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Gives the variable, property and selector names of one compilation dense int ids, starting at 0.
+ * The parser of an {@link AST} or {@link CompactAST} interns every name into the table of that tree once and stores
+ * the id on the node, so the checker and evaluator look variables up by id in a
+ * {@link nl.han.ica.datastructures.ScopeStack} and tell properties apart by id, without hashing names again.
+ *
+ * The properties ICSS knows have the same ids in every table. A table belongs to a single tree and is not
+ * thread-safe; it dies with the tree, so a long-running process does not accumulate the names of everything
+ * it ever compiled.
+ */
+public final class SymbolTable {
+
+    /**
+     * The id of no name yet, on a node built without a table.
+     */
+    public static final int NONE = -1;
+
+    public static final int BACKGROUND_COLOR = 0;
+    public static final int COLOR = 1;
+    public static final int WIDTH = 2;
+    public static final int HEIGHT = 3;
+
+    private final HashMap<String, Integer> ids = new HashMap<>();
+    private String[] names = new String[16];
+    private int size = 0;
+
+    public SymbolTable() {
+        intern("background-color");
+        intern("color");
+        intern("width");
+        intern("height");
+    }
+
+    /**
+     * The id of the name, which is added to the table the first time.
+     */
+    public int intern(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+        }
+        names[size] = name;
+        ids.put(name, size);
+        return size++;
+    }
+
+    /**
+     * The name of an id returned by {@link #intern}.
+     */
+    public String name(int id) {
+        return names[id];
+    }
+
+    /**
+     * The single instance of the name that the table keeps.
+     */
+    public String canonical(String name) {
+        int id = intern(name);
+        return names[id];
+    }
+
+    /**
+     * The number of ids handed out so far. Every id is below it.
+     */
+    public int size() {
+        return size;
+    }
+}
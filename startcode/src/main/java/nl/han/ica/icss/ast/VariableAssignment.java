@@ -38,19 +38,25 @@ public class VariableAssignment extends ASTNode {
 			children.add(expression);
 		return children;
 	}
+	@Override
+	public int childCount() {
+		return (name != null ? 1 : 0) + (expression != null ? 1 : 0);
+	}
+	@Override
+	public ASTNode childAt(int index) {
+		Objects.checkIndex(index, childCount());
+		return index == 0 && name != null ? name : expression;
+	}
 
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) return true;
 		if (o == null || getClass() != o.getClass()) return false;
-		if (!super.equals(o)) return false;
-		VariableAssignment that = (VariableAssignment) o;
-		return Objects.equals(name, that.name) &&
-				Objects.equals(expression, that.expression);
+		return super.equals(o);
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(name, expression);
+		return super.hashCode();
 	}
 }
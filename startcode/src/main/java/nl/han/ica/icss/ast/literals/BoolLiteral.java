@@ -4,7 +4,14 @@ import nl.han.ica.icss.ast.Literal;
 import java.util.Objects;
 
 public class BoolLiteral extends Literal {
-    public boolean value;
+    public static final BoolLiteral TRUE = share(new BoolLiteral(true));
+    public static final BoolLiteral FALSE = share(new BoolLiteral(false));
+
+    public final boolean value;
+
+    public static BoolLiteral of(boolean value) {
+        return value ? TRUE : FALSE;
+    }
 
     public BoolLiteral(boolean value) {
         this.value = value;
@@ -13,6 +20,10 @@ public class BoolLiteral extends Literal {
         this.value = text.equals("TRUE");
     }
     @Override
+    protected Literal copy() {
+        return new BoolLiteral(value);
+    }
+    @Override
     public String getNodeLabel() {
         String textValue = value ? "TRUE" : "FALSE";
         return "Bool Literal (" + textValue + ")";
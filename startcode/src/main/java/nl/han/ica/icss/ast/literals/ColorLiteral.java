@@ -3,13 +3,63 @@ package nl.han.ica.icss.ast.literals;
 import nl.han.ica.icss.ast.Literal;
 
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ColorLiteral extends Literal {
-    public String value;
+    //Themes use a handful of colors; beyond this many distinct ones new instances are not cached
+    private static final int CACHE_SIZE = 4096;
+    private static final ConcurrentHashMap<String, ColorLiteral> CACHE = new ConcurrentHashMap<>();
+
+    public final String value;
 
     public ColorLiteral(String value) {
         this.value = value;
     }
+
+    /**
+     * The shared instance for the color.
+     */
+    public static ColorLiteral of(String value) {
+        ColorLiteral literal = CACHE.get(value);
+        if (literal != null) {
+            return literal;
+        }
+        if (CACHE.size() >= CACHE_SIZE) {
+            return new ColorLiteral(value);
+        }
+        return CACHE.computeIfAbsent(value, color -> share(new ColorLiteral(color)));
+    }
+
+    /**
+     * The shared instance for a 24-bit rgb value, see {@link #rgb()}.
+     */
+    public static ColorLiteral of(int rgb) {
+        return of(text(rgb));
+    }
+
+    /**
+     * The "#rrggbb" text of a 24-bit rgb value, in lowercase as the lexer accepts it.
+     */
+    public static String text(int rgb) {
+        char[] text = new char[7];
+        text[0] = '#';
+        for (int i = 6; i > 0; i--) {
+            text[i] = Character.forDigit(rgb & 0xf, 16);
+            rgb >>>= 4;
+        }
+        return new String(text);
+    }
+
+    /**
+     * The color as a 24-bit rgb value.
+     */
+    public int rgb() {
+        return Integer.parseInt(value, 1, 7, 16);
+    }
+    @Override
+    protected Literal copy() {
+        return new ColorLiteral(value);
+    }
     @Override
     public String getNodeLabel() {
         return "Color literal (" + value + ")";
@@ -5,7 +5,26 @@ import nl.han.ica.icss.ast.Literal;
 import java.util.Objects;
 
 public class PercentageLiteral extends Literal {
-    public int value;
+    private static final int CACHE_LOW = -100;
+    private static final PercentageLiteral[] CACHE = new PercentageLiteral[200 - CACHE_LOW + 1];
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = share(new PercentageLiteral(CACHE_LOW + i));
+        }
+    }
+
+    public final int value;
+
+    /**
+     * A shared instance for values from -100% to 200%, a new one for other values.
+     */
+    public static PercentageLiteral of(int value) {
+        int index = value - CACHE_LOW;
+        return index >= 0 && index < CACHE.length ? CACHE[index] : new PercentageLiteral(value);
+    }
+    public static PercentageLiteral of(String text) {
+        return of(Integer.parseInt(text.substring(0, text.length() - 1)));
+    }
 
     public PercentageLiteral(int value) {
         this.value = value;
@@ -14,6 +33,10 @@ public class PercentageLiteral extends Literal {
         this.value = Integer.parseInt(text.substring(0, text.length() - 1));
     }
     @Override
+    protected Literal copy() {
+        return new PercentageLiteral(value);
+    }
+    @Override
     public String getNodeLabel() {
         return "Percentage literal (" + value + ")";
     }
@@ -5,7 +5,26 @@ import nl.han.ica.icss.ast.Literal;
 import java.util.Objects;
 
 public class PixelLiteral extends Literal {
-    public int value;
+    private static final int CACHE_LOW = -128;
+    private static final PixelLiteral[] CACHE = new PixelLiteral[1024 - CACHE_LOW + 1];
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = share(new PixelLiteral(CACHE_LOW + i));
+        }
+    }
+
+    public final int value;
+
+    /**
+     * A shared instance for values from -128 to 1024 pixels, a new one for other values.
+     */
+    public static PixelLiteral of(int value) {
+        int index = value - CACHE_LOW;
+        return index >= 0 && index < CACHE.length ? CACHE[index] : new PixelLiteral(value);
+    }
+    public static PixelLiteral of(String text) {
+        return of(Integer.parseInt(text.substring(0, text.length() - 2)));
+    }
 
     public PixelLiteral(int value) {
         this.value = value;
@@ -14,6 +33,10 @@ public class PixelLiteral extends Literal {
         this.value = Integer.parseInt(text.substring(0, text.length() - 2));
     }
     @Override
+    protected Literal copy() {
+        return new PixelLiteral(value);
+    }
+    @Override
     public String getNodeLabel() {
         return "Pixel literal (" + value + ")";
     }
@@ -5,7 +5,26 @@ import nl.han.ica.icss.ast.Literal;
 import java.util.Objects;
 
 public class ScalarLiteral extends Literal {
-    public int value;
+    private static final int CACHE_LOW = -128;
+    private static final ScalarLiteral[] CACHE = new ScalarLiteral[1024 - CACHE_LOW + 1];
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = share(new ScalarLiteral(CACHE_LOW + i));
+        }
+    }
+
+    public final int value;
+
+    /**
+     * A shared instance for values from -128 to 1024, a new one for other values.
+     */
+    public static ScalarLiteral of(int value) {
+        int index = value - CACHE_LOW;
+        return index >= 0 && index < CACHE.length ? CACHE[index] : new ScalarLiteral(value);
+    }
+    public static ScalarLiteral of(String text) {
+        return of(Integer.parseInt(text));
+    }
 
     public ScalarLiteral(int value) {
         this.value = value;
@@ -14,6 +33,10 @@ public class ScalarLiteral extends Literal {
         this.value = Integer.parseInt(text);
     }
     @Override
+    protected Literal copy() {
+        return new ScalarLiteral(value);
+    }
+    @Override
     public String getNodeLabel() {
         return "Scalar literal (" + value + ")";
     }
@@ -0,0 +1,353 @@
+package nl.han.ica.icss.cache;
+
+import nl.han.ica.icss.CompileOptions;
+import nl.han.ica.icss.CompileResult;
+import nl.han.ica.icss.ICSSCompiler;
+import nl.han.ica.icss.Phase;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed cache of compilation results, keyed by a hash of the compiler version, the options
+ * and the source. It has a bounded in-memory LRU tier and an optional on-disk tier that is kept below a
+ * maximum size by evicting the least recently used files.
+ *
+ * Only the diagnostics and the generated CSS are cached. All methods are thread-safe; failures of the
+ * disk tier are treated as misses.
+ */
+public class CompilationCache {
+
+    private static final String FILE_EXTENSION = ".icsscache";
+    private static final int FORMAT = 2;
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+    //Temporary files this old are left over from a crashed write, not one in progress in another process
+    private static final long STALE_TEMPORARY_MILLIS = 60_000;
+
+    private final int maxEntries;
+    private final LinkedHashMap<String, CompileResult> memory;
+
+    private final Path directory;
+    private final long maxDiskBytes;
+    //Key to file size, in access order
+    private final LinkedHashMap<String, Long> diskIndex = new LinkedHashMap<>(16, 0.75f, true);
+    private long diskBytes = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong diskEvictions = new AtomicLong();
+
+    /**
+     * Creates a memory-only cache holding at most maxEntries results.
+     */
+    public CompilationCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.memory = new LinkedHashMap<>(16, 0.75f, true);
+        this.directory = null;
+        this.maxDiskBytes = 0;
+    }
+
+    /**
+     * Creates a cache that also keeps up to maxDiskBytes of results in the given directory.
+     * Entries left in the directory by earlier runs are picked up, oldest first, and their stale temporary files
+     * are deleted.
+     */
+    public CompilationCache(int maxEntries, Path directory, long maxDiskBytes) throws IOException {
+        this.maxEntries = maxEntries;
+        this.memory = new LinkedHashMap<>(16, 0.75f, true);
+        this.directory = directory;
+        this.maxDiskBytes = maxDiskBytes;
+
+        Files.createDirectories(directory);
+        deleteStaleTemporaries();
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> entries = files
+                    .filter(file -> file.getFileName().toString().endsWith(FILE_EXTENSION))
+                    .sorted(Comparator.comparing(CompilationCache::lastModified))
+                    .collect(Collectors.toList());
+            for (Path entry : entries) {
+                String name = entry.getFileName().toString();
+                long size = Files.size(entry);
+                diskIndex.put(name.substring(0, name.length() - FILE_EXTENSION.length()), size);
+                diskBytes += size;
+            }
+        }
+        synchronized (diskIndex) {
+            evictFromDisk();
+        }
+    }
+
+    private void deleteStaleTemporaries() throws IOException {
+        long stale = System.currentTimeMillis() - STALE_TEMPORARY_MILLIS;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.getFileName().toString().endsWith(TEMPORARY_EXTENSION)
+                        && lastModified(file).toMillis() < stale) {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException e) {
+                        //Tried again on the next start
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The cache key of a compilation: a SHA-256 over compiler version, options and source.
+     */
+    public static String key(String source, CompileOptions options) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(ICSSCompiler.VERSION.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(options.toString().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(source.getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder();
+            for (byte b : digest.digest()) {
+                key.append(String.format("%02x", b));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            //Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the cached result for the key, or null on a miss.
+     */
+    public CompileResult get(String key) {
+        CompileResult result;
+        synchronized (memory) {
+            result = memory.get(key);
+        }
+        if (result == null && directory != null) {
+            result = readFromDisk(key);
+            if (result != null) {
+                diskHits.incrementAndGet();
+                putInMemory(key, result);
+            }
+        }
+        if (result == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return result;
+    }
+
+    /**
+     * Stores the diagnostics and CSS of a result under the key.
+     */
+    public void put(String key, CompileResult result) {
+        CompileResult stripped = strip(result);
+        putInMemory(key, stripped);
+        if (directory != null) {
+            writeToDisk(key, stripped);
+        }
+    }
+
+    /**
+     * Lookups served from memory or disk.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+    /**
+     * Lookups served from the disk tier; these are also counted as hits.
+     */
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+    public long getMisses() {
+        return misses.get();
+    }
+    /**
+     * Results dropped from the memory tier to stay below the maximum number of entries.
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+    /**
+     * Files deleted from the disk tier to stay below the maximum size.
+     */
+    public long getDiskEvictions() {
+        return diskEvictions.get();
+    }
+    public int getMemoryEntries() {
+        synchronized (memory) {
+            return memory.size();
+        }
+    }
+    public long getDiskBytes() {
+        synchronized (diskIndex) {
+            return diskBytes;
+        }
+    }
+
+    private static CompileResult strip(CompileResult result) {
+        return new CompileResult(null, result.getErrors(), result.getCss(), new EnumMap<>(Phase.class),
+                result.isTruncated());
+    }
+
+    private void putInMemory(String key, CompileResult result) {
+        synchronized (memory) {
+            memory.put(key, result);
+            Iterator<String> eldest = memory.keySet().iterator();
+            while (memory.size() > maxEntries && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private Path fileFor(String key) {
+        return directory.resolve(key + FILE_EXTENSION);
+    }
+
+    private CompileResult readFromDisk(String key) {
+        synchronized (diskIndex) {
+            if (diskIndex.get(key) == null) {
+                return null;
+            }
+        }
+        Path file = fileFor(key);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            //Lengths are checked against the file size, so a corrupt file cannot ask for a huge allocation
+            long fileSize = Files.size(file);
+            if (in.readInt() != FORMAT) {
+                discard(key);
+                return null;
+            }
+            //Every error takes at least the four bytes of its length
+            int errorCount = readLength(in, fileSize / 4);
+            List<String> errors = new ArrayList<>(errorCount);
+            for (int i = 0; i < errorCount; i++) {
+                errors.add(readString(in, fileSize));
+            }
+            String css = in.readBoolean() ? readString(in, fileSize) : null;
+            boolean truncated = in.readBoolean();
+            //Approximate LRU across runs by the modification time
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return new CompileResult(null, errors, css, new EnumMap<>(Phase.class), truncated);
+        } catch (IOException | RuntimeException e) {
+            //Truncated or corrupt: a miss, and the entry is rewritten after compiling
+            discard(key);
+            return null;
+        }
+    }
+
+    private void discard(String key) {
+        synchronized (diskIndex) {
+            Long size = diskIndex.remove(key);
+            if (size != null) {
+                diskBytes -= size;
+            }
+        }
+        try {
+            Files.deleteIfExists(fileFor(key));
+        } catch (IOException e) {
+            //Forget about the file anyway; it is found again on the next start
+        }
+    }
+
+    private void writeToDisk(String key, CompileResult result) {
+        Path file = fileFor(key);
+        Path temporary = null;
+        try {
+            //Write to a temporary file first so concurrent readers never see a partial entry
+            temporary = Files.createTempFile(directory, key, TEMPORARY_EXTENSION);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(FORMAT);
+                out.writeInt(result.getErrors().size());
+                for (String error : result.getErrors()) {
+                    writeString(out, error);
+                }
+                out.writeBoolean(result.getCss() != null);
+                if (result.getCss() != null) {
+                    writeString(out, result.getCss());
+                }
+                out.writeBoolean(result.isTruncated());
+            }
+            long size = Files.size(temporary);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            synchronized (diskIndex) {
+                Long previous = diskIndex.put(key, size);
+                diskBytes += size - (previous == null ? 0 : previous);
+                evictFromDisk();
+            }
+        } catch (IOException e) {
+            //The disk tier is best effort; the result stays cached in memory
+        } finally {
+            deleteTemporary(temporary);
+        }
+    }
+
+    //Gone after a successful move; left behind when writing or moving failed
+    private static void deleteTemporary(Path temporary) {
+        if (temporary == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(temporary);
+        } catch (IOException e) {
+            //Deleted on the next start once it is stale
+        }
+    }
+
+    private void evictFromDisk() {
+        Iterator<Map.Entry<String, Long>> eldest = diskIndex.entrySet().iterator();
+        while (diskBytes > maxDiskBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            try {
+                Files.deleteIfExists(fileFor(entry.getKey()));
+            } catch (IOException e) {
+                //Forget about the file anyway; it is found again on the next start
+            }
+            diskBytes -= entry.getValue();
+            eldest.remove();
+            diskEvictions.incrementAndGet();
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static int readLength(DataInputStream in, long maximum) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > maximum) {
+            throw new IOException("Invalid length " + length);
+        }
+        return length;
+    }
+
+    private static String readString(DataInputStream in, long fileSize) throws IOException {
+        byte[] bytes = new byte[readLength(in, fileSize)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
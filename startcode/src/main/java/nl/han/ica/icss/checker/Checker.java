@@ -1,199 +1,460 @@
 package nl.han.ica.icss.checker;
 
+import nl.han.ica.datastructures.ScopeStack;
 import nl.han.ica.icss.ast.*;
 import nl.han.ica.icss.ast.literals.*;
 import nl.han.ica.icss.ast.operations.*;
 import nl.han.ica.icss.ast.types.ExpressionType;
+import nl.han.ica.icss.jfr.CheckEvent;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.Iterator;
+import java.util.List;
 
 public class Checker {
 
-    private LinkedList<HashMap<String, ExpressionType>> variableTypes;
+    //Thrown to stop checking once the error limit is reached
+    private static class ErrorLimitReached extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ErrorLimitReached() {
+            super(null, null, false, false);
+        }
+    }
+
+    //The body of a stylerule, if-clause or else-clause that is being checked
+    private static class Block {
+        final Iterator<ASTNode> nodes;
+        final String unknownNodeError;
+        final boolean allowsElseClause;
+
+        Block(List<ASTNode> body, String unknownNodeError, boolean allowsElseClause) {
+            this.nodes = body.iterator();
+            this.unknownNodeError = unknownNodeError;
+            this.allowsElseClause = allowsElseClause;
+        }
+    }
+
+    //Variable types by symbol. Outside all scopes assignments go to the global scope of checkTopLevel
+    private ScopeStack<ExpressionType> variableTypes;
+    //The symbols of the AST being checked
+    private SymbolTable symbols;
+    private HashMap<String, ExpressionType> globalScope;
+    private final int errorLimit;
+    private int errorCount;
+    private boolean truncated;
+
+    public Checker() {
+        this(0);
+    }
+
+    /**
+     * @param errorLimit the check stops once this many errors were found, 0 means no limit
+     */
+    public Checker(int errorLimit) {
+        this.errorLimit = errorLimit;
+    }
+
+    /**
+     * Whether the last check stopped at the error limit, leaving part of the AST unchecked.
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
 
     public void check(AST ast) {
-         variableTypes = new LinkedList<>();
-         checkStylesheet(ast.root);
+         CheckEvent event = new CheckEvent();
+         event.begin();
+         variableTypes = new ScopeStack<>();
+         symbols = ast.symbols;
+         globalScope = null;
+         errorCount = 0;
+         truncated = false;
+         try {
+             checkStylesheet(ast.root);
+         } catch (ErrorLimitReached e) {
+             truncated = true;
+         }
+         event.end();
+         if (event.shouldCommit()) {
+             event.inputSize = event.nodeCount = ast.getNodeCount();
+             event.errorCount = ast.getErrors().size();
+             event.commit();
+         }
     }
 
 
+    /**
+     * Checks a single top-level node of a stylesheet against an existing global scope.
+     * A top-level variable assignment adds its type to that scope.
+     * Errors count towards the error limit of all nodes checked this way since the last check.
+     * @param symbols the symbol table of the AST the node was parsed into
+     */
+    public void checkTopLevel(ASTNode node, SymbolTable symbols, HashMap<String, ExpressionType> globalScope) {
+        variableTypes = new ScopeStack<>();
+        this.symbols = symbols;
+        this.globalScope = globalScope;
+        try {
+            checkTopLevelNode(node);
+        } catch (ErrorLimitReached e) {
+            truncated = true;
+        }
+    }
+
+    /**
+     * Checks a compact AST with the same rules, recording the errors on its nodes.
+     */
+    public void check(CompactAST ast) {
+        variableTypes = new ScopeStack<>();
+        globalScope = null;
+        errorCount = 0;
+        truncated = false;
+        try {
+            checkStylesheet(ast);
+        } catch (ErrorLimitReached e) {
+            truncated = true;
+        }
+    }
+
+    private void error(ASTNode node, String description) {
+        node.setError(description);
+        if (++errorCount >= errorLimit && errorLimit > 0) {
+            throw new ErrorLimitReached();
+        }
+    }
+
     private void checkStylesheet(Stylesheet sheet) {
-        variableTypes.addFirst(new HashMap<>());
+        variableTypes.push();
         for (ASTNode child : sheet.getChildren()) {
-            if (child instanceof Stylerule) {
-                checkStylerule((Stylerule) child);
-            } else if (child instanceof VariableAssignment) {
-                checkVariableAssignment((VariableAssignment) child);
-            } else {
-                child.setError("Unknown type: not a stylerule or variable assignment");
-            }
+            checkTopLevelNode(child);
+        }
+        variableTypes.pop();
+    }
+
+    private void checkTopLevelNode(ASTNode node) {
+        if (node instanceof Stylerule) {
+            checkStylerule((Stylerule) node);
+        } else if (node instanceof VariableAssignment) {
+            checkVariableAssignment((VariableAssignment) node);
+        } else {
+            error(node, TypeRules.STYLESHEET_ERROR);
         }
-        variableTypes.removeFirst();
     }
 
     private void checkStylerule(Stylerule rule) {
-        variableTypes.addFirst(new HashMap<>());
-        for (ASTNode child : rule.body) {
+        variableTypes.push();
+        //The blocks being checked, innermost first. Each has its own scope, removed once the block is done
+        ArrayDeque<Block> blocks = new ArrayDeque<>();
+        blocks.push(new Block(rule.body, TypeRules.STYLERULE_ERROR, false));
+        while (!blocks.isEmpty()) {
+            Block block = blocks.peek();
+            if (!block.nodes.hasNext()) {
+                blocks.pop();
+                variableTypes.pop();
+                continue;
+            }
+            ASTNode child = block.nodes.next();
             if (child instanceof VariableAssignment) {
                 checkVariableAssignment((VariableAssignment) child);
             } else if (child instanceof Declaration) {
                 checkDeclaration((Declaration) child);
             } else if (child instanceof IfClause) {
-                checkIfClause((IfClause) child);
+                blocks.push(checkIfClause((IfClause) child));
+            } else if (child instanceof ElseClause && block.allowsElseClause) {
+                variableTypes.push();
+                blocks.push(new Block(((ElseClause) child).body, TypeRules.ELSE_CLAUSE_ERROR, false));
             } else {
-                child.setError("Unknown type: not a variable assignment, declaration or if-clause");
+                error(child, block.unknownNodeError);
             }
         }
-        variableTypes.removeFirst();
     }
 
     private void checkDeclaration(Declaration declaration) {
         ExpressionType expressionType = checkExpression(declaration.expression);
-        switch (declaration.property.name) {
-            case "background-color":
-                if (expressionType != ExpressionType.COLOR) {
-                    declaration.setError("Only color expressions are allowed for background-color");
-                }
-                break;
-            case "color":
-                if (expressionType != ExpressionType.COLOR) {
-                    declaration.setError("Only color expressions are allowed for color");
-                }
-                break;
-            case "width":
-                if (expressionType != ExpressionType.PIXEL && expressionType != ExpressionType.PERCENTAGE) {
-                    declaration.setError("Only pixel and percentage expressions are allowed for width");
-                }
-                break;
-            case "height":
-                if (expressionType != ExpressionType.PIXEL) {
-                    declaration.setError("Only pixel expressions are allowed for height");
-                }
-                break;
-            default:
-                declaration.setError("Unknown property: " + declaration.property.name);
+        String error = TypeRules.declarationError(symbols, declaration.property.symbol(symbols), expressionType);
+        if (error != null) {
+            error(declaration, error);
         }
     }
 
-    private void checkIfClause(IfClause ifClause) {
-        variableTypes.addFirst(new HashMap<>());
+    /*
+     Checks the condition and opens the scope of the if-clause. Its body is checked by the caller.
+     */
+    private Block checkIfClause(IfClause ifClause) {
+        variableTypes.push();
         ExpressionType conditionType = checkExpression(ifClause.conditionalExpression);
         if(conditionType != ExpressionType.BOOL) {
-            ifClause.conditionalExpression.setError("If condition must be a boolean expression");
-        }
-
-        for (ASTNode child : ifClause.body) {
-            if (child instanceof VariableAssignment) {
-                checkVariableAssignment((VariableAssignment) child);
-            } else if (child instanceof Declaration) {
-                checkDeclaration((Declaration) child);
-            } else if (child instanceof IfClause) {
-                checkIfClause((IfClause) child);
-            } else if (child instanceof ElseClause) {
-                checkElseClause((ElseClause) child);
-            } else {
-                child.setError("An if-clause must include only declarations, variable assignments, if-clauses, or else-clauses");
-            }
-        }
-        variableTypes.removeFirst();
-    }
-
-    private void checkElseClause(ElseClause elseClause) {
-        variableTypes.addFirst(new HashMap<>());
-        for (ASTNode child : elseClause.body) {
-            if (child instanceof VariableAssignment) {
-                checkVariableAssignment((VariableAssignment) child);
-            } else if (child instanceof Declaration) {
-                checkDeclaration((Declaration) child);
-            } else if (child instanceof IfClause) {
-                checkIfClause((IfClause) child);
-            } else {
-                child.setError("An else-clause must include only declarations, variable assignments or if-clauses");
-            }
+            ifClause.conditionalExpression = unshared(ifClause.conditionalExpression);
+            error(ifClause.conditionalExpression, TypeRules.IF_CONDITION_ERROR);
         }
-        variableTypes.removeFirst();
+        return new Block(ifClause.body, TypeRules.IF_CLAUSE_ERROR, true);
     }
 
     private void checkVariableAssignment(VariableAssignment assignment) {
         ExpressionType type = checkExpression(assignment.expression);
-        variableTypes.getFirst().put(assignment.name.name, type);
+        if (variableTypes.depth() == 0) {
+            globalScope.put(assignment.name.name, type);
+        } else {
+            variableTypes.put(assignment.name.symbol(symbols), type);
+        }
     }
 
     private ExpressionType checkVariableReference(VariableReference reference) {
-        // Search through scope stack for variable definition
-        for (HashMap<String, ExpressionType> scope : variableTypes) {
-            if (scope.containsKey(reference.name)) {
-                return scope.get(reference.name);
-            }
+        // The innermost definition, then the global scope of checkTopLevel
+        ExpressionType type = variableTypes.get(reference.symbol(symbols));
+        if (type == null && globalScope != null) {
+            type = globalScope.get(reference.name);
+        }
+        if (type != null) {
+            return type;
         }
-        reference.setError("Variable " + reference.name + " is not defined");
+        error(reference, TypeRules.undefinedVariableError(reference.name));
         return ExpressionType.UNDEFINED;
     }
 
+    /*
+     Long chains of operations make deep trees, so the operands are checked with a stack instead of recursion.
+     An operation is pushed twice: the first time its operands are pushed after it, the second time
+     their types are on the type stack and are combined.
+     */
     private ExpressionType checkExpression(Expression expression) {
+        ArrayList<Expression> pending = new ArrayList<>();
+        ArrayDeque<Operation> combining = new ArrayDeque<>();
+        ArrayDeque<ExpressionType> types = new ArrayDeque<>();
+        pending.add(expression);
+        while (!pending.isEmpty()) {
+            Expression next = pending.remove(pending.size() - 1);
+            if (!(next instanceof Operation)) {
+                types.push(checkOperand(next));
+            } else if (combining.peek() == next) {
+                combining.pop();
+                ExpressionType rightside = types.pop();
+                ExpressionType leftside = types.pop();
+                types.push(checkOperation((Operation) next, leftside, rightside));
+            } else if (!checkOperationChildren((Operation) next)) {
+                types.push(ExpressionType.UNDEFINED);
+            } else {
+                combining.push((Operation) next);
+                pending.add(next);
+                pending.add(((Operation) next).rhs);
+                pending.add(((Operation) next).lhs);
+            }
+        }
+        return types.pop();
+    }
+
+    private ExpressionType checkOperand(Expression expression) {
         if (expression instanceof VariableReference) {
             return checkVariableReference((VariableReference) expression);
         } else if (expression instanceof Literal) {
-            return getLiteralType((Literal) expression);
-        } else if (expression instanceof Operation) {
-            return checkOperation((Operation) expression);
+            return TypeRules.literalType((Literal) expression);
         }
         return ExpressionType.UNDEFINED;
     }
 
-    private ExpressionType checkOperation(Operation operation) {
-        for (ASTNode child : operation.getChildren()) {
+    /*
+     Whether the operands of the operation should be checked: not when it has a literal operand that
+     cannot be used in an operation, or is an unknown operation.
+     */
+    private boolean checkOperationChildren(Operation operation) {
+        for (int i = 0; i < operation.childCount(); i++) {
+            ASTNode child = operation.childAt(i);
             if (child instanceof ColorLiteral) {
-                child.setError("Color literals are not allowed in operations");
-                return ExpressionType.UNDEFINED;
+                error(unsharedOperand(operation, child), TypeRules.COLOR_OPERAND_ERROR);
+                return false;
             } else if (child instanceof BoolLiteral) {
-                child.setError("Boolean literals are not allowed in operations");
-                return ExpressionType.UNDEFINED;
+                error(unsharedOperand(operation, child), TypeRules.BOOL_OPERAND_ERROR);
+                return false;
             }
         }
+        if (!(operation instanceof AddOperation || operation instanceof SubtractOperation
+                || operation instanceof MultiplyOperation)) {
+            error(operation, TypeRules.UNKNOWN_OPERATION_ERROR);
+            return false;
+        }
+        return true;
+    }
 
-        if (operation instanceof AddOperation || operation instanceof SubtractOperation) {
-            return checkAddSubtractOperation(operation);
-        } else if (operation instanceof MultiplyOperation) {
-            return checkMultiplyOperation((MultiplyOperation) operation);
-        } else {
-            operation.setError("Unknown operation");
+    private ExpressionType checkOperation(Operation operation, ExpressionType leftside, ExpressionType rightside) {
+        boolean multiply = operation instanceof MultiplyOperation;
+        String error = TypeRules.operationError(multiply, leftside, rightside);
+        if (error != null) {
+            error(operation, error);
             return ExpressionType.UNDEFINED;
         }
+        return TypeRules.operationType(multiply, leftside, rightside);
     }
 
-    private ExpressionType checkAddSubtractOperation(Operation operation) {
-        ExpressionType leftside = checkExpression(operation.lhs);
-        ExpressionType rightside = checkExpression(operation.rhs);
+    private void error(CompactAST ast, int node, String description) {
+        ast.setError(node, description);
+        if (++errorCount >= errorLimit && errorLimit > 0) {
+            throw new ErrorLimitReached();
+        }
+    }
 
-        if (leftside == rightside) {
-            return leftside;
-        } else {
-            operation.setError("Operands must be of the same type");
-            return ExpressionType.UNDEFINED;
+    private void checkStylesheet(CompactAST ast) {
+        variableTypes.push();
+        for (int child = ast.firstChild(ast.root()); child != CompactAST.NONE; child = ast.nextSibling(child)) {
+            if (ast.kind(child) == CompactAST.Kind.STYLERULE) {
+                checkStylerule(ast, child);
+            } else if (ast.kind(child) == CompactAST.Kind.VARIABLE_ASSIGNMENT) {
+                checkVariableAssignment(ast, child);
+            } else {
+                error(ast, child, TypeRules.STYLESHEET_ERROR);
+            }
         }
+        variableTypes.pop();
     }
 
-    private ExpressionType checkMultiplyOperation(MultiplyOperation operation) {
-        ExpressionType leftside = checkExpression(operation.lhs);
-        ExpressionType rightside = checkExpression(operation.rhs);
+    //The body of a stylerule, if-clause or else-clause of a compact AST that is being checked
+    private static class CompactBlock {
+        int next;
+        final String unknownNodeError;
+        final boolean allowsElseClause;
 
-        // Multiplication requires at least one scalar
-        if (leftside != ExpressionType.SCALAR && rightside != ExpressionType.SCALAR) {
-            operation.setError(
-                    "Multiply operation can only be used with an expression of type scalar and an expression of another type");
-            return ExpressionType.UNDEFINED;
+        CompactBlock(int first, String unknownNodeError, boolean allowsElseClause) {
+            this.next = first;
+            this.unknownNodeError = unknownNodeError;
+            this.allowsElseClause = allowsElseClause;
         }
-        return (leftside == ExpressionType.SCALAR) ? rightside : leftside;
     }
 
-    private ExpressionType getLiteralType(Literal literal) {
-        if (literal instanceof BoolLiteral) return ExpressionType.BOOL;
-        if (literal instanceof ColorLiteral) return ExpressionType.COLOR;
-        if (literal instanceof ScalarLiteral) return ExpressionType.SCALAR;
-        if (literal instanceof PixelLiteral) return ExpressionType.PIXEL;
-        if (literal instanceof PercentageLiteral) return ExpressionType.PERCENTAGE;
-        return ExpressionType.UNDEFINED;
+    private void checkStylerule(CompactAST ast, int rule) {
+        variableTypes.push();
+        int first = ast.firstChild(rule);
+        while (first != CompactAST.NONE && ast.kind(first).isSelector()) {
+            first = ast.nextSibling(first);
+        }
+        ArrayDeque<CompactBlock> blocks = new ArrayDeque<>();
+        blocks.push(new CompactBlock(first, TypeRules.STYLERULE_ERROR, false));
+        while (!blocks.isEmpty()) {
+            CompactBlock block = blocks.peek();
+            if (block.next == CompactAST.NONE) {
+                blocks.pop();
+                variableTypes.pop();
+                continue;
+            }
+            int child = block.next;
+            block.next = ast.nextSibling(child);
+            CompactAST.Kind kind = ast.kind(child);
+            if (kind == CompactAST.Kind.VARIABLE_ASSIGNMENT) {
+                checkVariableAssignment(ast, child);
+            } else if (kind == CompactAST.Kind.DECLARATION) {
+                String error = TypeRules.declarationError(ast.symbols(), ast.payload(child), checkExpression(ast, ast.firstChild(child)));
+                if (error != null) {
+                    error(ast, child, error);
+                }
+            } else if (kind == CompactAST.Kind.IF_CLAUSE) {
+                variableTypes.push();
+                int condition = ast.firstChild(child);
+                if (checkExpression(ast, condition) != ExpressionType.BOOL) {
+                    error(ast, condition, TypeRules.IF_CONDITION_ERROR);
+                }
+                blocks.push(new CompactBlock(ast.nextSibling(condition), TypeRules.IF_CLAUSE_ERROR, true));
+            } else if (kind == CompactAST.Kind.ELSE_CLAUSE && block.allowsElseClause) {
+                //Not in the body of its if-clause, which is all that the object AST check visits
+                continue;
+            } else {
+                error(ast, child, block.unknownNodeError);
+            }
+        }
+    }
+
+    private void checkVariableAssignment(CompactAST ast, int assignment) {
+        ExpressionType type = checkExpression(ast, ast.firstChild(assignment));
+        variableTypes.put(ast.payload(assignment), type);
+    }
+
+    /*
+     Checks the operands before their operation, like checkExpression. The pending stack holds an operation
+     a second time as its complement, when the types of its operands are on the type stack.
+     */
+    private ExpressionType checkExpression(CompactAST ast, int expression) {
+        int[] pending = new int[16];
+        int pendingSize = 0;
+        ArrayDeque<ExpressionType> types = new ArrayDeque<>();
+        pending[pendingSize++] = expression;
+        while (pendingSize > 0) {
+            int next = pending[--pendingSize];
+            if (next < 0) {
+                ExpressionType rightside = types.pop();
+                ExpressionType leftside = types.pop();
+                boolean multiply = ast.kind(~next) == CompactAST.Kind.MULTIPLY_OPERATION;
+                String error = TypeRules.operationError(multiply, leftside, rightside);
+                if (error != null) {
+                    error(ast, ~next, error);
+                    types.push(ExpressionType.UNDEFINED);
+                } else {
+                    types.push(TypeRules.operationType(multiply, leftside, rightside));
+                }
+            } else if (!ast.kind(next).isOperation()) {
+                types.push(checkOperand(ast, next));
+            } else if (!checkOperationChildren(ast, next)) {
+                types.push(ExpressionType.UNDEFINED);
+            } else {
+                if (pendingSize + 3 > pending.length) {
+                    pending = Arrays.copyOf(pending, pending.length * 2);
+                }
+                int lhs = ast.firstChild(next);
+                pending[pendingSize++] = ~next;
+                pending[pendingSize++] = ast.nextSibling(lhs);
+                pending[pendingSize++] = lhs;
+            }
+        }
+        return types.pop();
+    }
+
+    private ExpressionType checkOperand(CompactAST ast, int operand) {
+        switch (ast.kind(operand)) {
+            case VARIABLE_REFERENCE:
+                ExpressionType type = variableTypes.get(ast.payload(operand));
+                if (type != null) {
+                    return type;
+                }
+                error(ast, operand, TypeRules.undefinedVariableError(ast.text(operand)));
+                return ExpressionType.UNDEFINED;
+            case BOOL_LITERAL:
+                return ExpressionType.BOOL;
+            case COLOR_LITERAL:
+                return ExpressionType.COLOR;
+            case SCALAR_LITERAL:
+                return ExpressionType.SCALAR;
+            case PIXEL_LITERAL:
+                return ExpressionType.PIXEL;
+            case PERCENTAGE_LITERAL:
+                return ExpressionType.PERCENTAGE;
+            default:
+                return ExpressionType.UNDEFINED;
+        }
+    }
+
+    private boolean checkOperationChildren(CompactAST ast, int operation) {
+        for (int child = ast.firstChild(operation); child != CompactAST.NONE; child = ast.nextSibling(child)) {
+            if (ast.kind(child) == CompactAST.Kind.COLOR_LITERAL) {
+                error(ast, child, TypeRules.COLOR_OPERAND_ERROR);
+                return false;
+            } else if (ast.kind(child) == CompactAST.Kind.BOOL_LITERAL) {
+                error(ast, child, TypeRules.BOOL_OPERAND_ERROR);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     Shared literals cannot hold errors, so an erroneous literal is replaced by an unshared copy first
+     */
+    private static Expression unshared(Expression expression) {
+        return expression instanceof Literal ? ((Literal) expression).unshared() : expression;
+    }
+
+    private static Expression unsharedOperand(Operation operation, ASTNode operand) {
+        if (operation.lhs == operand) {
+            return operation.lhs = unshared(operation.lhs);
+        }
+        return operation.rhs = unshared(operation.rhs);
     }
 }
@@ -0,0 +1,54 @@
+package nl.han.ica.icss.checker;
+
+import nl.han.ica.icss.ast.Literal;
+import nl.han.ica.icss.ast.literals.PercentageLiteral;
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import nl.han.ica.icss.ast.literals.ScalarLiteral;
+
+/**
+ * The values of the operations whose types {@link TypeRules} allows, shared by the Evaluator and the
+ * CheckingEvaluator so both compute exactly the same literals.
+ */
+public final class LiteralArithmetic {
+
+    private LiteralArithmetic() { }
+
+    /**
+     * The product of the operands, or null when they do not fit {@link TypeRules#operationError}.
+     */
+    public static Literal multiply(Literal leftside, Literal rightside) {
+        if (leftside instanceof ScalarLiteral && rightside instanceof ScalarLiteral) {
+            return ScalarLiteral.of(((ScalarLiteral) leftside).value * ((ScalarLiteral) rightside).value);
+        }
+        // Ensure scalar is on the right side for easier handling
+        if (leftside instanceof ScalarLiteral) {
+            Literal temp = leftside;
+            leftside = rightside;
+            rightside = temp;
+        }
+        if (rightside instanceof ScalarLiteral) {
+            if (leftside instanceof PixelLiteral) {
+                return PixelLiteral.of(((PixelLiteral) leftside).value * ((ScalarLiteral) rightside).value);
+            } else if (leftside instanceof PercentageLiteral) {
+                return PercentageLiteral.of(((PercentageLiteral) leftside).value * ((ScalarLiteral) rightside).value);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The sum or difference of the operands, or null when they do not fit {@link TypeRules#operationError}.
+     */
+    public static Literal addOrSubtract(Literal leftside, Literal rightside, boolean isAdd) {
+        if (leftside instanceof PixelLiteral && rightside instanceof PixelLiteral) {
+            int left = ((PixelLiteral) leftside).value;
+            int right = ((PixelLiteral) rightside).value;
+            return PixelLiteral.of(isAdd ? left + right : left - right);
+        } else if (leftside instanceof PercentageLiteral && rightside instanceof PercentageLiteral) {
+            int left = ((PercentageLiteral) leftside).value;
+            int right = ((PercentageLiteral) rightside).value;
+            return PercentageLiteral.of(isAdd ? left + right : left - right);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,91 @@
+package nl.han.ica.icss.checker;
+
+import nl.han.ica.icss.ast.Literal;
+import nl.han.ica.icss.ast.SymbolTable;
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.types.ExpressionType;
+
+/**
+ * The type rules of ICSS and their error messages, shared by the {@link Checker} and the
+ * CheckingEvaluator so both report exactly the same errors.
+ */
+public final class TypeRules {
+
+    public static final String STYLESHEET_ERROR = "Unknown type: not a stylerule or variable assignment";
+    public static final String STYLERULE_ERROR = "Unknown type: not a variable assignment, declaration or if-clause";
+    public static final String IF_CLAUSE_ERROR =
+            "An if-clause must include only declarations, variable assignments, if-clauses, or else-clauses";
+    public static final String ELSE_CLAUSE_ERROR =
+            "An else-clause must include only declarations, variable assignments or if-clauses";
+    public static final String IF_CONDITION_ERROR = "If condition must be a boolean expression";
+    public static final String COLOR_OPERAND_ERROR = "Color literals are not allowed in operations";
+    public static final String BOOL_OPERAND_ERROR = "Boolean literals are not allowed in operations";
+    public static final String UNKNOWN_OPERATION_ERROR = "Unknown operation";
+
+    private TypeRules() { }
+
+    public static String undefinedVariableError(String name) {
+        return "Variable " + name + " is not defined";
+    }
+
+    /**
+     * The error for a property with a value of the type, or null when the value fits.
+     * @param property the id of the property name in the symbols
+     */
+    public static String declarationError(SymbolTable symbols, int property, ExpressionType expressionType) {
+        switch (property) {
+            case SymbolTable.BACKGROUND_COLOR:
+            case SymbolTable.COLOR:
+                if (expressionType != ExpressionType.COLOR) {
+                    return "Only color expressions are allowed for " + symbols.name(property);
+                }
+                return null;
+            case SymbolTable.WIDTH:
+                if (expressionType != ExpressionType.PIXEL && expressionType != ExpressionType.PERCENTAGE) {
+                    return "Only pixel and percentage expressions are allowed for width";
+                }
+                return null;
+            case SymbolTable.HEIGHT:
+                if (expressionType != ExpressionType.PIXEL) {
+                    return "Only pixel expressions are allowed for height";
+                }
+                return null;
+            default:
+                return "Unknown property: " + symbols.name(property);
+        }
+    }
+
+    /**
+     * The error for an addition, subtraction or multiplication of operands of the types, or null when they fit.
+     */
+    public static String operationError(boolean multiply, ExpressionType leftside, ExpressionType rightside) {
+        if (multiply) {
+            // Multiplication requires at least one scalar
+            if (leftside != ExpressionType.SCALAR && rightside != ExpressionType.SCALAR) {
+                return "Multiply operation can only be used with an expression of type scalar and an expression of another type";
+            }
+        } else if (leftside != rightside) {
+            return "Operands must be of the same type";
+        }
+        return null;
+    }
+
+    /**
+     * The type of an operation whose operands fit, see {@link #operationError}.
+     */
+    public static ExpressionType operationType(boolean multiply, ExpressionType leftside, ExpressionType rightside) {
+        if (multiply) {
+            return (leftside == ExpressionType.SCALAR) ? rightside : leftside;
+        }
+        return leftside;
+    }
+
+    public static ExpressionType literalType(Literal literal) {
+        if (literal instanceof BoolLiteral) return ExpressionType.BOOL;
+        if (literal instanceof ColorLiteral) return ExpressionType.COLOR;
+        if (literal instanceof ScalarLiteral) return ExpressionType.SCALAR;
+        if (literal instanceof PixelLiteral) return ExpressionType.PIXEL;
+        if (literal instanceof PercentageLiteral) return ExpressionType.PERCENTAGE;
+        return ExpressionType.UNDEFINED;
+    }
+}
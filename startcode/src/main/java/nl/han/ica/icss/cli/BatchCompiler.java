@@ -0,0 +1,282 @@
+package nl.han.ica.icss.cli;
+
+import nl.han.ica.icss.CompileResult;
+import nl.han.ica.icss.ICSSCompiler;
+import nl.han.ica.icss.StreamingCompiler;
+import nl.han.ica.icss.cache.CompilationCache;
+import nl.han.ica.icss.metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Headless entry point that compiles every .icss file below a directory (or matching a glob)
+ * to .css, spreading the files over all available cores. With --stream every file is compiled by a
+ * {@link StreamingCompiler}, for inputs that do not fit in memory; caching and metrics are not available then.
+ *
+ * Usage: BatchCompiler &lt;directory|glob&gt; [--out &lt;directory&gt;] [--threads &lt;n&gt;] [--cache &lt;directory&gt;] [--metrics] [--stream]
+ */
+public class BatchCompiler {
+
+    private static final int CACHE_ENTRIES = 10_000;
+    private static final long CACHE_DISK_BYTES = 256L * 1024 * 1024;
+
+    private final ICSSCompiler compiler;
+    private final StreamingCompiler streamingCompiler;
+    private final Path outputDirectory;
+    private final int threads;
+
+    public BatchCompiler(Path outputDirectory, int threads) {
+        this(outputDirectory, threads, null, null);
+    }
+
+    /**
+     * @param cache cache shared by all files of the batch, or null to always compile
+     * @param metrics registry in which the phases of every compilation are recorded, or null
+     */
+    public BatchCompiler(Path outputDirectory, int threads, CompilationCache cache, MetricsRegistry metrics) {
+        this.compiler = new ICSSCompiler(cache, metrics);
+        this.streamingCompiler = null;
+        this.outputDirectory = outputDirectory;
+        this.threads = threads;
+    }
+
+    /**
+     * Creates a batch compiler that streams every file through a {@link StreamingCompiler}.
+     */
+    public BatchCompiler(Path outputDirectory, int threads, StreamingCompiler streamingCompiler) {
+        this.compiler = null;
+        this.streamingCompiler = streamingCompiler;
+        this.outputDirectory = outputDirectory;
+        this.threads = threads;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        System.exit(run(args, System.out));
+    }
+
+    /**
+     * Runs the batch for command line arguments, printing the errors and the summary to out.
+     * @return the exit code: 0 when every file compiled, 1 when some failed and 2 for invalid arguments
+     */
+    public static int run(String[] args, PrintStream out) throws IOException, InterruptedException {
+        String input = null;
+        Path outputDirectory = null;
+        Path cacheDirectory = null;
+        boolean printMetrics = false;
+        boolean stream = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--out") && i + 1 < args.length) {
+                outputDirectory = Paths.get(args[++i]);
+            } else if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--cache") && i + 1 < args.length) {
+                cacheDirectory = Paths.get(args[++i]);
+            } else if (args[i].equals("--metrics")) {
+                printMetrics = true;
+            } else if (args[i].equals("--stream")) {
+                stream = true;
+            } else if (input == null) {
+                input = args[i];
+            } else {
+                return usage();
+            }
+        }
+        if (input == null || threads < 1 || (stream && (cacheDirectory != null || printMetrics))) {
+            return usage();
+        }
+
+        CompilationCache cache = cacheDirectory == null ? null
+                : new CompilationCache(CACHE_ENTRIES, cacheDirectory, CACHE_DISK_BYTES);
+        MetricsRegistry metrics = printMetrics ? MetricsRegistry.global() : null;
+        BatchCompiler batch = stream ? new BatchCompiler(outputDirectory, threads, new StreamingCompiler())
+                : new BatchCompiler(outputDirectory, threads, cache, metrics);
+        Path base = baseDirectory(input);
+        long start = System.nanoTime();
+        List<BatchResult> results = batch.compileAll(base, findSources(input));
+        boolean success = report(results, System.nanoTime() - start, out);
+        if (cache != null) {
+            out.printf("Cache: %d hits (%d from disk), %d misses, %d evictions%n",
+                    cache.getHits(), cache.getDiskHits(), cache.getMisses(),
+                    cache.getEvictions() + cache.getDiskEvictions());
+        }
+        if (metrics != null) {
+            out.print(metrics.report());
+        }
+        return success ? 0 : 1;
+    }
+
+    private static int usage() {
+        System.err.println("Usage: BatchCompiler <directory|glob> [--out <directory>] [--threads <n>] [--cache <directory>] [--metrics] [--stream]");
+        return 2;
+    }
+
+    /**
+     * Collects the .icss files for a directory, or the files matching a glob such as "themes/**.icss".
+     */
+    public static List<Path> findSources(String input) throws IOException {
+        Path base = baseDirectory(input);
+        PathMatcher matcher;
+        if (Files.isDirectory(Paths.get(input))) {
+            matcher = path -> path.toString().endsWith(OutputFiles.SOURCE_EXTENSION);
+        } else {
+            String pattern = input.substring(globSeparator(input) + 1);
+            PathMatcher glob = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+            matcher = path -> glob.matches(base.relativize(path));
+        }
+        try (Stream<Path> files = Files.walk(base)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(matcher::matches)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /*
+     The directory to search: the input itself, or the part of a glob before its first wildcard.
+     */
+    private static Path baseDirectory(String input) {
+        if (Files.isDirectory(Paths.get(input))) {
+            return Paths.get(input);
+        }
+        int separator = globSeparator(input);
+        if (separator < 0) {
+            return Paths.get(".");
+        }
+        return Paths.get(separator == 0 ? "/" : input.substring(0, separator));
+    }
+
+    /*
+     Index of the last '/' before the first wildcard of a glob, or -1 for a glob without directory part.
+     */
+    private static int globSeparator(String input) {
+        int firstGlobChar = input.length();
+        for (char c : new char[]{'*', '?', '[', '{'}) {
+            int index = input.indexOf(c);
+            if (index >= 0) {
+                firstGlobChar = Math.min(firstGlobChar, index);
+            }
+        }
+        return input.lastIndexOf('/', firstGlobChar);
+    }
+
+    /**
+     * Compiles all sources in parallel. Results are returned in the order of the sources.
+     */
+    public List<BatchResult> compileAll(Path base, List<Path> sources) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<BatchResult>> futures = new ArrayList<>();
+            for (Path source : sources) {
+                futures.add(executor.submit(() -> compile(base, source)));
+            }
+            List<BatchResult> results = new ArrayList<>();
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    results.add(new BatchResult(sources.get(i), 0, 0,
+                            Collections.singletonList("Internal error: " + e.getCause())));
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private BatchResult compile(Path base, Path source) {
+        if (streamingCompiler != null) {
+            return compileStreaming(base, source);
+        }
+        long start = System.nanoTime();
+        long size;
+        CompileResult result;
+        try {
+            size = Files.size(source);
+            result = compiler.compile(source);
+        } catch (IOException e) {
+            return new BatchResult(source, 0, System.nanoTime() - start,
+                    Collections.singletonList("Cannot read file: " + e.getMessage()));
+        }
+
+        List<String> errors = new ArrayList<>(result.getErrors());
+        if (result.isSuccess()) {
+            try {
+                OutputFiles.writeAtomically(OutputFiles.cssFileFor(base, source, outputDirectory), result.getCss());
+            } catch (IOException e) {
+                errors.add("Cannot write output: " + e.getMessage());
+            }
+        }
+        return new BatchResult(source, size, System.nanoTime() - start, errors);
+    }
+
+    private BatchResult compileStreaming(Path base, Path source) {
+        long start = System.nanoTime();
+        List<String> errors = new ArrayList<>();
+        long size = 0;
+        try (Reader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8)) {
+            size = Files.size(source);
+            OutputFiles.writeAtomically(OutputFiles.cssFileFor(base, source, outputDirectory), writer -> {
+                CompileResult result = streamingCompiler.compile(reader, writer);
+                errors.addAll(result.getErrors());
+                return result.isSuccess();
+            });
+        } catch (IOException e) {
+            errors.add("Cannot compile file: " + e.getMessage());
+        }
+        return new BatchResult(source, size, System.nanoTime() - start, errors);
+    }
+
+    /**
+     * Prints per-file errors and a throughput summary to stdout.
+     * @param wallNanos wall clock time of the whole batch, used for the throughput figures
+     * @return true when every file compiled without errors
+     */
+    public static boolean report(List<BatchResult> results, long wallNanos) {
+        return report(results, wallNanos, System.out);
+    }
+
+    /**
+     * Like {@link #report(List, long)}, printing to out.
+     */
+    public static boolean report(List<BatchResult> results, long wallNanos, PrintStream out) {
+        long failed = 0;
+        long bytes = 0;
+        for (BatchResult result : results) {
+            bytes += result.getBytes();
+            if (!result.isSuccess()) {
+                failed++;
+                for (String error : result.getErrors()) {
+                    out.println(result.getSource() + ": " + error);
+                }
+            }
+        }
+        out.println(summary(results.size(), failed, bytes, wallNanos));
+        return failed == 0;
+    }
+
+    private static String summary(long files, long failed, long bytes, long nanos) {
+        double seconds = Math.max(nanos, 1) / 1e9;
+        return String.format("Compiled %d files (%d failed), %d bytes in %.2f s, %.1f files/s, %.2f MB/s",
+                files, failed, bytes, seconds, files / seconds, bytes / 1e6 / seconds);
+    }
+}
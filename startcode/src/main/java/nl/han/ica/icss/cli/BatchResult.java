@@ -0,0 +1,38 @@
+package nl.han.ica.icss.cli;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Outcome of compiling a single file in a batch.
+ */
+public class BatchResult {
+
+    private final Path source;
+    private final long bytes;
+    private final long nanos;
+    private final List<String> errors;
+
+    public BatchResult(Path source, long bytes, long nanos, List<String> errors) {
+        this.source = source;
+        this.bytes = bytes;
+        this.nanos = nanos;
+        this.errors = errors;
+    }
+
+    public Path getSource() {
+        return source;
+    }
+    public long getBytes() {
+        return bytes;
+    }
+    public long getNanos() {
+        return nanos;
+    }
+    public List<String> getErrors() {
+        return errors;
+    }
+    public boolean isSuccess() {
+        return errors.isEmpty();
+    }
+}
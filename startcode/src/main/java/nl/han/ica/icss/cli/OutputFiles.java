@@ -0,0 +1,83 @@
+package nl.han.ica.icss.cli;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Helpers shared by the command line tools for naming and writing generated CSS files.
+ */
+public class OutputFiles {
+
+    public static final String SOURCE_EXTENSION = ".icss";
+    public static final String TARGET_EXTENSION = ".css";
+
+    private OutputFiles() { }
+
+    /**
+     * The CSS file for a source: next to it, or at the same relative location below outputDirectory.
+     */
+    public static Path cssFileFor(Path base, Path source, Path outputDirectory) {
+        String fileName = source.getFileName().toString();
+        String cssName = fileName.endsWith(SOURCE_EXTENSION)
+                ? fileName.substring(0, fileName.length() - SOURCE_EXTENSION.length()) + TARGET_EXTENSION
+                : fileName + TARGET_EXTENSION;
+        if (outputDirectory == null) {
+            return source.resolveSibling(cssName);
+        }
+        Path relative = base.relativize(source);
+        return outputDirectory.resolve(relative).resolveSibling(cssName);
+    }
+
+    /**
+     * Writes the content to a temporary file next to the target and moves it into place, so readers
+     * such as dev servers see either the old or the new file, never a half-written one.
+     */
+    public static void writeAtomically(Path target, String content) throws IOException {
+        writeAtomically(target, writer -> {
+            writer.write(content);
+            return true;
+        });
+    }
+
+    /**
+     * Like {@link #writeAtomically(Path, String)} for content that is written piece by piece.
+     * The target is only replaced when the content returns true.
+     * @return whether the target was replaced
+     */
+    public static boolean writeAtomically(Path target, Content content) throws IOException {
+        Path directory = target.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, "." + target.getFileName(), ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+                if (!content.writeTo(writer)) {
+                    return false;
+                }
+            }
+            try {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Content of a file that is written in one or more steps.
+     */
+    @FunctionalInterface
+    public interface Content {
+        /**
+         * @return false to keep the existing file
+         */
+        boolean writeTo(Writer writer) throws IOException;
+    }
+}
@@ -0,0 +1,230 @@
+package nl.han.ica.icss.cli;
+
+import nl.han.ica.icss.CompileResult;
+import nl.han.ica.icss.IncrementalCompiler;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Keeps one JVM running and recompiles .icss files below a directory whenever they change.
+ *
+ * File system events are debounced: compilation starts once no new event arrived for the debounce
+ * period, so a burst of saves compiles each file once. Every file keeps its own {@link IncrementalCompiler},
+ * so only the statements that changed, or that use a changed variable, are compiled again.
+ * Output is written atomically. Deleting a source deletes its CSS file.
+ *
+ * Usage: WatchCompiler &lt;directory&gt; [--out &lt;directory&gt;] [--debounce &lt;milliseconds&gt;]
+ */
+public class WatchCompiler {
+
+    private static final long DEFAULT_DEBOUNCE_MILLIS = 100;
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private final Path base;
+    private final Path outputDirectory;
+    private final long debounceMillis;
+    private final Map<Path, IncrementalCompiler> compilers = new HashMap<>();
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+    private final PrintStream out;
+    private volatile long compilations = 0;
+
+    public WatchCompiler(Path base, Path outputDirectory, long debounceMillis) {
+        this(base, outputDirectory, debounceMillis, System.out);
+    }
+
+    /**
+     * @param out where compilations and errors are logged
+     */
+    public WatchCompiler(Path base, Path outputDirectory, long debounceMillis, PrintStream out) {
+        this.base = base;
+        this.outputDirectory = outputDirectory;
+        this.debounceMillis = debounceMillis;
+        this.out = out;
+    }
+
+    /**
+     * The number of times a source was compiled since the start, including the first compilation of every file.
+     */
+    public long getCompilations() {
+        return compilations;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path base = null;
+        Path out = null;
+        long debounce = DEFAULT_DEBOUNCE_MILLIS;
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--out") && i + 1 < args.length) {
+                out = Paths.get(args[++i]);
+            } else if (args[i].equals("--debounce") && i + 1 < args.length) {
+                debounce = Long.parseLong(args[++i]);
+            } else if (base == null) {
+                base = Paths.get(args[i]);
+            } else {
+                base = null;
+                break;
+            }
+        }
+        if (base == null || !Files.isDirectory(base)) {
+            System.err.println("Usage: WatchCompiler <directory> [--out <directory>] [--debounce <milliseconds>]");
+            System.exit(2);
+        }
+        new WatchCompiler(base, out, debounce).run();
+    }
+
+    /**
+     * Compiles every source once and then watches for changes until the thread is interrupted.
+     */
+    public void run() throws IOException, InterruptedException {
+        try (WatchService watchService = base.getFileSystem().newWatchService()) {
+            registerAll(watchService, base);
+            compile(BatchCompiler.findSources(base.toString()));
+            out.println("Watching " + base + " for changes...");
+
+            while (!Thread.currentThread().isInterrupted()) {
+                Set<Path> changed = new LinkedHashSet<>();
+                Set<Path> deleted = new LinkedHashSet<>();
+                WatchKey key = watchService.take();
+                while (key != null) {
+                    collectEvents(watchService, key, changed, deleted);
+                    key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+                }
+                for (Path source : deleted) {
+                    if (!changed.contains(source)) {
+                        remove(source);
+                    }
+                }
+                compile(new ArrayList<>(changed));
+            }
+        } catch (ClosedWatchServiceException e) {
+            //Stopped from the outside
+        }
+    }
+
+    private void collectEvents(WatchService watchService, WatchKey key, Set<Path> changed, Set<Path> deleted) {
+        Path directory = watchedDirectories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW || directory == null) {
+                //Events were lost, so look at everything again
+                rescan(watchService, changed);
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+                try {
+                    registerAll(watchService, path);
+                    try (Stream<Path> files = Files.walk(path)) {
+                        files.filter(WatchCompiler::isSource).forEach(changed::add);
+                    }
+                } catch (IOException | UncheckedIOException e) {
+                    //Editors and git create and remove temporary directories. One that is gone holds no sources;
+                    //one that changed while it was walked may have sources that were missed
+                    if (Files.isDirectory(path)) {
+                        rescan(watchService, changed);
+                    }
+                }
+            } else if (path.toString().endsWith(OutputFiles.SOURCE_EXTENSION)) {
+                if (event.kind() == ENTRY_DELETE) {
+                    deleted.add(path);
+                    changed.remove(path);
+                } else {
+                    changed.add(path);
+                }
+            }
+        }
+        if (!key.reset()) {
+            watchedDirectories.remove(key);
+        }
+    }
+
+    /*
+     Watches every directory again and marks every source as changed. When even that fails, the next event
+     gets another chance.
+     */
+    private void rescan(WatchService watchService, Set<Path> changed) {
+        try {
+            registerAll(watchService, base);
+            changed.addAll(BatchCompiler.findSources(base.toString()));
+        } catch (IOException | UncheckedIOException e) {
+            log("Cannot scan " + base + ": " + e.getMessage());
+        }
+    }
+
+    private void registerAll(WatchService watchService, Path directory) throws IOException {
+        try (Stream<Path> directories = Files.walk(directory)) {
+            for (Path subdirectory : (Iterable<Path>) directories.filter(Files::isDirectory)::iterator) {
+                try {
+                    WatchKey key = subdirectory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+                    watchedDirectories.put(key, subdirectory);
+                } catch (NoSuchFileException | NotDirectoryException e) {
+                    //Removed since it was found; its parent reports that
+                }
+            }
+        }
+    }
+
+    private void compile(List<Path> sources) {
+        for (Path source : sources) {
+            if (!isSource(source)) {
+                continue;
+            }
+            long start = System.nanoTime();
+            String input;
+            try {
+                input = Files.readString(source, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                log(source + ": Cannot read file: " + e.getMessage());
+                continue;
+            }
+            IncrementalCompiler compiler = compilers.computeIfAbsent(source, path -> new IncrementalCompiler());
+            CompileResult result = compiler.compile(input);
+            compilations++;
+            if (!result.isSuccess()) {
+                for (String error : result.getErrors()) {
+                    log(source + ": " + error);
+                }
+                continue;
+            }
+            try {
+                OutputFiles.writeAtomically(OutputFiles.cssFileFor(base, source, outputDirectory), result.getCss());
+                log(String.format("Compiled %s in %.1f ms (%d of %d statements recompiled)", source,
+                        (System.nanoTime() - start) / 1e6, compiler.getRecompiledSegments(),
+                        compiler.getRecompiledSegments() + compiler.getReusedSegments()));
+            } catch (IOException e) {
+                log(source + ": Cannot write output: " + e.getMessage());
+            }
+        }
+    }
+
+    private void remove(Path source) {
+        compilers.remove(source);
+        try {
+            Path target = OutputFiles.cssFileFor(base, source, outputDirectory);
+            if (Files.deleteIfExists(target)) {
+                log("Deleted " + target);
+            }
+        } catch (IOException e) {
+            log(source + ": Cannot delete output: " + e.getMessage());
+        }
+    }
+
+    private static boolean isSource(Path path) {
+        return Files.isRegularFile(path) && path.toString().endsWith(OutputFiles.SOURCE_EXTENSION);
+    }
+
+    private void log(String message) {
+        out.println("[" + LocalTime.now().format(TIME) + "] " + message);
+    }
+}
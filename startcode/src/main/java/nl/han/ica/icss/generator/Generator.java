@@ -3,67 +3,288 @@ package nl.han.ica.icss.generator;
 import nl.han.ica.icss.ast.*;
 import nl.han.ica.icss.ast.literals.*;
 import nl.han.ica.icss.ast.selectors.*;
+import nl.han.ica.icss.jfr.GenerateEvent;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 public class Generator {
 
+	private static final int BUFFER_SIZE = 8192;
+
 	public String generate(AST ast) {
-        return generateStylesheet(ast.root);
+		StringBuilder css = new StringBuilder();
+		try {
+			generate(ast, css);
+		} catch (IOException e) {
+			//A StringBuilder does not throw
+			throw new UncheckedIOException(e);
+		}
+		return css.toString();
+	}
+
+	/**
+	 * Writes the CSS straight to the given sink, without building it in memory first.
+	 */
+	public void generate(AST ast, Appendable out) throws IOException {
+		GenerateEvent event = new GenerateEvent();
+		event.begin();
+		CountingAppendable counter = new CountingAppendable(out);
+		generateStylesheet(ast.root, counter);
+		event.end();
+		if (event.shouldCommit()) {
+			event.inputSize = event.nodeCount = ast.getNodeCount();
+			event.outputSize = counter.count;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Writes the CSS as UTF-8 to the stream. The stream is not closed.
+	 */
+	public void generate(AST ast, OutputStream out) throws IOException {
+		generate(ast, Channels.newChannel(out));
+	}
+
+	/**
+	 * Writes the CSS as UTF-8 to the channel, through one buffer that is reused until the end.
+	 * The channel is not closed.
+	 */
+	public void generate(AST ast, WritableByteChannel out) throws IOException {
+		ChannelAppendable sink = new ChannelAppendable(out);
+		generate(ast, sink);
+		sink.flush();
+	}
+
+	public String generate(CompactAST ast) {
+		StringBuilder css = new StringBuilder();
+		try {
+			generate(ast, css);
+		} catch (IOException e) {
+			//A StringBuilder does not throw
+			throw new UncheckedIOException(e);
+		}
+		return css.toString();
+	}
+
+	/**
+	* Writes the CSS of an evaluated compact AST, the same as for the object AST it stands for.
+	*/
+	public void generate(CompactAST ast, Appendable out) throws IOException {
+		GenerateEvent event = new GenerateEvent();
+		event.begin();
+		CountingAppendable counter = new CountingAppendable(out);
+		generateStylesheet(ast, counter);
+		event.end();
+		if (event.shouldCommit()) {
+			event.inputSize = event.nodeCount = ast.size();
+			event.outputSize = counter.count;
+			event.commit();
+		}
+	}
+
+	private void generateStylesheet(CompactAST ast, Appendable out) throws IOException {
+		for (int rule = ast.firstChild(ast.root()); rule != CompactAST.NONE; rule = ast.nextSibling(rule)) {
+			if (ast.kind(rule) != CompactAST.Kind.STYLERULE) {
+				continue;
+			}
+			int child = ast.firstChild(rule);
+			for (; child != CompactAST.NONE && ast.kind(child).isSelector(); child = ast.nextSibling(child)) {
+				out.append(ast.text(child));
+			}
+			out.append("{\n");
+			for (; child != CompactAST.NONE; child = ast.nextSibling(child)) {
+				if (ast.kind(child) == CompactAST.Kind.DECLARATION) {
+					// Two spaces per scope level (GE02 requirement)
+					out.append("  ").append(ast.text(child)).append(": ");
+					generateLiteral(ast, ast.firstChild(child), out);
+					out.append(";\n");
+				}
+			}
+			out.append("}\n");
+		}
 	}
 
-	private String generateStylesheet(Stylesheet sheet) {
-		StringBuilder stylesheet = new StringBuilder();
+	private void generateLiteral(CompactAST ast, int literal, Appendable out) throws IOException {
+		if (literal == CompactAST.NONE) {
+			out.append("null");
+			return;
+		}
+		switch (ast.kind(literal)) {
+			case COLOR_LITERAL:
+				out.append(ast.text(literal));
+				break;
+			case PERCENTAGE_LITERAL:
+				out.append(Integer.toString(ast.payload(literal))).append("%");
+				break;
+			case PIXEL_LITERAL:
+				out.append(Integer.toString(ast.payload(literal))).append("px");
+				break;
+			case SCALAR_LITERAL:
+				out.append(Integer.toString(ast.payload(literal)));
+				break;
+			default:
+				out.append("null");
+		}
+	}
+
+	private void generateStylesheet(Stylesheet sheet, Appendable out) throws IOException {
 		for (ASTNode child : sheet.getChildren()) {
 			if (child instanceof Stylerule) {
-				stylesheet.append(generateStylerule((Stylerule) child)).append("\n");
+				generateStylerule((Stylerule) child, out);
+				out.append("\n");
 			}
 		}
-		return stylesheet.toString();
 	}
 
-	private String generateStylerule(Stylerule rule) {
-		StringBuilder stylerule = new StringBuilder();
-		stylerule.append(generateSelector(rule.selectors));
+	private void generateStylerule(Stylerule rule, Appendable out) throws IOException {
+		generateSelector(rule.selectors, out);
 
 		for (ASTNode child : rule.body) {
 			if (child instanceof Declaration) {
 				// Two spaces per scope level (GE02 requirement)
-				stylerule.append("  ").append(generateDeclaration((Declaration) child)).append("\n");
+				out.append("  ");
+				generateDeclaration((Declaration) child, out);
+				out.append("\n");
 			}
 		}
-		return stylerule.append("}").toString();
+		out.append("}");
 	}
 
-	private String generateSelector(List<Selector> selector) {
-		StringBuilder selectors = new StringBuilder();
+	private void generateSelector(List<Selector> selector, Appendable out) throws IOException {
 		for (Selector s : selector) {
 			if (s instanceof TagSelector) {
-				selectors.append(((TagSelector) s).tag);
+				out.append(((TagSelector) s).tag);
 			} else if (s instanceof ClassSelector) {
-				selectors.append(((ClassSelector) s).cls);
+				out.append(((ClassSelector) s).cls);
 			} else if (s instanceof IdSelector) {
-				selectors.append(((IdSelector) s).id);
+				out.append(((IdSelector) s).id);
 			}
 		}
-		return selectors.append("{\n").toString();
+		out.append("{\n");
 	}
 
-	private String generateDeclaration(Declaration declaration) {
-		return declaration.property.name + ": " + generateLiteral((Literal) declaration.expression) + ";";
+	private void generateDeclaration(Declaration declaration, Appendable out) throws IOException {
+		out.append(declaration.property.name).append(": ");
+		generateLiteral((Literal) declaration.expression, out);
+		out.append(";");
 	}
 
-	private String generateLiteral(Literal expression) {
+	private void generateLiteral(Literal expression, Appendable out) throws IOException {
 		if (expression instanceof ColorLiteral) {
-			return ((ColorLiteral) expression).value;
+			out.append(((ColorLiteral) expression).value);
 		} else if (expression instanceof PercentageLiteral) {
-			return ((PercentageLiteral) expression).value + "%";
+			out.append(Integer.toString(((PercentageLiteral) expression).value)).append("%");
 		} else if (expression instanceof PixelLiteral) {
-			return ((PixelLiteral) expression).value + "px";
+			out.append(Integer.toString(((PixelLiteral) expression).value)).append("px");
 		} else if (expression instanceof ScalarLiteral) {
-			return String.valueOf(((ScalarLiteral) expression).value);
+			out.append(Integer.toString(((ScalarLiteral) expression).value));
 		} else {
-			return null;
+			out.append("null");
+		}
+	}
+
+	/*
+	 Counts the characters written, for the GenerateEvent.
+	 */
+	private static class CountingAppendable implements Appendable {
+		final Appendable out;
+		long count = 0;
+
+		CountingAppendable(Appendable out) {
+			this.out = out;
+		}
+
+		@Override
+		public Appendable append(CharSequence csq) throws IOException {
+			count += csq.length();
+			out.append(csq);
+			return this;
+		}
+
+		@Override
+		public Appendable append(CharSequence csq, int start, int end) throws IOException {
+			count += end - start;
+			out.append(csq, start, end);
+			return this;
+		}
+
+		@Override
+		public Appendable append(char c) throws IOException {
+			count++;
+			out.append(c);
+			return this;
+		}
+	}
+
+	/*
+	 Collects characters in a buffer and encodes them to the channel whenever it is full.
+	 */
+	private static class ChannelAppendable implements Appendable {
+		final WritableByteChannel channel;
+		final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+		final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+		final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE * 3);
+
+		ChannelAppendable(WritableByteChannel channel) {
+			this.channel = channel;
+		}
+
+		@Override
+		public Appendable append(CharSequence csq) throws IOException {
+			return append(csq, 0, csq.length());
+		}
+
+		@Override
+		public Appendable append(CharSequence csq, int start, int end) throws IOException {
+			for (int i = start; i < end; i++) {
+				append(csq.charAt(i));
+			}
+			return this;
+		}
+
+		@Override
+		public Appendable append(char c) throws IOException {
+			if (!chars.hasRemaining()) {
+				encode(false);
+			}
+			chars.put(c);
+			return this;
+		}
+
+		void flush() throws IOException {
+			encode(true);
+			bytes.clear();
+			encoder.flush(bytes);
+			write();
+		}
+
+		private void encode(boolean endOfInput) throws IOException {
+			chars.flip();
+			bytes.clear();
+			CoderResult result = encoder.encode(chars, bytes, endOfInput);
+			if (result.isError()) {
+				result.throwException();
+			}
+			write();
+			//A high surrogate at the end waits for its low surrogate
+			chars.compact();
+		}
+
+		private void write() throws IOException {
+			bytes.flip();
+			while (bytes.hasRemaining()) {
+				channel.write(bytes);
+			}
 		}
 	}
 }
@@ -0,0 +1,11 @@
+package nl.han.ica.icss.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("nl.han.ica.icss.AstBuild")
+@Label("ICSS AST Building")
+@Description("Extracting the AST from the parse tree with the ASTListener")
+public class AstBuildEvent extends CompilePhaseEvent {
+}
@@ -0,0 +1,11 @@
+package nl.han.ica.icss.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("nl.han.ica.icss.Check")
+@Label("ICSS Checking")
+@Description("Semantic checks by the Checker")
+public class CheckEvent extends CompilePhaseEvent {
+}
@@ -0,0 +1,27 @@
+package nl.han.ica.icss.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Base class of the Flight Recorder events emitted by the compiler phases. Callers only compute the
+ * fields when {@link #shouldCommit()} returns true, so the events cost next to nothing when not recorded.
+ */
+@Category({"ICSS", "Compiler"})
+@StackTrace(false)
+public abstract class CompilePhaseEvent extends Event {
+
+    @Label("Input Size")
+    @Description("Characters for lexing, tokens for parsing and AST building, AST nodes for the other phases")
+    public long inputSize;
+
+    @Label("Node Count")
+    @Description("AST nodes after the phase")
+    public long nodeCount;
+
+    @Label("Error Count")
+    public int errorCount;
+}
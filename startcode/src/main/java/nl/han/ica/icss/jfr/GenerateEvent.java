@@ -0,0 +1,15 @@
+package nl.han.ica.icss.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("nl.han.ica.icss.Generate")
+@Label("ICSS Generating")
+@Description("Generating CSS with the Generator")
+public class GenerateEvent extends CompilePhaseEvent {
+
+    @Label("Output Size")
+    @Description("Characters of generated CSS")
+    public long outputSize;
+}
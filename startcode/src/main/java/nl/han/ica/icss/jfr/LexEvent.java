@@ -0,0 +1,11 @@
+package nl.han.ica.icss.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("nl.han.ica.icss.Lex")
+@Label("ICSS Lexing")
+@Description("Tokenizing the source with the ANTLR lexer")
+public class LexEvent extends CompilePhaseEvent {
+}
@@ -0,0 +1,11 @@
+package nl.han.ica.icss.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("nl.han.ica.icss.Parse")
+@Label("ICSS Parsing")
+@Description("Building the ANTLR parse tree")
+public class ParseEvent extends CompilePhaseEvent {
+}
@@ -0,0 +1,11 @@
+package nl.han.ica.icss.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("nl.han.ica.icss.Transform")
+@Label("ICSS Transforming")
+@Description("Evaluating expressions and if-clauses with the Evaluator")
+public class TransformEvent extends CompilePhaseEvent {
+}
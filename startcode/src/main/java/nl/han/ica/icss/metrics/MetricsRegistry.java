@@ -0,0 +1,122 @@
+package nl.han.ica.icss.metrics;
+
+import nl.han.ica.icss.Phase;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Named counters and histograms, safe to update from any number of threads.
+ *
+ * The compiler records for every phase: "phase.wall" (nanoseconds) and "phase.allocated" (bytes)
+ * histograms, and "phase.runs" and "phase.nodes" counters, where phase is parse, check, transform or generate.
+ */
+public class MetricsRegistry implements MetricsRegistryMXBean {
+
+    private static final MetricsRegistry GLOBAL = new MetricsRegistry();
+
+    private final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    /**
+     * The registry used by the Pipeline unless another one is given.
+     */
+    public static MetricsRegistry global() {
+        return GLOBAL;
+    }
+
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    public void increment(String name, long delta) {
+        counters.computeIfAbsent(name, key -> new LongAdder()).add(delta);
+    }
+
+    public long getCounter(String name) {
+        LongAdder counter = counters.get(name);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * Records one run of a compiler phase. A negative allocation means it could not be measured.
+     */
+    public void recordPhase(Phase phase, long wallNanos, long allocatedBytes, long nodes) {
+        String prefix = phase.name().toLowerCase();
+        histogram(prefix + ".wall").record(wallNanos);
+        if (allocatedBytes >= 0) {
+            histogram(prefix + ".allocated").record(allocatedBytes);
+        }
+        increment(prefix + ".runs", 1);
+        increment(prefix + ".nodes", nodes);
+    }
+
+    public Map<String, Histogram> getHistograms() {
+        return new TreeMap<>(histograms);
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        Map<String, Long> values = new TreeMap<>();
+        counters.forEach((name, counter) -> values.put(name, counter.sum()));
+        return values;
+    }
+
+    @Override
+    public Map<String, Long> getHistogramSummaries() {
+        Map<String, Long> values = new TreeMap<>();
+        histograms.forEach((name, histogram) -> {
+            values.put(name + ".count", histogram.getCount());
+            values.put(name + ".p50", histogram.getPercentile(0.50));
+            values.put(name + ".p95", histogram.getPercentile(0.95));
+            values.put(name + ".p99", histogram.getPercentile(0.99));
+            values.put(name + ".max", histogram.getMax());
+        });
+        return values;
+    }
+
+    @Override
+    public void reset() {
+        histograms.clear();
+        counters.clear();
+    }
+
+    /**
+     * Publishes this registry in the platform MBean server as nl.han.ica.icss:type=Metrics,name=&lt;name&gt;.
+     * Registering the same name twice is ignored.
+     */
+    public ObjectName registerMBean(String name) {
+        try {
+            ObjectName objectName = new ObjectName("nl.han.ica.icss:type=Metrics,name=" + ObjectName.quote(name));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            try {
+                server.registerMBean(this, objectName);
+            } catch (InstanceAlreadyExistsException e) {
+                //Already published
+            }
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register metrics in JMX", e);
+        }
+    }
+
+    /**
+     * A human readable table of all histograms and counters.
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        getHistograms().forEach((name, histogram) -> report.append(String.format(
+                "%-22s count=%-8d p50=%-12d p95=%-12d p99=%-12d max=%d%n", name, histogram.getCount(),
+                histogram.getPercentile(0.50), histogram.getPercentile(0.95), histogram.getPercentile(0.99),
+                histogram.getMax())));
+        getCounters().forEach((name, value) -> report.append(String.format("%-22s %d%n", name, value)));
+        return report.toString();
+    }
+}
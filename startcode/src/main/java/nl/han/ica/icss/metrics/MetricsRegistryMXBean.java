@@ -0,0 +1,21 @@
+package nl.han.ica.icss.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of a {@link MetricsRegistry}.
+ */
+public interface MetricsRegistryMXBean {
+
+    /**
+     * All counters by name.
+     */
+    Map<String, Long> getCounters();
+
+    /**
+     * For every histogram: its count, p50, p95, p99 and max, keyed as "name.p95" and so on.
+     */
+    Map<String, Long> getHistogramSummaries();
+
+    void reset();
+}
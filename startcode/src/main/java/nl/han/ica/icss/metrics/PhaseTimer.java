@@ -0,0 +1,78 @@
+package nl.han.ica.icss.metrics;
+
+import nl.han.ica.icss.Phase;
+import nl.han.ica.icss.ast.AST;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures one run of a compiler phase on the current thread: wall time, bytes allocated by the
+ * thread and the number of AST nodes the phase worked on. Without a registry only wall time is measured.
+ *
+ * Counting nodes walks the whole tree, so a compilation counts them once after parsing, with
+ * {@link #countNodes}, and passes that number to every phase.
+ */
+public final class PhaseTimer {
+
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+
+    private final MetricsRegistry registry;
+    private final Phase phase;
+    private final long startNanos;
+    private final long startAllocated;
+
+    private PhaseTimer(MetricsRegistry registry, Phase phase) {
+        this.registry = registry;
+        this.phase = phase;
+        this.startAllocated = registry == null ? -1 : allocatedBytes();
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * @param registry where to record the phase, or null to only measure wall time
+     */
+    public static PhaseTimer start(MetricsRegistry registry, Phase phase) {
+        return new PhaseTimer(registry, phase);
+    }
+
+    /**
+     * The number of nodes in the AST, or 0 without a registry, in which case nobody would read it.
+     * @param ast may be null
+     */
+    public static long countNodes(MetricsRegistry registry, AST ast) {
+        return registry == null || ast == null ? 0 : ast.getNodeCount();
+    }
+
+    /**
+     * Ends the measurement and records it.
+     * @param nodes the number of AST nodes the phase worked on, see {@link #countNodes}
+     * @return the wall time of the phase in nanoseconds
+     */
+    public long stop(long nodes) {
+        long wallNanos = System.nanoTime() - startNanos;
+        if (registry != null) {
+            long allocated = startAllocated < 0 ? -1 : allocatedBytes() - startAllocated;
+            registry.recordPhase(phase, wallNanos, allocated, nodes);
+        }
+        return wallNanos;
+    }
+
+    private static long allocatedBytes() {
+        return THREADS == null ? -1 : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /*
+     Per-thread allocation counting is a HotSpot extension of ThreadMXBean.
+     */
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+            if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+                return hotspot;
+            }
+        }
+        return null;
+    }
+}
@@ -24,6 +24,7 @@ public class ASTListener extends ICSSBaseListener {
 	//Use this to keep track of the parent nodes when recursively traversing the ast
 	private IHANStack<ASTNode> currentContainer;
 
+
 	public ASTListener() {
 		ast = new AST();
 		currentContainer = new HANStack<>();
@@ -61,11 +62,11 @@ public class ASTListener extends ICSSBaseListener {
 		// Determine selector type from parse tree context
 		Selector selector;
 		if (ctx.LOWER_IDENT() != null) {
-			selector = new TagSelector(ctx.LOWER_IDENT().getText());
+			selector = new TagSelector(ast.symbols.canonical(ctx.LOWER_IDENT().getText()));
 		} else if (ctx.ID_IDENT() != null) {
-			selector = new IdSelector(ctx.ID_IDENT().getText());
+			selector = new IdSelector(ast.symbols.canonical(ctx.ID_IDENT().getText()));
 		} else {
-			selector = new ClassSelector(ctx.CLASS_IDENT().getText());
+			selector = new ClassSelector(ast.symbols.canonical(ctx.CLASS_IDENT().getText()));
 		}
 		currentContainer.peek().addChild(selector);
 	}
@@ -73,7 +74,7 @@ public class ASTListener extends ICSSBaseListener {
 	@Override
 	public void enterVariableAssignment(ICSSParser.VariableAssignmentContext ctx) {
 		VariableAssignment variableAssignment = new VariableAssignment();
-		variableAssignment.name = new VariableReference(ctx.CAPITAL_IDENT().getText());
+		variableAssignment.name = new VariableReference(ctx.CAPITAL_IDENT().getText(), ast.symbols);
 		currentContainer.push(variableAssignment);
 	}
 
@@ -116,7 +117,7 @@ public class ASTListener extends ICSSBaseListener {
 	@Override
 	public void exitDeclaration(ICSSParser.DeclarationContext ctx) {
 		Declaration declaration = (Declaration) currentContainer.pop();
-		declaration.property = new PropertyName(ctx.LOWER_IDENT().getText());
+		declaration.property = new PropertyName(ctx.LOWER_IDENT().getText(), ast.symbols);
 		currentContainer.peek().addChild(declaration);
 	}
 
@@ -152,19 +153,19 @@ public class ASTListener extends ICSSBaseListener {
 		// Determine literal type from parse tree context
 		Expression expression;
 		if (ctx.COLOR() != null) {
-			expression = new ColorLiteral(ctx.COLOR().getText());
+			expression = ColorLiteral.of(ctx.COLOR().getText());
 		} else if (ctx.PIXELSIZE() != null) {
-			expression = new PixelLiteral(ctx.PIXELSIZE().getText());
+			expression = PixelLiteral.of(ctx.PIXELSIZE().getText());
 		} else if (ctx.PERCENTAGE() != null) {
-			expression = new PercentageLiteral(ctx.PERCENTAGE().getText());
+			expression = PercentageLiteral.of(ctx.PERCENTAGE().getText());
 		} else if (ctx.SCALAR() != null) {
-			expression = new ScalarLiteral(ctx.SCALAR().getText());
+			expression = ScalarLiteral.of(ctx.SCALAR().getText());
 		} else if (ctx.TRUE() != null) {
-			expression = new BoolLiteral(true);
+			expression = BoolLiteral.TRUE;
 		} else if (ctx.FALSE() != null) {
-			expression = new BoolLiteral(false);
+			expression = BoolLiteral.FALSE;
 		} else {
-			expression = new VariableReference(ctx.CAPITAL_IDENT().getText());
+			expression = new VariableReference(ctx.CAPITAL_IDENT().getText(), ast.symbols);
 		}
 		currentContainer.peek().addChild(expression);
 	}
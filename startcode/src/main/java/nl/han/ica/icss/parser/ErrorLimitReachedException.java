@@ -0,0 +1,15 @@
+package nl.han.ica.icss.parser;
+
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+/**
+ * Thrown from an error listener to stop lexing and parsing once the maximum number of errors was reported.
+ */
+public class ErrorLimitReachedException extends ParseCancellationException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ErrorLimitReachedException(int limit) {
+        super("Stopped after " + limit + (limit == 1 ? " error" : " errors"));
+    }
+}
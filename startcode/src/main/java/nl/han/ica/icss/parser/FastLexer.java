@@ -0,0 +1,433 @@
+package nl.han.ica.icss.parser;
+
+import org.antlr.v4.runtime.ANTLRErrorListener;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenFactory;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenFactory;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.Pair;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Hand-written lexer for ICSS that scans a char[], a memory-mapped file or any other CharStream in place,
+ * without copying it. It recognizes the same tokens as the generated {@link ICSSLexer}, which stays the
+ * reference, and reports the same recognition errors.
+ *
+ * Instead of creating a token object per token, the type, character offsets and position of every token
+ * are stored in parallel int arrays; the last token is always EOF. {@link #tokenSource} turns them into
+ * ANTLR tokens for the generated parser.
+ */
+public class FastLexer {
+
+    private static final int MIN_CAPACITY = 16;
+
+    //Exactly one of these holds the input
+    private final char[] input;
+    private final ByteBuffer bytes;
+    private final CharStream stream;
+    private final int length;
+
+    private int[] types;
+    private int[] starts;
+    private int[] stops;
+    private int[] lines;
+    private int[] columns;
+    private int count;
+    private int errorCount;
+
+    private int index;
+    private int line;
+    private int column;
+
+    public FastLexer(char[] input) {
+        this(input, input.length);
+    }
+
+    /**
+     * Scans the first length characters of input.
+     */
+    public FastLexer(char[] input, int length) {
+        this(input, null, null, length);
+    }
+
+    /**
+     * Scans the stream in place, without copying it, and leaves its position as it was. The stream must be able to seek anywhere, as the
+     * streams of {@link org.antlr.v4.runtime.CharStreams} and {@link MappedCharStream} can. Offsets are indices
+     * in the stream, which counts code points like the ANTLR lexer does, so characters outside the Basic
+     * Multilingual Plane need no special care.
+     */
+    public FastLexer(CharStream input) {
+        this(null, input instanceof MappedCharStream ? ((MappedCharStream) input).buffer() : null,
+                input instanceof MappedCharStream ? null : input, input.size());
+    }
+
+    private FastLexer(char[] input, ByteBuffer bytes, CharStream stream, int length) {
+        this.input = input;
+        this.bytes = bytes;
+        this.stream = stream;
+        this.length = length;
+        //Most tokens are a few characters long, so this rarely has to grow
+        int capacity = Math.max(MIN_CAPACITY, length / 4);
+        types = new int[capacity];
+        starts = new int[capacity];
+        stops = new int[capacity];
+        lines = new int[capacity];
+        columns = new int[capacity];
+    }
+
+    /**
+     * Scans the whole input. Unrecognized characters are reported to the listener in the same way as
+     * the ANTLR lexer reports them, with a null recognizer, and skipped.
+     * @return the number of tokens, including EOF
+     */
+    public int tokenize(ANTLRErrorListener errorListener) {
+        int streamStart = stream == null ? 0 : stream.index();
+        count = 0;
+        errorCount = 0;
+        index = 0;
+        line = 1;
+        column = 0;
+        while (index < length) {
+            int c = charAt(index);
+            if (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+                skipWhitespace();
+                continue;
+            }
+            int start = index;
+            int end = start + 1;
+            int type;
+            switch (c) {
+                case '[': type = ICSSLexer.BOX_BRACKET_OPEN; break;
+                case ']': type = ICSSLexer.BOX_BRACKET_CLOSE; break;
+                case '{': type = ICSSLexer.OPEN_BRACE; break;
+                case '}': type = ICSSLexer.CLOSE_BRACE; break;
+                case ';': type = ICSSLexer.SEMICOLON; break;
+                case '+': type = ICSSLexer.PLUS; break;
+                case '-': type = ICSSLexer.MIN; break;
+                case '*': type = ICSSLexer.MUL; break;
+                case ':':
+                    if (end < length && charAt(end) == '=') {
+                        end++;
+                        type = ICSSLexer.ASSIGNMENT_OPERATOR;
+                    } else {
+                        type = ICSSLexer.COLON;
+                    }
+                    break;
+                case '#':
+                    end = scanSelectorChars(end);
+                    if (end == start + 1) {
+                        type = Token.INVALID_TYPE;
+                    } else if (end == start + 7 && isColor(start + 1)) {
+                        //COLOR and ID_IDENT match the same text here; COLOR is declared first
+                        type = ICSSLexer.COLOR;
+                    } else {
+                        type = ICSSLexer.ID_IDENT;
+                    }
+                    break;
+                case '.':
+                    end = scanSelectorChars(end);
+                    type = end == start + 1 ? Token.INVALID_TYPE : ICSSLexer.CLASS_IDENT;
+                    break;
+                default:
+                    if (c >= '0' && c <= '9') {
+                        while (end < length && charAt(end) >= '0' && charAt(end) <= '9') {
+                            end++;
+                        }
+                        if (end + 1 < length && charAt(end) == 'p' && charAt(end + 1) == 'x') {
+                            end += 2;
+                            type = ICSSLexer.PIXELSIZE;
+                        } else if (end < length && charAt(end) == '%') {
+                            end++;
+                            type = ICSSLexer.PERCENTAGE;
+                        } else {
+                            type = ICSSLexer.SCALAR;
+                        }
+                    } else if (c >= 'a' && c <= 'z') {
+                        end = scanSelectorChars(end);
+                        type = keyword(start, end, "if", ICSSLexer.IF, "else", ICSSLexer.ELSE, ICSSLexer.LOWER_IDENT);
+                    } else if (c >= 'A' && c <= 'Z') {
+                        while (end < length && isCapitalIdentChar(charAt(end))) {
+                            end++;
+                        }
+                        type = keyword(start, end, "TRUE", ICSSLexer.TRUE, "FALSE", ICSSLexer.FALSE, ICSSLexer.CAPITAL_IDENT);
+                    } else {
+                        //Not the start of any token
+                        end = start;
+                        type = Token.INVALID_TYPE;
+                    }
+            }
+            if (type == Token.INVALID_TYPE) {
+                recognitionError(start, end, errorListener);
+            } else {
+                add(type, start, end - 1);
+                //Tokens never contain line breaks
+                column += end - start;
+                index = end;
+            }
+        }
+        add(Token.EOF, index, index - 1);
+        if (stream != null) {
+            //Another lexer may read the stream next, from where it was
+            stream.seek(streamStart);
+        }
+        return count;
+    }
+
+    public int getTokenCount() {
+        return count;
+    }
+    public int getErrorCount() {
+        return errorCount;
+    }
+    public int getType(int token) {
+        return types[token];
+    }
+    /**
+     * Offset of the first character of the token in the input.
+     */
+    public int getStartIndex(int token) {
+        return starts[token];
+    }
+    /**
+     * Offset of the last character of the token in the input; one before the start for EOF.
+     */
+    public int getStopIndex(int token) {
+        return stops[token];
+    }
+    public int getLine(int token) {
+        return lines[token];
+    }
+    public int getCharPositionInLine(int token) {
+        return columns[token];
+    }
+    public String getText(int token) {
+        if (types[token] == Token.EOF) {
+            return "<EOF>";
+        }
+        int textLength = stops[token] - starts[token] + 1;
+        if (input != null) {
+            return new String(input, starts[token], textLength);
+        }
+        if (bytes != null) {
+            byte[] text = new byte[textLength];
+            bytes.get(starts[token], text);
+            return new String(text, StandardCharsets.ISO_8859_1);
+        }
+        return stream.getText(Interval.of(starts[token], stops[token]));
+    }
+
+    /**
+     * The scanned tokens as a TokenSource for the ANTLR parser. Tokens are only created when the parser
+     * asks for them, and take their text from the given stream, which must hold the same characters as
+     * the scanned input.
+     */
+    public TokenSource tokenSource(CharStream text) {
+        return new ArrayTokenSource(this, text);
+    }
+
+    /*
+     The character at the offset: a char of a char[], a byte of an ASCII file or a code point of another stream
+     */
+    private int charAt(int offset) {
+        if (input != null) {
+            return input[offset];
+        }
+        if (bytes != null) {
+            return bytes.get(offset);
+        }
+        stream.seek(offset);
+        return stream.LA(1);
+    }
+
+    private void skipWhitespace() {
+        while (index < length) {
+            int c = charAt(index);
+            if (c == '\n') {
+                line++;
+                column = 0;
+            } else if (c == ' ' || c == '\t' || c == '\r') {
+                column++;
+            } else {
+                return;
+            }
+            index++;
+        }
+    }
+
+    /*
+     Reports a token that does not match any rule. Like the ANTLR lexer, the message shows the text from the
+     start of the token up to and including the first character that did not fit, and only that character
+     is skipped after the characters before it.
+     */
+    private void recognitionError(int start, int failed, ANTLRErrorListener errorListener) {
+        int errorLine = line;
+        int errorColumn = column;
+        int end = failed < length ? failed + charCount(failed) : length;
+        StringBuilder text = new StringBuilder();
+        for (int i = start; i < end; i++) {
+            text.append(errorDisplay(charAt(i)));
+        }
+        errorCount++;
+        if (errorListener != null) {
+            errorListener.syntaxError(null, null, errorLine, errorColumn,
+                    "token recognition error at: '" + text + "'", null);
+        }
+        for (int i = start; i < end; i += charCount(i)) {
+            if (charAt(i) == '\n') {
+                line++;
+                column = 0;
+            } else {
+                column++;
+            }
+        }
+        index = end;
+    }
+
+    /*
+     Same escapes as Lexer.getErrorDisplay
+     */
+    private static String errorDisplay(int c) {
+        switch (c) {
+            case '\n':
+                return "\\n";
+            case '\t':
+                return "\\t";
+            case '\r':
+                return "\\r";
+            default:
+                return new String(Character.toChars(c));
+        }
+    }
+
+    /*
+     A surrogate pair in a char[] is one character for ANTLR. A stream already holds it as one code point
+     */
+    private int charCount(int at) {
+        return input != null && Character.isHighSurrogate(input[at]) && at + 1 < length
+                && Character.isLowSurrogate(input[at + 1]) ? 2 : 1;
+    }
+
+    private int scanSelectorChars(int from) {
+        int end = from;
+        while (end < length) {
+            int c = charAt(end);
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-') {
+                end++;
+            } else {
+                break;
+            }
+        }
+        return end;
+    }
+
+    private static boolean isCapitalIdentChar(int c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private boolean isColor(int from) {
+        for (int i = from; i < from + 6; i++) {
+            int c = charAt(i);
+            if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int keyword(int start, int end, String first, int firstType, String second, int secondType, int otherwise) {
+        if (matches(start, end, first)) {
+            return firstType;
+        } else if (matches(start, end, second)) {
+            return secondType;
+        }
+        return otherwise;
+    }
+
+    private boolean matches(int start, int end, String keyword) {
+        if (end - start != keyword.length()) {
+            return false;
+        }
+        for (int i = 0; i < keyword.length(); i++) {
+            if (charAt(start + i) != keyword.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void add(int type, int start, int stop) {
+        if (count == types.length) {
+            int capacity = count * 2;
+            types = Arrays.copyOf(types, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            stops = Arrays.copyOf(stops, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            columns = Arrays.copyOf(columns, capacity);
+        }
+        types[count] = type;
+        starts[count] = start;
+        stops[count] = stop;
+        lines[count] = line;
+        columns[count] = column;
+        count++;
+    }
+
+    private static class ArrayTokenSource implements TokenSource {
+
+        private final FastLexer lexer;
+        private final CharStream text;
+        private final Pair<TokenSource, CharStream> source;
+        private TokenFactory<?> factory = CommonTokenFactory.DEFAULT;
+        private int next = 0;
+
+        ArrayTokenSource(FastLexer lexer, CharStream text) {
+            this.lexer = lexer;
+            this.text = text;
+            this.source = new Pair<>(this, text);
+        }
+
+        @Override
+        public Token nextToken() {
+            //Keep returning EOF at the end, like a lexer does
+            int token = Math.min(next, lexer.count - 1);
+            next++;
+            return factory.create(source, lexer.types[token], null, Token.DEFAULT_CHANNEL,
+                    lexer.starts[token], lexer.stops[token], lexer.lines[token], lexer.columns[token]);
+        }
+
+        @Override
+        public int getLine() {
+            return lexer.lines[Math.min(next, lexer.count - 1)];
+        }
+
+        @Override
+        public int getCharPositionInLine() {
+            return lexer.columns[Math.min(next, lexer.count - 1)];
+        }
+
+        @Override
+        public CharStream getInputStream() {
+            return text;
+        }
+
+        @Override
+        public String getSourceName() {
+            return text.getSourceName();
+        }
+
+        @Override
+        public void setTokenFactory(TokenFactory<?> factory) {
+            this.factory = factory;
+        }
+
+        @Override
+        public TokenFactory<?> getTokenFactory() {
+            return factory;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package nl.han.ica.icss.parser;
+
+/**
+ * Which lexer turns the input into tokens.
+ */
+public enum LexerBackend {
+    /**
+     * The lexer ANTLR generates from ICSS.g4, the reference.
+     */
+    ANTLR,
+    /**
+     * The hand-written {@link FastLexer}, which produces the same tokens and errors without a token object per token
+     * while scanning.
+     */
+    FAST
+}
@@ -0,0 +1,135 @@
+package nl.han.ica.icss.parser;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A {@link CharStream} over a memory-mapped file. Characters are read from the mapping when the lexer
+ * asks for them, so the file is never copied onto the heap; only token texts become Strings.
+ *
+ * Every byte is one character, which is correct for ASCII. Use {@link #fromPath(Path)}, which falls back
+ * to decoding UTF-8 for files with other bytes.
+ */
+public final class MappedCharStream implements CharStream {
+
+    private final ByteBuffer buffer;
+    private final int size;
+    private final String sourceName;
+    private int position = 0;
+
+    private MappedCharStream(ByteBuffer buffer, String sourceName) {
+        this.buffer = buffer;
+        this.size = buffer.limit();
+        this.sourceName = sourceName;
+    }
+
+    /**
+     * Maps an ASCII file; any other file is decoded as UTF-8 by {@link CharStreams#fromPath(Path)}.
+     */
+    public static CharStream fromPath(Path path) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("File too large to parse: " + path);
+            }
+            //The mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        }
+        for (int i = 0; i < buffer.limit(); i++) {
+            if (buffer.get(i) < 0) {
+                return CharStreams.fromPath(path, StandardCharsets.UTF_8);
+            }
+        }
+        return new MappedCharStream(buffer, path.toString());
+    }
+
+    /*
+     The mapped file, for the FastLexer to scan in place. Only read with absolute gets
+     */
+    ByteBuffer buffer() {
+        return buffer;
+    }
+
+    @Override
+    public void consume() {
+        if (position >= size) {
+            throw new IllegalStateException("cannot consume EOF");
+        }
+        position++;
+    }
+
+    @Override
+    public int LA(int i) {
+        int offset;
+        if (i > 0) {
+            offset = position + i - 1;
+        } else if (i < 0) {
+            offset = position + i;
+        } else {
+            return 0;
+        }
+        if (offset < 0 || offset >= size) {
+            return IntStream.EOF;
+        }
+        return buffer.get(offset);
+    }
+
+    /*
+     The whole file stays available, so marks need no bookkeeping.
+     */
+    @Override
+    public int mark() {
+        return -1;
+    }
+
+    @Override
+    public void release(int marker) {
+    }
+
+    @Override
+    public int index() {
+        return position;
+    }
+
+    @Override
+    public void seek(int index) {
+        position = index;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String getSourceName() {
+        return sourceName;
+    }
+
+    @Override
+    public String getText(Interval interval) {
+        int start = Math.min(interval.a, size);
+        int length = Math.min(interval.b - interval.a + 1, size - start);
+        if (length <= 0) {
+            return "";
+        }
+        byte[] bytes = new byte[length];
+        buffer.slice().position(start).get(bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public String toString() {
+        return getText(Interval.of(0, size - 1));
+    }
+}
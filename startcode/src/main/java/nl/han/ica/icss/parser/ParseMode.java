@@ -0,0 +1,16 @@
+package nl.han.ica.icss.parser;
+
+/**
+ * How the ANTLR parser predicts which alternative to take.
+ */
+public enum ParseMode {
+    /**
+     * Full LL prediction with error reporting and recovery, ANTLR's default.
+     */
+    LL,
+    /**
+     * First try the cheaper SLL prediction, bailing out at the first syntax error without reporting it.
+     * Only when that fails, the input is parsed again with full LL, which reports the same errors as {@link #LL}.
+     */
+    SLL_THEN_LL
+}
@@ -0,0 +1,24 @@
+package nl.han.ica.icss.parser;
+
+/**
+ * Which parser turns the tokens into an AST.
+ */
+public enum ParserBackend {
+    /**
+     * The parser ANTLR generates from ICSS.g4, followed by {@link ASTListener}, the reference.
+     */
+    ANTLR,
+    /**
+     * The {@link RecursiveDescentParser}, which builds the AST directly from the tokens of the {@link FastLexer}.
+     * Input that has errors, or that only ANTLR can lex, is parsed again with ANTLR for the error messages.
+     */
+    RECURSIVE_DESCENT,
+    /**
+     * The generated parser without a parse tree: {@link StreamingASTListener} builds the AST while parsing from
+     * unbuffered character and token streams, so memory use besides the AST does not grow with the input.
+     * Unbuffered tokens cannot be parsed twice, so this parses in one full LL pass with the ANTLR lexer,
+     * whatever the parse mode and lexer backend. Lexer errors are reported when the parser reaches them, so they are
+     * interleaved with the parser errors instead of coming first.
+     */
+    ANTLR_STREAMING
+}
@@ -0,0 +1,370 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+import org.antlr.v4.runtime.Token;
+
+import java.util.ArrayDeque;
+
+/**
+ * Parses the tokens of a {@link FastLexer} straight into an AST, in one pass and without an ANTLR parse tree.
+ * It follows the rules of ICSS.g4 and builds the same AST as the generated parser and {@link ASTListener}.
+ * Expressions are parsed by precedence climbing: * binds tighter than + and -, and all of them are left-associative.
+ * Neither long expressions nor deeply nested if-clauses make it recurse deeper than a few calls.
+ * The same parse can build a {@link CompactAST} instead, for input too large to hold as node objects.
+ *
+ * The parser does not report or recover from syntax errors; it gives up instead, so that the ANTLR parser
+ * can produce its usual messages for the input.
+ */
+public class RecursiveDescentParser<N> {
+
+    private static final int ADDITIVE = 1;
+    private static final int MULTIPLICATIVE = 2;
+
+    //Thrown at the first token that does not fit the grammar
+    private static class SyntaxError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        SyntaxError() {
+            super(null, null, false, false);
+        }
+    }
+
+    private final FastLexer tokens;
+    private final TreeBuilder<N> tree;
+    private int position = 0;
+
+    private RecursiveDescentParser(FastLexer tokens, TreeBuilder<N> tree) {
+        this.tokens = tokens;
+        this.tree = tree;
+    }
+
+    /**
+     * Builds the AST for tokenized input.
+     * @return the AST, or null when the input contains a lexer or syntax error
+     */
+    public static AST parse(FastLexer tokens) {
+        ObjectTreeBuilder builder = new ObjectTreeBuilder();
+        ASTNode root = parse(tokens, builder);
+        return root == null ? null : new AST((Stylesheet) root, builder.symbols);
+    }
+
+    /**
+     * Builds the {@link CompactAST} for tokenized input, without creating an object per node.
+     * The offset of a node is the index of its first token in the input.
+     * @return the compact AST, or null when the input contains a lexer or syntax error
+     */
+    public static CompactAST parseCompact(FastLexer tokens) {
+        CompactTreeBuilder builder = new CompactTreeBuilder(tokens.getTokenCount());
+        return parse(tokens, builder) == null ? null : builder.ast;
+    }
+
+    private static <N> N parse(FastLexer tokens, TreeBuilder<N> tree) {
+        if (tokens.getErrorCount() > 0) {
+            return null;
+        }
+        try {
+            return new RecursiveDescentParser<>(tokens, tree).stylesheet();
+        } catch (SyntaxError e) {
+            return null;
+        }
+    }
+
+    private N stylesheet() {
+        N stylesheet = tree.stylesheet();
+        do {
+            if (peek() == ICSSLexer.CAPITAL_IDENT) {
+                tree.addChild(stylesheet, variableAssignment());
+            } else {
+                tree.addChild(stylesheet, stylerule());
+            }
+        } while (peek() != Token.EOF);
+        return stylesheet;
+    }
+
+    private N stylerule() {
+        N stylerule = tree.stylerule(offset(position));
+        tree.addChild(stylerule, selector());
+        expect(ICSSLexer.OPEN_BRACE);
+        block(stylerule);
+        return stylerule;
+    }
+
+    private N selector() {
+        switch (peek()) {
+            case ICSSLexer.LOWER_IDENT:
+            case ICSSLexer.ID_IDENT:
+            case ICSSLexer.CLASS_IDENT:
+                return tree.selector(peek(), text(position), offset(position++));
+            default:
+                throw new SyntaxError();
+        }
+    }
+
+    private N variableAssignment() {
+        int name = expect(ICSSLexer.CAPITAL_IDENT);
+        N variableAssignment = tree.variableAssignment(text(name), offset(name));
+        expect(ICSSLexer.ASSIGNMENT_OPERATOR);
+        tree.addChild(variableAssignment, expression(ADDITIVE));
+        expect(ICSSLexer.SEMICOLON);
+        return variableAssignment;
+    }
+
+    /*
+     Parses a body and its closing brace into the given node. The if- and else-clauses that are open are kept
+     on a stack instead of recursing into them, so nesting is only limited by memory.
+     */
+    private void block(N node) {
+        ArrayDeque<N> open = new ArrayDeque<>();
+        //Whether the open node of the same depth is an if-clause
+        ArrayDeque<Boolean> ifClauses = new ArrayDeque<>();
+        open.push(node);
+        ifClauses.push(false);
+        while (!open.isEmpty()) {
+            N parent = open.peek();
+            if (peek() == ICSSLexer.IF) {
+                N ifClause = tree.ifClause(offset(position++));
+                expect(ICSSLexer.BOX_BRACKET_OPEN);
+                tree.addChild(ifClause, expression(ADDITIVE));
+                expect(ICSSLexer.BOX_BRACKET_CLOSE);
+                expect(ICSSLexer.OPEN_BRACE);
+                tree.addChild(parent, ifClause);
+                open.push(ifClause);
+                ifClauses.push(true);
+            } else if (peek() == ICSSLexer.LOWER_IDENT) {
+                tree.addChild(parent, declaration());
+            } else {
+                expect(ICSSLexer.CLOSE_BRACE);
+                open.pop();
+                if (ifClauses.pop() && peek() == ICSSLexer.ELSE) {
+                    N elseClause = tree.elseClause(offset(position++));
+                    expect(ICSSLexer.OPEN_BRACE);
+                    tree.addChild(parent, elseClause);
+                    open.push(elseClause);
+                    ifClauses.push(false);
+                }
+            }
+        }
+    }
+
+    private N declaration() {
+        int property = expect(ICSSLexer.LOWER_IDENT);
+        N declaration = tree.declaration(text(property), offset(property));
+        expect(ICSSLexer.COLON);
+        tree.addChild(declaration, expression(ADDITIVE));
+        expect(ICSSLexer.SEMICOLON);
+        return declaration;
+    }
+
+    /*
+     Parses operands joined by operators that bind at least as tight as minimumPrecedence. The right operand
+     only takes operators that bind tighter, which makes equal operators associate to the left.
+     */
+    private N expression(int minimumPrecedence) {
+        N expression = literal();
+        while (true) {
+            int operator = peek();
+            int precedence = precedence(operator);
+            if (precedence < minimumPrecedence) {
+                return expression;
+            }
+            N operation = tree.operation(operator, offset(position++));
+            tree.addChild(operation, expression);
+            tree.addChild(operation, expression(precedence + 1));
+            expression = operation;
+        }
+    }
+
+    private static int precedence(int operator) {
+        switch (operator) {
+            case ICSSLexer.MUL:
+                return MULTIPLICATIVE;
+            case ICSSLexer.PLUS:
+            case ICSSLexer.MIN:
+                return ADDITIVE;
+            default:
+                return 0;
+        }
+    }
+
+    private N literal() {
+        switch (peek()) {
+            case ICSSLexer.COLOR:
+            case ICSSLexer.PIXELSIZE:
+            case ICSSLexer.PERCENTAGE:
+            case ICSSLexer.SCALAR:
+            case ICSSLexer.TRUE:
+            case ICSSLexer.FALSE:
+            case ICSSLexer.CAPITAL_IDENT:
+                return tree.literal(peek(), text(position), offset(position++));
+            default:
+                throw new SyntaxError();
+        }
+    }
+
+    private int peek() {
+        return tokens.getType(position);
+    }
+
+    /*
+     Consumes a token of the given type and returns its index
+     */
+    private int expect(int type) {
+        if (peek() != type) {
+            throw new SyntaxError();
+        }
+        return position++;
+    }
+
+    private String text(int token) {
+        return tokens.getText(token);
+    }
+
+    private int offset(int token) {
+        return tokens.getStartIndex(token);
+    }
+
+    /*
+     Creates the nodes of one representation of the AST. Nodes are created by token type and
+     get their children in the order of the source.
+     */
+    private interface TreeBuilder<N> {
+        N stylesheet();
+        N stylerule(int offset);
+        N selector(int type, String text, int offset);
+        N variableAssignment(String name, int offset);
+        N declaration(String property, int offset);
+        N ifClause(int offset);
+        N elseClause(int offset);
+        N operation(int operator, int offset);
+        //A literal or variable reference
+        N literal(int type, String text, int offset);
+        void addChild(N parent, N child);
+    }
+
+    private static class ObjectTreeBuilder implements TreeBuilder<ASTNode> {
+        //The names of the document, which the AST takes over
+        final SymbolTable symbols = new SymbolTable();
+
+        public ASTNode stylesheet() {
+            return new Stylesheet();
+        }
+        public ASTNode stylerule(int offset) {
+            return new Stylerule();
+        }
+        public ASTNode selector(int type, String text, int offset) {
+            switch (type) {
+                case ICSSLexer.ID_IDENT:
+                    return new IdSelector(symbols.canonical(text));
+                case ICSSLexer.CLASS_IDENT:
+                    return new ClassSelector(symbols.canonical(text));
+                default:
+                    return new TagSelector(symbols.canonical(text));
+            }
+        }
+        public ASTNode variableAssignment(String name, int offset) {
+            VariableAssignment variableAssignment = new VariableAssignment();
+            variableAssignment.name = new VariableReference(name, symbols);
+            return variableAssignment;
+        }
+        public ASTNode declaration(String property, int offset) {
+            return new Declaration(property, symbols);
+        }
+        public ASTNode ifClause(int offset) {
+            return new IfClause();
+        }
+        public ASTNode elseClause(int offset) {
+            return new ElseClause();
+        }
+        public ASTNode operation(int operator, int offset) {
+            return operator == ICSSLexer.MUL ? new MultiplyOperation()
+                    : operator == ICSSLexer.PLUS ? new AddOperation() : new SubtractOperation();
+        }
+        public ASTNode literal(int type, String text, int offset) {
+            switch (type) {
+                case ICSSLexer.COLOR:
+                    return ColorLiteral.of(text);
+                case ICSSLexer.PIXELSIZE:
+                    return PixelLiteral.of(text);
+                case ICSSLexer.PERCENTAGE:
+                    return PercentageLiteral.of(text);
+                case ICSSLexer.SCALAR:
+                    return ScalarLiteral.of(text);
+                case ICSSLexer.TRUE:
+                    return BoolLiteral.TRUE;
+                case ICSSLexer.FALSE:
+                    return BoolLiteral.FALSE;
+                default:
+                    return new VariableReference(text, symbols);
+            }
+        }
+        public void addChild(ASTNode parent, ASTNode child) {
+            parent.addChild(child);
+        }
+    }
+
+    //Nodes are boxed indexes in the compact AST; only the ones on the parse stack are alive
+    private static class CompactTreeBuilder implements TreeBuilder<Integer> {
+        final CompactAST ast;
+
+        CompactTreeBuilder(int tokenCount) {
+            //Most tokens are a node or punctuation
+            ast = new CompactAST(tokenCount / 2);
+        }
+        public Integer stylesheet() {
+            return ast.add(CompactAST.Kind.STYLESHEET, 0, 0);
+        }
+        public Integer stylerule(int offset) {
+            return ast.add(CompactAST.Kind.STYLERULE, 0, offset);
+        }
+        public Integer selector(int type, String text, int offset) {
+            CompactAST.Kind kind = type == ICSSLexer.ID_IDENT ? CompactAST.Kind.ID_SELECTOR
+                    : type == ICSSLexer.CLASS_IDENT ? CompactAST.Kind.CLASS_SELECTOR : CompactAST.Kind.TAG_SELECTOR;
+            return ast.add(kind, ast.symbols().intern(text), offset);
+        }
+        public Integer variableAssignment(String name, int offset) {
+            return ast.add(CompactAST.Kind.VARIABLE_ASSIGNMENT, ast.symbols().intern(name), offset);
+        }
+        public Integer declaration(String property, int offset) {
+            return ast.add(CompactAST.Kind.DECLARATION, ast.symbols().intern(property), offset);
+        }
+        public Integer ifClause(int offset) {
+            return ast.add(CompactAST.Kind.IF_CLAUSE, 0, offset);
+        }
+        public Integer elseClause(int offset) {
+            return ast.add(CompactAST.Kind.ELSE_CLAUSE, 0, offset);
+        }
+        public Integer operation(int operator, int offset) {
+            CompactAST.Kind kind = operator == ICSSLexer.MUL ? CompactAST.Kind.MULTIPLY_OPERATION
+                    : operator == ICSSLexer.PLUS ? CompactAST.Kind.ADD_OPERATION : CompactAST.Kind.SUBTRACT_OPERATION;
+            return ast.add(kind, 0, offset);
+        }
+        public Integer literal(int type, String text, int offset) {
+            switch (type) {
+                case ICSSLexer.COLOR:
+                    return ast.add(CompactAST.Kind.COLOR_LITERAL, ColorLiteral.of(text).rgb(), offset);
+                case ICSSLexer.PIXELSIZE:
+                    return ast.add(CompactAST.Kind.PIXEL_LITERAL, PixelLiteral.of(text).value, offset);
+                case ICSSLexer.PERCENTAGE:
+                    return ast.add(CompactAST.Kind.PERCENTAGE_LITERAL, PercentageLiteral.of(text).value, offset);
+                case ICSSLexer.SCALAR:
+                    return ast.add(CompactAST.Kind.SCALAR_LITERAL, ScalarLiteral.of(text).value, offset);
+                case ICSSLexer.TRUE:
+                    return ast.add(CompactAST.Kind.BOOL_LITERAL, 1, offset);
+                case ICSSLexer.FALSE:
+                    return ast.add(CompactAST.Kind.BOOL_LITERAL, 0, offset);
+                default:
+                    return ast.add(CompactAST.Kind.VARIABLE_REFERENCE, ast.symbols().intern(text), offset);
+            }
+        }
+        public void addChild(Integer parent, Integer child) {
+            ast.appendChild(parent, child);
+        }
+    }
+}
@@ -0,0 +1,551 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.jfr.AstBuildEvent;
+import nl.han.ica.icss.jfr.LexEvent;
+import nl.han.ica.icss.jfr.ParseEvent;
+import org.antlr.v4.runtime.ANTLRErrorListener;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.CommonTokenFactory;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenFactory;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.UnbufferedTokenStream;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.misc.Pair;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.IterativeParseTreeWalker;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs lexer, parser and AST extraction for one input. Parses may run on many threads at once. Idle lexers and
+ * parsers are kept in a small pool that every thread takes from and returns to, so callers that start a new thread
+ * per input, like the compile server, reuse them too.
+ *
+ * The DFA that ANTLR builds while predicting is shared by all lexers and parsers in the JVM and grows
+ * as inputs are parsed, which makes the first compilations slow. {@link #warmUp} fills it up front.
+ *
+ * The generated parser calls itself for every nested block, so deeply nested input is parsed on one of a few
+ * threads with a large stack. A streamed input is parsed on the calling thread until it nests that deep; the
+ * parse then continues on such a thread from the start of the top-level statement it is in. Expressions do not nest that way: ANTLR parses a chain of operators in a loop, and the
+ * parse tree is walked without recursion.
+ */
+public class SourceParser {
+
+    //Enough idle instances for every core to be parsing; a parse finding the pool empty makes a new one
+    private static final int POOLED = Runtime.getRuntime().availableProcessors();
+    private static final ArrayBlockingQueue<ICSSLexer> LEXERS = new ArrayBlockingQueue<>(POOLED);
+    private static final ArrayBlockingQueue<ICSSParser> PARSERS = new ArrayBlockingQueue<>(POOLED);
+
+    //Copies the token texts, as an unbuffered stream discards the characters. EOF keeps the text ANTLR shows for it
+    private static final CommonTokenFactory COPYING_TEXT = new CommonTokenFactory(true) {
+        @Override
+        public CommonToken create(Pair<TokenSource, CharStream> source, int type, String text, int channel,
+                                  int start, int stop, int line, int charPositionInLine) {
+            return super.create(source, type, type == Token.EOF ? "<EOF>" : text, channel, start, stop, line,
+                    charPositionInLine);
+        }
+    };
+
+    //From this many nested blocks the parser runs on one of the threads below
+    private static final int DEEP_NESTING = 200;
+    private static final long DEEP_STACK_SIZE = 1L << 30;
+    /*
+     Every thread reserves DEEP_STACK_SIZE of address space, so there are only a few. When all of them are busy,
+     further deep parses wait in the queue and their callers block until a thread is free; interrupting a caller
+     cancels its parse. Idle threads stop after a minute.
+     */
+    static final int DEEP_PARSER_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final ExecutorService DEEP_PARSERS = newDeepParserPool();
+
+    private SourceParser() { }
+
+    private static ExecutorService newDeepParserPool() {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(DEEP_PARSER_THREADS, DEEP_PARSER_THREADS,
+                1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(null, runnable, "icss-deep-parser", DEEP_STACK_SIZE);
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Parses every source in both parse modes to prime the shared DFA cache. Syntax errors are ignored.
+     * @return the number of DFA states afterwards
+     */
+    public static int warmUp(Iterable<String> sources) {
+        for (String source : sources) {
+            for (ParseMode mode : ParseMode.values()) {
+                parse(CharStreams.fromString(source), new BaseErrorListener(), mode);
+            }
+        }
+        return getDfaStateCount();
+    }
+
+    /**
+     * The number of states in the DFA cache shared by all lexers and parsers. It only grows,
+     * and stops growing once the cache is warm.
+     */
+    public static int getDfaStateCount() {
+        return countStates(ICSSLexer._decisionToDFA) + countStates(ICSSParser._decisionToDFA);
+    }
+
+    //The number of parsers waiting in the pool
+    static int idleParsers() {
+        return PARSERS.size();
+    }
+
+    private static int countStates(DFA[] decisionToDFA) {
+        int count = 0;
+        for (DFA dfa : decisionToDFA) {
+            //ANTLR itself adds states while holding this lock
+            synchronized (dfa.states) {
+                count += dfa.states.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Parses the input and extracts its AST. Lexer and parser errors are reported to the given listener.
+     * When the parser reported errors the parse tree is incomplete, so an empty AST is returned instead.
+     * Parses with {@link ParseMode#SLL_THEN_LL}.
+     */
+    public static AST parse(CharStream input, ANTLRErrorListener errorListener) {
+        return parse(input, errorListener, ParseMode.SLL_THEN_LL);
+    }
+
+    public static AST parse(CharStream input, ANTLRErrorListener errorListener, ParseMode mode) {
+        return parse(input, errorListener, mode, LexerBackend.ANTLR);
+    }
+
+    public static AST parse(CharStream input, ANTLRErrorListener errorListener, ParseMode mode, LexerBackend backend) {
+        //Lex. All tokens are read up front so lexing can be measured on its own
+        LexEvent lexEvent = new LexEvent();
+        lexEvent.begin();
+        ErrorCounter lexerErrors = new ErrorCounter();
+        CommonTokenStream tokens;
+        if (backend == LexerBackend.FAST) {
+            tokens = lexFast(input, errorListener, lexerErrors);
+        } else {
+            tokens = lexWithAntlr(input, errorListener, lexerErrors);
+        }
+        lexEvent.end();
+        if (lexEvent.shouldCommit()) {
+            lexEvent.inputSize = input.size();
+            lexEvent.errorCount = lexerErrors.count;
+            lexEvent.commit();
+        }
+        return parse(tokens, errorListener, mode);
+    }
+
+    /**
+     * Parses with the given parser backend. The {@link RecursiveDescentParser} always lexes with the
+     * {@link FastLexer}; the parse mode and lexer backend are used when it falls back to ANTLR.
+     */
+    public static AST parse(CharStream input, ANTLRErrorListener errorListener, ParseMode mode,
+                            LexerBackend lexerBackend, ParserBackend parserBackend) {
+        if (parserBackend == ParserBackend.ANTLR_STREAMING) {
+            return parseWithoutTree(input, errorListener);
+        }
+        if (parserBackend == ParserBackend.RECURSIVE_DESCENT) {
+            AST ast = parseRecursiveDescent(input);
+            if (ast != null) {
+                return ast;
+            }
+        }
+        return parse(input, errorListener, mode, lexerBackend);
+    }
+
+    /**
+     * Parses from a reader with {@link ParserBackend#ANTLR_STREAMING}: only a small window of characters and
+     * tokens is kept in memory, so the memory used besides the AST does not depend on the size of the input.
+     */
+    public static AST parse(Reader input, ANTLRErrorListener errorListener) {
+        return parseWithoutTree(new StreamingCharStream(input), errorListener);
+    }
+
+    /*
+     The nesting is not known before the stream is parsed, so the parse starts on the calling thread and only moves
+     to a thread with a large stack once a statement nests deeply.
+     */
+    private static AST parseWithoutTree(CharStream input, ANTLRErrorListener errorListener) {
+        //Lexing happens on demand while parsing, so it is measured as part of the parse
+        ParseEvent parseEvent = new ParseEvent();
+        parseEvent.begin();
+        ICSSLexer lexer = new ICSSLexer(input);
+        lexer.setTokenFactory(COPYING_TEXT);
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(errorListener);
+        StatementRecorder statements = new StatementRecorder(lexer);
+        statements.start(errorListener);
+        try {
+            statements.parser.stylesheet();
+        } catch (DeepNestingException e) {
+            onLargeStack(() -> statements.continueParse(errorListener));
+        }
+        AST ast = statements.listener.getAST();
+        parseEvent.end();
+        if (parseEvent.shouldCommit()) {
+            parseEvent.inputSize = statements.listener.getTokenCount();
+            parseEvent.nodeCount = ast == null ? 0 : ast.getNodeCount();
+            parseEvent.errorCount = statements.earlierErrors + statements.parser.getNumberOfSyntaxErrors();
+            parseEvent.commit();
+        }
+        return ast == null ? new AST() : ast;
+    }
+
+    private static ICSSParser streamingParser(TokenSource tokens, ANTLRErrorListener errorListener) {
+        ICSSParser parser = new ICSSParser(new UnbufferedTokenStream<>(tokens));
+        parser.removeErrorListeners();
+        parser.addErrorListener(errorListener);
+        parser.setBuildParseTree(false);
+        return parser;
+    }
+
+    /*
+     Returns null when the input has errors; nothing is reported then, as ANTLR parses it again.
+     */
+    private static AST parseRecursiveDescent(CharStream input) {
+        LexEvent lexEvent = new LexEvent();
+        lexEvent.begin();
+        FastLexer lexer = new FastLexer(input);
+        lexer.tokenize(null);
+        lexEvent.end();
+        if (lexEvent.shouldCommit()) {
+            lexEvent.inputSize = input.size();
+            lexEvent.errorCount = lexer.getErrorCount();
+            lexEvent.commit();
+        }
+
+        //The parse tree is skipped, so building the AST is part of parsing here
+        ParseEvent parseEvent = new ParseEvent();
+        parseEvent.begin();
+        AST ast = RecursiveDescentParser.parse(lexer);
+        parseEvent.end();
+        if (parseEvent.shouldCommit()) {
+            parseEvent.inputSize = lexer.getTokenCount();
+            parseEvent.nodeCount = ast == null ? 0 : ast.getNodeCount();
+            parseEvent.errorCount = ast == null ? 1 : 0;
+            parseEvent.commit();
+        }
+        return ast;
+    }
+
+    private static CommonTokenStream lexWithAntlr(CharStream input, ANTLRErrorListener errorListener,
+                                                  ErrorCounter lexerErrors) {
+        ICSSLexer lexer = LEXERS.poll();
+        if (lexer == null) {
+            lexer = new ICSSLexer(null);
+        }
+        lexer.setInputStream(input);
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(errorListener);
+        lexer.addErrorListener(lexerErrors);
+        CommonTokenStream tokens = new CommonTokenStream(lexer);
+        try {
+            tokens.fill();
+        } finally {
+            //Do not keep the input alive while the lexer is in the pool
+            lexer.setInputStream(null);
+            LEXERS.offer(lexer);
+        }
+        return tokens;
+    }
+
+    private static CommonTokenStream lexFast(CharStream input, ANTLRErrorListener errorListener,
+                                             ErrorCounter lexerErrors) {
+        FastLexer lexer = new FastLexer(input);
+        lexer.tokenize(errorListener);
+        lexerErrors.count = lexer.getErrorCount();
+        CommonTokenStream tokens = new CommonTokenStream(lexer.tokenSource(input));
+        tokens.fill();
+        return tokens;
+    }
+
+    /**
+     * Parses already lexed tokens, for instance a single top-level segment, and extracts its AST.
+     */
+    public static AST parse(TokenSource tokenSource, ANTLRErrorListener errorListener) {
+        CommonTokenStream tokens = new CommonTokenStream(tokenSource);
+        tokens.fill();
+        return parse(tokens, errorListener, ParseMode.SLL_THEN_LL);
+    }
+
+    private static AST parse(CommonTokenStream tokens, ANTLRErrorListener errorListener, ParseMode mode) {
+        if (isDeeplyNested(tokens)) {
+            return onLargeStack(() -> parseTokens(tokens, errorListener, mode));
+        }
+        return parseTokens(tokens, errorListener, mode);
+    }
+
+    private static boolean isDeeplyNested(CommonTokenStream tokens) {
+        int depth = 0;
+        for (Token token : tokens.getTokens()) {
+            if (token.getType() == ICSSLexer.OPEN_BRACE && ++depth >= DEEP_NESTING) {
+                return true;
+            } else if (token.getType() == ICSSLexer.CLOSE_BRACE) {
+                depth--;
+            }
+        }
+        return false;
+    }
+
+    /*
+     Runs the parse on a thread with a large stack and waits for it. Its exceptions are thrown here.
+     */
+    private static <T> T onLargeStack(Callable<T> parse) {
+        Future<T> result = DEEP_PARSERS.submit(parse);
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ParseCancellationException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static AST parseTokens(CommonTokenStream tokens, ANTLRErrorListener errorListener, ParseMode mode) {
+        //Parse (with Antlr's generated parser)
+        ParseEvent parseEvent = new ParseEvent();
+        parseEvent.begin();
+        ICSSParser parser = PARSERS.poll();
+        if (parser == null) {
+            parser = new ICSSParser(null);
+        }
+        ParseTree parseTree = null;
+        int syntaxErrors;
+        try {
+            parser.setTokenStream(tokens);
+            parser.removeErrorListeners();
+            if (mode == ParseMode.SLL_THEN_LL) {
+                //Errors are not reported here: the full LL parse below reports them the usual way
+                parser.setErrorHandler(new BailErrorStrategy());
+                parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+                try {
+                    parseTree = parser.stylesheet();
+                } catch (ParseCancellationException e) {
+                    parser.reset();
+                }
+            }
+            if (parseTree == null) {
+                parser.setErrorHandler(new DefaultErrorStrategy());
+                parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+                parser.addErrorListener(errorListener);
+                parseTree = parser.stylesheet();
+            }
+            syntaxErrors = parser.getNumberOfSyntaxErrors();
+        } finally {
+            parser.setTokenStream(null);
+            parser.removeErrorListeners();
+            PARSERS.offer(parser);
+        }
+        parseEvent.end();
+        if (parseEvent.shouldCommit()) {
+            parseEvent.inputSize = tokens.size();
+            parseEvent.errorCount = syntaxErrors;
+            parseEvent.commit();
+        }
+        if (syntaxErrors > 0) {
+            return new AST();
+        }
+
+        //Extract AST from the Antlr parse tree
+        AstBuildEvent astBuildEvent = new AstBuildEvent();
+        astBuildEvent.begin();
+        ASTListener listener = new ASTListener();
+        IterativeParseTreeWalker walker = new IterativeParseTreeWalker();
+        walker.walk(listener, parseTree);
+        AST ast = listener.getAST();
+        astBuildEvent.end();
+        if (astBuildEvent.shouldCommit()) {
+            astBuildEvent.inputSize = tokens.size();
+            astBuildEvent.nodeCount = ast.getNodeCount();
+            astBuildEvent.commit();
+        }
+        return ast;
+    }
+
+    /*
+     Passes the tokens of the lexer to the streaming parser and keeps those of the top-level statement being parsed.
+     When the braces nest DEEP_NESTING deep it abandons the parser, which is then continued on a thread with a large
+     stack by parsing that statement again: the kept tokens are replayed, so the lexer does not run twice.
+     */
+    private static class StatementRecorder extends ICSSBaseListener implements TokenSource {
+        private final ICSSLexer lexer;
+        private final ArrayList<Token> recorded = new ArrayList<>();
+        //The index in the token stream of the first recorded token
+        private int firstRecorded = 0;
+        private int depth = 0;
+        private boolean abandoned = false;
+        //Position in the recorded tokens while they are replayed, -1 before
+        private int replayed = -1;
+
+        ICSSParser parser;
+        StreamingASTListener listener;
+        //Parser errors before the current statement; a continued parser reports the ones after that again
+        int earlierErrors = 0;
+        private long earlierTokens = 0;
+
+        StatementRecorder(ICSSLexer lexer) {
+            this.lexer = lexer;
+        }
+
+        void start(ANTLRErrorListener errorListener) {
+            parser = streamingParser(this, errorListener);
+            listener = new StreamingASTListener(parser);
+            parser.addParseListener(listener);
+            parser.addParseListener(this);
+        }
+
+        AST continueParse(ANTLRErrorListener errorListener) {
+            ReplayedErrors replayedErrors = new ReplayedErrors(errorListener,
+                    parser.getNumberOfSyntaxErrors() - earlierErrors);
+            replayed = 0;
+            parser = streamingParser(this, replayedErrors);
+            listener = new StreamingASTListener(parser, listener, earlierTokens);
+            parser.addParseListener(listener);
+            parser.stylesheet();
+            return listener.getAST();
+        }
+
+        @Override
+        public void enterStylerule(ICSSParser.StyleruleContext ctx) {
+            enterStatement();
+        }
+
+        @Override
+        public void enterVariableAssignment(ICSSParser.VariableAssignmentContext ctx) {
+            enterStatement();
+        }
+
+        private void enterStatement() {
+            //The first token of the statement is the next one the parser matches
+            int first = parser.getCurrentToken().getTokenIndex();
+            recorded.subList(0, first - firstRecorded).clear();
+            firstRecorded = first;
+            earlierErrors = parser.getNumberOfSyntaxErrors();
+            earlierTokens = listener.getTokenCount();
+        }
+
+        @Override
+        public Token nextToken() {
+            if (replayed >= 0) {
+                return replayed < recorded.size() ? recorded.get(replayed++) : lexer.nextToken();
+            }
+            if (abandoned) {
+                throw new DeepNestingException();
+            }
+            Token token = lexer.nextToken();
+            recorded.add(token);
+            if (token.getType() == ICSSLexer.OPEN_BRACE && ++depth >= DEEP_NESTING) {
+                abandoned = true;
+                listener.stop();
+                throw new DeepNestingException();
+            } else if (token.getType() == ICSSLexer.CLOSE_BRACE) {
+                depth = Math.max(0, depth - 1);
+            }
+            return token;
+        }
+
+        @Override
+        public int getLine() {
+            return lexer.getLine();
+        }
+
+        @Override
+        public int getCharPositionInLine() {
+            return lexer.getCharPositionInLine();
+        }
+
+        @Override
+        public CharStream getInputStream() {
+            return lexer.getInputStream();
+        }
+
+        @Override
+        public String getSourceName() {
+            return lexer.getSourceName();
+        }
+
+        @Override
+        public void setTokenFactory(TokenFactory<?> factory) {
+            lexer.setTokenFactory(factory);
+        }
+
+        @Override
+        public TokenFactory<?> getTokenFactory() {
+            return lexer.getTokenFactory();
+        }
+    }
+
+    //Thrown through the streaming parser to abandon it, so it carries no stack trace
+    private static class DeepNestingException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        DeepNestingException() {
+            super(null, null, false, false);
+        }
+    }
+
+    //Leaves out the errors a continued parser reports again for the start of its first statement
+    private static class ReplayedErrors extends BaseErrorListener {
+        private final ANTLRErrorListener errorListener;
+        private int skipped;
+
+        ReplayedErrors(ANTLRErrorListener errorListener, int skipped) {
+            this.errorListener = errorListener;
+            this.skipped = skipped;
+        }
+
+        @Override
+        public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+                                int charPositionInLine, String msg, RecognitionException e) {
+            if (skipped > 0) {
+                skipped--;
+            } else {
+                errorListener.syntaxError(recognizer, offendingSymbol, line, charPositionInLine, msg, e);
+            }
+        }
+    }
+
+    private static class ErrorCounter extends BaseErrorListener {
+        int count = 0;
+
+        @Override
+        public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+                                int charPositionInLine, String msg, RecognitionException e) {
+            count++;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import java.util.ArrayDeque;
+
+/**
+ * Builds the same AST as {@link ASTListener}, but as a parse listener while the parser runs without
+ * building a parse tree ({@link Parser#setBuildParseTree(boolean)} false).
+ *
+ * Contexts then only hold their own tokens, not their subrules, and a left-recursive expression is
+ * entered after its left operand was parsed. So everything is built on exit: literals push onto an operand
+ * stack, operations pop their two operands, and statements take their expression from it.
+ * Once the parser reported an error or bailed out, the listener stops building and {@link #getAST()} returns null.
+ */
+public class StreamingASTListener extends ICSSBaseListener {
+
+    private final Parser parser;
+    private final ArrayDeque<ASTNode> containers = new ArrayDeque<>();
+    private final ArrayDeque<Expression> operands = new ArrayDeque<>();
+    //The names of the document, which the AST takes over
+    private final SymbolTable symbols;
+    private AST ast;
+    private boolean failed = false;
+    private boolean stopped = false;
+    private long tokens = 0;
+    //The stylesheet a continued parse adds its statements to
+    private final Stylesheet continued;
+
+    public StreamingASTListener(Parser parser) {
+        this.parser = parser;
+        this.symbols = new SymbolTable();
+        this.continued = null;
+    }
+
+    /**
+     * Continues the AST of a listener that was {@link #stop() stopped} within a top-level statement: the parser
+     * parses that statement again, followed by the rest of the input.
+     * @param tokens the tokens the stopped listener counted before that statement
+     */
+    public StreamingASTListener(Parser parser, StreamingASTListener stopped, long tokens) {
+        this.parser = parser;
+        this.symbols = stopped.symbols;
+        this.continued = (Stylesheet) stopped.containers.peekLast();
+        this.failed = stopped.failed;
+        this.tokens = tokens;
+    }
+
+    /**
+     * Ignores all further events, such as the rules exited while the parser is abandoned.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * The AST after a successful parse, or null after a syntax error.
+     */
+    public AST getAST() {
+        return failed ? null : ast;
+    }
+
+    /**
+     * Tokens the parser consumed so far.
+     */
+    public long getTokenCount() {
+        return tokens;
+    }
+
+    /*
+     After an error the rules are exited with parts missing; those events are ignored
+     */
+    private boolean skip(ParserRuleContext ctx) {
+        if (stopped) {
+            return true;
+        }
+        if (failed || ctx.exception != null || parser.getNumberOfSyntaxErrors() > 0) {
+            failed = true;
+        }
+        return failed;
+    }
+
+    @Override
+    public void visitTerminal(TerminalNode node) {
+        if (!stopped) {
+            tokens++;
+        }
+    }
+
+    @Override
+    public void enterStylesheet(ICSSParser.StylesheetContext ctx) {
+        if (!skip(ctx)) {
+            containers.push(continued == null ? new Stylesheet() : continued);
+        }
+    }
+
+    @Override
+    public void exitStylesheet(ICSSParser.StylesheetContext ctx) {
+        if (!skip(ctx)) {
+            ast = new AST((Stylesheet) containers.pop(), symbols);
+        }
+    }
+
+    @Override
+    public void enterStylerule(ICSSParser.StyleruleContext ctx) {
+        if (!skip(ctx)) {
+            containers.push(new Stylerule());
+        }
+    }
+
+    @Override
+    public void exitStylerule(ICSSParser.StyleruleContext ctx) {
+        if (!skip(ctx)) {
+            ASTNode stylerule = containers.pop();
+            containers.peek().addChild(stylerule);
+        }
+    }
+
+    @Override
+    public void exitSelector(ICSSParser.SelectorContext ctx) {
+        if (skip(ctx)) {
+            return;
+        }
+        Selector selector;
+        if (ctx.LOWER_IDENT() != null) {
+            selector = new TagSelector(symbols.canonical(ctx.LOWER_IDENT().getText()));
+        } else if (ctx.ID_IDENT() != null) {
+            selector = new IdSelector(symbols.canonical(ctx.ID_IDENT().getText()));
+        } else {
+            selector = new ClassSelector(symbols.canonical(ctx.CLASS_IDENT().getText()));
+        }
+        containers.peek().addChild(selector);
+    }
+
+    @Override
+    public void exitVariableAssignment(ICSSParser.VariableAssignmentContext ctx) {
+        if (skip(ctx)) {
+            return;
+        }
+        VariableAssignment variableAssignment = new VariableAssignment();
+        variableAssignment.name = new VariableReference(ctx.CAPITAL_IDENT().getText(), symbols);
+        variableAssignment.addChild(operands.pop());
+        containers.peek().addChild(variableAssignment);
+    }
+
+    @Override
+    public void enterIfClause(ICSSParser.IfClauseContext ctx) {
+        if (!skip(ctx)) {
+            containers.push(new IfClause());
+        }
+    }
+
+    @Override
+    public void exitIfClause(ICSSParser.IfClauseContext ctx) {
+        if (skip(ctx)) {
+            return;
+        }
+        //The body took its own expressions, so the condition is what is left
+        ASTNode ifClause = containers.pop();
+        ifClause.addChild(operands.pop());
+        containers.peek().addChild(ifClause);
+    }
+
+    @Override
+    public void enterElseClause(ICSSParser.ElseClauseContext ctx) {
+        if (!skip(ctx)) {
+            containers.push(new ElseClause());
+        }
+    }
+
+    @Override
+    public void exitElseClause(ICSSParser.ElseClauseContext ctx) {
+        if (!skip(ctx)) {
+            ASTNode elseClause = containers.pop();
+            containers.peek().addChild(elseClause);
+        }
+    }
+
+    @Override
+    public void exitDeclaration(ICSSParser.DeclarationContext ctx) {
+        if (skip(ctx)) {
+            return;
+        }
+        Declaration declaration = new Declaration();
+        declaration.addChild(operands.pop());
+        declaration.property = new PropertyName(ctx.LOWER_IDENT().getText(), symbols);
+        containers.peek().addChild(declaration);
+    }
+
+    @Override
+    public void exitPlusMinExpressie(ICSSParser.PlusMinExpressieContext ctx) {
+        if (!skip(ctx)) {
+            combine(ctx.PLUS() != null ? new AddOperation() : new SubtractOperation());
+        }
+    }
+
+    @Override
+    public void exitMulExpressie(ICSSParser.MulExpressieContext ctx) {
+        if (!skip(ctx)) {
+            combine(new MultiplyOperation());
+        }
+    }
+
+    private void combine(Operation operation) {
+        Expression rhs = operands.pop();
+        operation.addChild(operands.pop());
+        operation.addChild(rhs);
+        operands.push(operation);
+    }
+
+    @Override
+    public void exitLiteral(ICSSParser.LiteralContext ctx) {
+        if (skip(ctx)) {
+            return;
+        }
+        Expression expression;
+        if (ctx.COLOR() != null) {
+            expression = ColorLiteral.of(ctx.COLOR().getText());
+        } else if (ctx.PIXELSIZE() != null) {
+            expression = PixelLiteral.of(ctx.PIXELSIZE().getText());
+        } else if (ctx.PERCENTAGE() != null) {
+            expression = PercentageLiteral.of(ctx.PERCENTAGE().getText());
+        } else if (ctx.SCALAR() != null) {
+            expression = ScalarLiteral.of(ctx.SCALAR().getText());
+        } else if (ctx.TRUE() != null) {
+            expression = BoolLiteral.TRUE;
+        } else if (ctx.FALSE() != null) {
+            expression = BoolLiteral.FALSE;
+        } else {
+            expression = new VariableReference(ctx.CAPITAL_IDENT().getText(), symbols);
+        }
+        operands.push(expression);
+    }
+}
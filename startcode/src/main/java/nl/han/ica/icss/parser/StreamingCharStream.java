@@ -0,0 +1,29 @@
+package nl.han.ica.icss.parser;
+
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.UnbufferedCharStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+import java.io.Reader;
+
+/**
+ * An {@link UnbufferedCharStream} that can report lexer errors at the end of the input.
+ *
+ * For an error message the lexer asks for the text up to and including the character it stopped at. When that
+ * is the end of the input, UnbufferedCharStream fails on the EOF marker; this stream leaves it out instead,
+ * which gives the same message as a buffered stream.
+ */
+public class StreamingCharStream extends UnbufferedCharStream {
+
+    public StreamingCharStream(Reader input) {
+        super(input);
+    }
+
+    @Override
+    public String getText(Interval interval) {
+        if (interval.b > interval.a && interval.b == index() && LA(1) == IntStream.EOF) {
+            return super.getText(Interval.of(interval.a, interval.b - 1));
+        }
+        return super.getText(interval);
+    }
+}
@@ -0,0 +1,39 @@
+package nl.han.ica.icss.parser;
+
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+
+import java.util.List;
+
+/**
+ * Error listener that appends lexer and parser errors to a list, using the same
+ * message format as the Pipeline.
+ */
+public class SyntaxErrorCollector extends BaseErrorListener {
+
+    private final List<String> errors;
+    private final int errorLimit;
+
+    public SyntaxErrorCollector(List<String> errors) {
+        this(errors, 0);
+    }
+
+    /**
+     * @param errorLimit maximum number of errors in the list; the error that reaches it throws an
+     *                   {@link ErrorLimitReachedException}, so lexing and parsing stop right there. 0 means no limit.
+     */
+    public SyntaxErrorCollector(List<String> errors, int errorLimit) {
+        this.errors = errors;
+        this.errorLimit = errorLimit;
+    }
+
+    @Override
+    public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+                            int charPositionInLine, String msg, RecognitionException e) {
+        errors.add("Syntax error: " + msg);
+        if (errorLimit > 0 && errors.size() >= errorLimit) {
+            throw new ErrorLimitReachedException(errorLimit);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package nl.han.ica.icss.parser;
+
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a token source into the top-level statements of a stylesheet: every variable assignment
+ * and every stylerule becomes one segment. Segmentation only counts braces, so it works on any input;
+ * whether a segment is actually valid is left to the parser.
+ */
+public class TopLevelSegmenter {
+
+    private final TokenSource tokenSource;
+    private boolean done = false;
+
+    public TopLevelSegmenter(TokenSource tokenSource) {
+        this.tokenSource = tokenSource;
+    }
+
+    /**
+     * Returns the tokens of the next top-level segment, or null when the input is exhausted.
+     * A segment that is cut off by the end of the input is returned as is.
+     */
+    public List<Token> next() {
+        if (done) {
+            return null;
+        }
+        List<Token> segment = new ArrayList<>();
+        int depth = 0;
+        while (true) {
+            Token token = tokenSource.nextToken();
+            if (token.getType() == Token.EOF) {
+                done = true;
+                return segment.isEmpty() ? null : segment;
+            }
+            segment.add(token);
+            if (token.getType() == ICSSLexer.OPEN_BRACE) {
+                depth++;
+            } else if (token.getType() == ICSSLexer.CLOSE_BRACE) {
+                depth--;
+                if (depth <= 0) {
+                    return segment;
+                }
+            } else if (token.getType() == ICSSLexer.SEMICOLON && depth <= 0) {
+                return segment;
+            }
+        }
+    }
+
+    /**
+     * A whitespace-insensitive fingerprint of a segment: its token texts separated by single spaces.
+     */
+    public static String fingerprint(List<Token> segment) {
+        StringBuilder builder = new StringBuilder();
+        for (Token token : segment) {
+            if (builder.length() > 0) {
+                builder.append(' ');
+            }
+            builder.append(token.getText());
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,305 @@
+package nl.han.ica.icss.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import nl.han.ica.icss.CompileOptions;
+import nl.han.ica.icss.CompileResult;
+import nl.han.ica.icss.ICSSCompiler;
+import nl.han.ica.icss.Phase;
+import nl.han.ica.icss.cache.CompilationCache;
+import nl.han.ica.icss.metrics.MetricsRegistry;
+import nl.han.ica.icss.parser.SourceParser;
+import nl.han.ica.icss.tools.StylesheetGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Long-running local compile service built on the JDK's HTTP server.
+ *
+ * POST /compile with ICSS as the request body returns JSON with the CSS, the diagnostics and the
+ * time spent per phase. Add ?generate=false (or generate=0) to only parse, check and transform. Compilation stops after
+ * --errors errors (100 by default), so broken uploads cannot produce endless error lists. GET /health returns "ok"
+ * and GET /metrics the per-phase metrics, which are also published in JMX, and the size of the parser's DFA cache.
+ * Before listening, the parser is warmed up on a generated stylesheet so the first requests are not slower
+ * than the rest.
+ * Requests are handled by one shared {@link ICSSCompiler}; every request runs on its own virtual thread
+ * when the JVM supports them, and on a pooled platform thread otherwise.
+ *
+ * Usage: CompileServer [--host &lt;address&gt;] [--port &lt;port&gt;] [--cache &lt;entries&gt;] [--errors &lt;limit&gt;]
+ */
+public class CompileServer {
+
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_MAX_REQUEST_BYTES = 64 * 1024 * 1024;
+    private static final int DEFAULT_ERROR_LIMIT = 100;
+    private static final int WARM_UP_RULES = 200;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ICSSCompiler compiler;
+    private final MetricsRegistry metrics;
+    private final CompileOptions options;
+    private final int maxRequestBytes;
+
+    public CompileServer(InetSocketAddress address, CompilationCache cache) throws IOException {
+        this(address, cache, MetricsRegistry.global());
+    }
+
+    public CompileServer(InetSocketAddress address, CompilationCache cache, MetricsRegistry metrics) throws IOException {
+        this(address, cache, metrics, DEFAULT_ERROR_LIMIT);
+    }
+
+    /**
+     * @param errorLimit maximum number of errors reported per request, 0 for no limit
+     */
+    public CompileServer(InetSocketAddress address, CompilationCache cache, MetricsRegistry metrics, int errorLimit)
+            throws IOException {
+        this(address, cache, metrics, errorLimit, DEFAULT_MAX_REQUEST_BYTES);
+    }
+
+    CompileServer(InetSocketAddress address, CompilationCache cache, MetricsRegistry metrics, int errorLimit,
+            int maxRequestBytes) throws IOException {
+        this.maxRequestBytes = maxRequestBytes;
+        this.metrics = metrics;
+        this.options = CompileOptions.defaults().withErrorLimit(errorLimit);
+        this.compiler = new ICSSCompiler(cache, metrics);
+        this.executor = newRequestExecutor();
+        this.server = HttpServer.create(address, 0);
+        server.createContext("/compile", this::handleCompile);
+        server.createContext("/health", this::handleHealth);
+        server.createContext("/metrics", this::handleMetrics);
+        server.setExecutor(executor);
+    }
+
+    public static void main(String[] args) throws IOException {
+        String host = "localhost";
+        int port = DEFAULT_PORT;
+        CompilationCache cache = null;
+        int errorLimit = DEFAULT_ERROR_LIMIT;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("--host")) {
+                host = args[i + 1];
+            } else if (args[i].equals("--port")) {
+                port = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("--cache")) {
+                cache = new CompilationCache(Integer.parseInt(args[i + 1]));
+            } else if (args[i].equals("--errors")) {
+                errorLimit = Integer.parseInt(args[i + 1]);
+            }
+        }
+        if (args.length % 2 != 0) {
+            System.err.println("Usage: CompileServer [--host <address>] [--port <port>] [--cache <entries>] [--errors <limit>]");
+            System.exit(2);
+        }
+        CompileServer compileServer = new CompileServer(new InetSocketAddress(host, port), cache,
+                MetricsRegistry.global(), errorLimit);
+        MetricsRegistry.global().registerMBean("server");
+        long start = System.nanoTime();
+        int states = warmUp();
+        System.out.printf("Warmed up the parser in %.0f ms (%d DFA states)%n", (System.nanoTime() - start) / 1e6, states);
+        compileServer.start();
+        System.out.println("Listening on http://" + host + ":" + compileServer.getPort() + "/compile");
+    }
+
+    /**
+     * Primes the parser's DFA cache, which all compilations in the JVM share, with a generated stylesheet
+     * that uses every construct of the language.
+     * @return the number of DFA states afterwards
+     */
+    public static int warmUp() {
+        return SourceParser.warmUp(List.of(StylesheetGenerator.defaults().withRules(WARM_UP_RULES).generate()));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests and waits at most delaySeconds for running requests to finish.
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdownNow();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /*
+     Executors.newVirtualThreadPerTaskExecutor() only exists from Java 21 on, while this project
+     targets older releases, so it is looked up at runtime.
+     */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    private void handleHealth(HttpExchange exchange) throws IOException {
+        respond(exchange, 200, "text/plain", "ok");
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        respond(exchange, 200, "text/plain",
+                metrics.report() + String.format("%-22s %d%n", "parser.dfa.states", SourceParser.getDfaStateCount()));
+    }
+
+    private void handleCompile(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                respond(exchange, 405, "text/plain", "Use POST with ICSS as the request body");
+                return;
+            }
+            String source = readBody(exchange.getRequestBody());
+            if (source == null) {
+                respond(exchange, 413, "text/plain", "Request body exceeds " + maxRequestBytes + " bytes");
+                return;
+            }
+            Map<String, String> query;
+            try {
+                query = parseQuery(exchange.getRequestURI().getRawQuery());
+            } catch (IllegalArgumentException e) {
+                respond(exchange, 400, "text/plain", "Malformed query: " + e.getMessage());
+                return;
+            }
+            String generate = query.getOrDefault("generate", "true");
+            if (!generate.equals("true") && !generate.equals("1") && !generate.equals("false") && !generate.equals("0")) {
+                respond(exchange, 400, "text/plain", "generate must be true, false, 1 or 0");
+                return;
+            }
+
+            CompileResult result = compiler.compile(source,
+                    options.withGenerate(generate.equals("true") || generate.equals("1")));
+            respond(exchange, result.isSuccess() ? 200 : 422, "application/json", toJson(result));
+        } catch (IOException e) {
+            throw e;
+        } catch (Throwable e) {
+            //Also errors such as a StackOverflowError: without a response the client would wait forever
+            try {
+                respond(exchange, 500, "text/plain", "Internal error: " + e);
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+
+    /**
+     * The parameters of a query string such as "generate=false&amp;x=1". The last value of a repeated key wins;
+     * a key without '=' has an empty value.
+     */
+    static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return parameters;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            if (parameter.isEmpty()) {
+                continue;
+            }
+            int separator = parameter.indexOf('=');
+            String key = separator < 0 ? parameter : parameter.substring(0, separator);
+            String value = separator < 0 ? "" : parameter.substring(separator + 1);
+            parameters.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private String readBody(InputStream body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        for (int read = body.read(buffer); read >= 0; read = body.read(buffer)) {
+            bytes.write(buffer, 0, read);
+            if (bytes.size() > maxRequestBytes) {
+                return null;
+            }
+        }
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    static String toJson(CompileResult result) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"success\":").append(result.isSuccess());
+        json.append(",\"truncated\":").append(result.isTruncated());
+        json.append(",\"css\":");
+        if (result.getCss() == null) {
+            json.append("null");
+        } else {
+            appendString(json, result.getCss());
+        }
+        json.append(",\"errors\":[");
+        for (int i = 0; i < result.getErrors().size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendString(json, result.getErrors().get(i));
+        }
+        json.append("],\"timingsNanos\":{");
+        boolean first = true;
+        for (Map.Entry<Phase, Long> timing : result.getTimings().entrySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            appendString(json, timing.getKey().name().toLowerCase());
+            json.append(':').append(timing.getValue());
+        }
+        return json.append("}}").toString();
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+}
@@ -0,0 +1,299 @@
+package nl.han.ica.icss.tools;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates valid ICSS stylesheets of a configurable shape, for testing the compiler at realistic sizes.
+ * The output only depends on the settings: the same seed always produces the same stylesheet.
+ *
+ * ICSS only has global variables, so the variables of a "scope" are assigned right before each stylerule
+ * and can be used by that rule and every rule after it. Instances are immutable; use {@link #defaults()}
+ * and the with-methods to derive variations.
+ *
+ * Usage: StylesheetGenerator [--rules &lt;n&gt;] [--variables &lt;n&gt;] [--declarations &lt;n&gt;] [--depth &lt;n&gt;]
+ * [--expression &lt;n&gt;] [--mix &lt;pixel,percentage,color&gt;] [--seed &lt;n&gt;] [--out &lt;file&gt;]
+ */
+public final class StylesheetGenerator {
+
+    private static final StylesheetGenerator DEFAULTS = new StylesheetGenerator(1, 1000, 2, 4, 2, 3, 1, 1, 1);
+    private static final String[] SELECTOR_PREFIXES = {"", "#", "."};
+
+    private final long seed;
+    private final int rules;
+    private final int variablesPerScope;
+    private final int declarationsPerBlock;
+    private final int ifDepth;
+    private final int expressionLength;
+    private final int pixelWeight;
+    private final int percentageWeight;
+    private final int colorWeight;
+
+    private StylesheetGenerator(long seed, int rules, int variablesPerScope, int declarationsPerBlock, int ifDepth,
+                                int expressionLength, int pixelWeight, int percentageWeight, int colorWeight) {
+        this.seed = seed;
+        this.rules = rules;
+        this.variablesPerScope = variablesPerScope;
+        this.declarationsPerBlock = declarationsPerBlock;
+        this.ifDepth = ifDepth;
+        this.expressionLength = expressionLength;
+        this.pixelWeight = pixelWeight;
+        this.percentageWeight = percentageWeight;
+        this.colorWeight = colorWeight;
+    }
+
+    /**
+     * 1000 stylerules with two variables each, four declarations per block, if-clauses nested two deep,
+     * expressions of three operands and as many pixel as percentage and color values.
+     */
+    public static StylesheetGenerator defaults() {
+        return DEFAULTS;
+    }
+
+    public StylesheetGenerator withSeed(long seed) {
+        return new StylesheetGenerator(seed, rules, variablesPerScope, declarationsPerBlock, ifDepth,
+                expressionLength, pixelWeight, percentageWeight, colorWeight);
+    }
+    public StylesheetGenerator withRules(int rules) {
+        return new StylesheetGenerator(seed, atLeast(0, rules, "rules"), variablesPerScope, declarationsPerBlock,
+                ifDepth, expressionLength, pixelWeight, percentageWeight, colorWeight);
+    }
+    /**
+     * Number of variable assignments before every stylerule.
+     */
+    public StylesheetGenerator withVariablesPerScope(int variablesPerScope) {
+        return new StylesheetGenerator(seed, rules, atLeast(0, variablesPerScope, "variables"), declarationsPerBlock,
+                ifDepth, expressionLength, pixelWeight, percentageWeight, colorWeight);
+    }
+    /**
+     * Number of declarations in every stylerule, if-clause and else-clause.
+     */
+    public StylesheetGenerator withDeclarationsPerBlock(int declarationsPerBlock) {
+        return new StylesheetGenerator(seed, rules, variablesPerScope, atLeast(0, declarationsPerBlock, "declarations"),
+                ifDepth, expressionLength, pixelWeight, percentageWeight, colorWeight);
+    }
+    /**
+     * Nesting depth of the if-clauses in every stylerule; 0 generates no if-clauses. Every if-clause has an else-clause.
+     */
+    public StylesheetGenerator withIfDepth(int ifDepth) {
+        return new StylesheetGenerator(seed, rules, variablesPerScope, declarationsPerBlock, atLeast(0, ifDepth, "depth"),
+                expressionLength, pixelWeight, percentageWeight, colorWeight);
+    }
+    /**
+     * Number of operands in pixel, percentage and scalar expressions.
+     */
+    public StylesheetGenerator withExpressionLength(int expressionLength) {
+        return new StylesheetGenerator(seed, rules, variablesPerScope, declarationsPerBlock, ifDepth,
+                atLeast(1, expressionLength, "expression length"), pixelWeight, percentageWeight, colorWeight);
+    }
+    /**
+     * Relative frequencies of pixel, percentage and color values in declarations and variables.
+     */
+    public StylesheetGenerator withLiteralMix(int pixelWeight, int percentageWeight, int colorWeight) {
+        if (pixelWeight + percentageWeight + colorWeight <= 0) {
+            throw new IllegalArgumentException("At least one literal weight must be positive");
+        }
+        return new StylesheetGenerator(seed, rules, variablesPerScope, declarationsPerBlock, ifDepth, expressionLength,
+                atLeast(0, pixelWeight, "pixel weight"), atLeast(0, percentageWeight, "percentage weight"),
+                atLeast(0, colorWeight, "color weight"));
+    }
+
+    private static int atLeast(int minimum, int value, String name) {
+        if (value < minimum) {
+            throw new IllegalArgumentException(name + " must be at least " + minimum + ": " + value);
+        }
+        return value;
+    }
+
+    public String generate() {
+        StringBuilder out = new StringBuilder();
+        try {
+            generate(out);
+        } catch (IOException e) {
+            //A StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    public void generate(Appendable out) throws IOException {
+        new Emitter(out).stylesheet();
+    }
+
+    public static void main(String[] args) throws IOException {
+        StylesheetGenerator generator = defaults();
+        String out = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (i + 1 >= args.length) {
+                    usage();
+                }
+                String value = args[++i];
+                switch (args[i - 1]) {
+                    case "--rules": generator = generator.withRules(Integer.parseInt(value)); break;
+                    case "--variables": generator = generator.withVariablesPerScope(Integer.parseInt(value)); break;
+                    case "--declarations": generator = generator.withDeclarationsPerBlock(Integer.parseInt(value)); break;
+                    case "--depth": generator = generator.withIfDepth(Integer.parseInt(value)); break;
+                    case "--expression": generator = generator.withExpressionLength(Integer.parseInt(value)); break;
+                    case "--seed": generator = generator.withSeed(Long.parseLong(value)); break;
+                    case "--out": out = value; break;
+                    case "--mix":
+                        String[] weights = value.split(",");
+                        if (weights.length != 3) {
+                            usage();
+                        }
+                        generator = generator.withLiteralMix(Integer.parseInt(weights[0]),
+                                Integer.parseInt(weights[1]), Integer.parseInt(weights[2]));
+                        break;
+                    default: usage();
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            usage();
+        }
+
+        try (Writer writer = out == null
+                ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                : Files.newBufferedWriter(Paths.get(out), StandardCharsets.UTF_8)) {
+            generator.generate(writer);
+        }
+    }
+
+    private static void usage() {
+        System.err.println("Usage: StylesheetGenerator [--rules <n>] [--variables <n>] [--declarations <n>] [--depth <n>]"
+                + " [--expression <n>] [--mix <pixel,percentage,color>] [--seed <n>] [--out <file>]");
+        System.exit(2);
+    }
+
+    @Override
+    public String toString() {
+        return "seed=" + seed + ",rules=" + rules + ",variables=" + variablesPerScope
+                + ",declarations=" + declarationsPerBlock + ",depth=" + ifDepth + ",expression=" + expressionLength
+                + ",mix=" + pixelWeight + ":" + percentageWeight + ":" + colorWeight;
+    }
+
+    private enum Kind { PIXEL, PERCENTAGE, COLOR, SCALAR, BOOL }
+
+    /*
+     The state of one generate call: the random sequence and the variables assigned so far, by kind.
+     */
+    private class Emitter {
+        final Appendable out;
+        final Random random = new Random(seed);
+        final List<List<String>> variables = new ArrayList<>();
+        int variableCount = 0;
+
+        Emitter(Appendable out) {
+            this.out = out;
+            for (int i = 0; i < Kind.values().length; i++) {
+                variables.add(new ArrayList<>());
+            }
+        }
+
+        void stylesheet() throws IOException {
+            for (int rule = 0; rule < rules; rule++) {
+                for (int i = 0; i < variablesPerScope; i++) {
+                    variableAssignment();
+                }
+                out.append(SELECTOR_PREFIXES[rule % SELECTOR_PREFIXES.length]).append("rule-")
+                        .append(Integer.toString(rule)).append(" {\n");
+                block(ifDepth, 1);
+                out.append("}\n\n");
+            }
+        }
+
+        void variableAssignment() throws IOException {
+            //Scalars and booleans are only used inside expressions and conditions, so they are not part of the mix
+            int choice = random.nextInt(5);
+            Kind kind = choice == 0 ? Kind.SCALAR : choice == 1 ? Kind.BOOL : valueKind();
+            String name = kind.name().charAt(0) + kind.name().substring(1).toLowerCase() + variableCount++;
+            out.append(name).append(" := ");
+            //Variables are assigned literals only, so their values cannot grow from one variable to the next
+            expression(kind, false);
+            out.append(";\n");
+            variables.get(kind.ordinal()).add(name);
+        }
+
+        void block(int depth, int indent) throws IOException {
+            for (int i = 0; i < declarationsPerBlock; i++) {
+                declaration(indent);
+            }
+            if (depth > 0) {
+                indent(indent).append("if [");
+                expression(Kind.BOOL, true);
+                out.append("] {\n");
+                block(depth - 1, indent + 1);
+                indent(indent).append("} else {\n");
+                block(0, indent + 1);
+                indent(indent).append("}\n");
+            }
+        }
+
+        void declaration(int indent) throws IOException {
+            Kind kind = valueKind();
+            String property;
+            if (kind == Kind.COLOR) {
+                property = random.nextBoolean() ? "color" : "background-color";
+            } else if (kind == Kind.PIXEL) {
+                property = random.nextBoolean() ? "width" : "height";
+            } else {
+                property = "width";
+            }
+            indent(indent).append(property).append(": ");
+            expression(kind, true);
+            out.append(";\n");
+        }
+
+        /*
+         Scalar, color and boolean expressions are a single operand. Pixel and percentage expressions are sums and differences of terms, where every term is a value
+         of the kind optionally multiplied by scalars, so every expression passes the checker.
+         */
+        void expression(Kind kind, boolean useVariables) throws IOException {
+            operand(kind, useVariables);
+            if (kind != Kind.PIXEL && kind != Kind.PERCENTAGE) {
+                return;
+            }
+            for (int i = 1; i < expressionLength; i++) {
+                int operator = random.nextInt(3);
+                out.append(operator == 0 ? " + " : operator == 1 ? " - " : " * ");
+                operand(operator == 2 ? Kind.SCALAR : kind, useVariables);
+            }
+        }
+
+        void operand(Kind kind, boolean useVariables) throws IOException {
+            List<String> candidates = variables.get(kind.ordinal());
+            if (useVariables && !candidates.isEmpty() && random.nextBoolean()) {
+                out.append(candidates.get(random.nextInt(candidates.size())));
+                return;
+            }
+            switch (kind) {
+                case PIXEL: out.append(Integer.toString(random.nextInt(500))).append("px"); break;
+                case PERCENTAGE: out.append(Integer.toString(random.nextInt(101))).append('%'); break;
+                case COLOR: out.append(String.format("#%06x", random.nextInt(0x1000000))); break;
+                case SCALAR: out.append(Integer.toString(1 + random.nextInt(3))); break;
+                default: out.append(random.nextBoolean() ? "TRUE" : "FALSE");
+            }
+        }
+
+        Kind valueKind() {
+            int choice = random.nextInt(pixelWeight + percentageWeight + colorWeight);
+            if (choice < pixelWeight) {
+                return Kind.PIXEL;
+            }
+            return choice < pixelWeight + percentageWeight ? Kind.PERCENTAGE : Kind.COLOR;
+        }
+
+        Appendable indent(int depth) throws IOException {
+            for (int i = 0; i < depth; i++) {
+                out.append('\t');
+            }
+            return out;
+        }
+    }
+}
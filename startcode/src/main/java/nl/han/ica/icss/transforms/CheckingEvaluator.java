@@ -0,0 +1,441 @@
+package nl.han.ica.icss.transforms;
+
+import nl.han.ica.datastructures.ScopeStack;
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.types.ExpressionType;
+import nl.han.ica.icss.checker.Checker;
+import nl.han.ica.icss.checker.LiteralArithmetic;
+import nl.han.ica.icss.checker.TypeRules;
+import nl.han.ica.icss.jfr.CheckEvent;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Does the work of the {@link Checker} followed by the {@link Evaluator} in a single traversal, with one
+ * scope chain holding both the type and the value of every variable.
+ *
+ * Semantic errors are set on the nodes exactly like the Checker does. The changes of the Evaluator are
+ * collected while traversing and only made when no error was found, so the result is the same as checking
+ * and then evaluating a stylesheet that passed the check. The only difference is for variable assignments
+ * inside if-clauses, which the parser never produces: they are scoped like the Checker scopes them.
+ */
+public class CheckingEvaluator implements Transform {
+
+    private static class Variable {
+        final ExpressionType type;
+        final Literal value;
+
+        Variable(ExpressionType type, Literal value) {
+            this.type = type;
+            this.value = value;
+        }
+    }
+
+    private enum Block {
+        STYLERULE(TypeRules.STYLERULE_ERROR),
+        IF_CLAUSE(TypeRules.IF_CLAUSE_ERROR),
+        ELSE_CLAUSE(TypeRules.ELSE_CLAUSE_ERROR);
+
+        final String unknownNodeError;
+
+        Block(String unknownNodeError) {
+            this.unknownNodeError = unknownNodeError;
+        }
+    }
+
+    //Thrown to stop once the error limit is reached
+    private static class ErrorLimitReached extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ErrorLimitReached() {
+            super(null, null, false, false);
+        }
+    }
+
+    private final int errorLimit;
+    private int errorCount;
+    private boolean truncated;
+    //Variables by symbol
+    private ScopeStack<Variable> scopes;
+    //The symbols of the AST being applied
+    private SymbolTable symbols;
+    /*
+     The changes of the Evaluator, made at the end when no error was found. The expression of the declaration
+     or variable assignment at index i becomes the literal at index i; the arrays are reused by the next apply.
+     */
+    private ASTNode[] changedNodes = new ASTNode[64];
+    private Literal[] changedValues = new Literal[64];
+    private int changeCount;
+    //Bodies that lose their removed nodes and gain their added branches, innermost first
+    private final ArrayList<Frame> changedBodies = new ArrayList<>();
+    //Top-level variable assignments, which the Evaluator removes from the stylesheet
+    private final ArrayList<ASTNode> topLevelAssignments = new ArrayList<>();
+    private boolean hasErrors;
+    //The Evaluator would throw this when run after a successful check
+    private RuntimeException evaluationFailure;
+    //Value of the last expression, while evaluating
+    private Literal value;
+
+    public CheckingEvaluator() {
+        this(0);
+    }
+
+    /**
+     * @param errorLimit checking stops once this many errors were found, 0 means no limit
+     */
+    public CheckingEvaluator(int errorLimit) {
+        this.errorLimit = errorLimit;
+    }
+
+    /**
+     * Whether the last apply stopped at the error limit, leaving part of the AST unchecked.
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    @Override
+    public void apply(AST ast) {
+        CheckEvent event = new CheckEvent();
+        event.begin();
+        scopes = new ScopeStack<>();
+        symbols = ast.symbols;
+        hasErrors = false;
+        truncated = false;
+        errorCount = 0;
+        evaluationFailure = null;
+        try {
+            applyStylesheet(ast.root);
+        } catch (ErrorLimitReached e) {
+            truncated = true;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.inputSize = event.nodeCount = ast.getNodeCount();
+            event.errorCount = ast.getErrors().size();
+            event.commit();
+        }
+        try {
+            if (hasErrors) {
+                return;
+            }
+            if (evaluationFailure != null) {
+                throw evaluationFailure;
+            }
+            applyChanges(ast.root);
+        } finally {
+            //Do not keep the AST alive until the next apply
+            Arrays.fill(changedNodes, 0, changeCount, null);
+            Arrays.fill(changedValues, 0, changeCount, null);
+            changeCount = 0;
+            changedBodies.clear();
+            topLevelAssignments.clear();
+        }
+    }
+
+    private void applyChanges(Stylesheet sheet) {
+        for (int i = 0; i < changeCount; i++) {
+            if (changedNodes[i] instanceof Declaration) {
+                ((Declaration) changedNodes[i]).expression = changedValues[i];
+            } else {
+                ((VariableAssignment) changedNodes[i]).expression = changedValues[i];
+            }
+        }
+        for (Frame frame : changedBodies) {
+            List<ASTNode> nodesToAdd = new ArrayList<>();
+            for (ArrayList<ASTNode> branch : frame.added) {
+                nodesToAdd.addAll(branch);
+            }
+            frame.body.removeAll(frame.removed);
+            frame.body.addAll(nodesToAdd);
+        }
+        for (ASTNode assignment : topLevelAssignments) {
+            sheet.removeChild(assignment);
+        }
+    }
+
+    private void change(ASTNode node, Literal literal) {
+        if (changeCount == changedNodes.length) {
+            changedNodes = Arrays.copyOf(changedNodes, changeCount * 2);
+            changedValues = Arrays.copyOf(changedValues, changeCount * 2);
+        }
+        changedNodes[changeCount] = node;
+        changedValues[changeCount++] = literal;
+    }
+
+    private boolean isEvaluating() {
+        return !hasErrors && evaluationFailure == null;
+    }
+
+    private void error(ASTNode node, String description, boolean check) {
+        if (check) {
+            node.setError(description);
+            hasErrors = true;
+            if (++errorCount >= errorLimit && errorLimit > 0) {
+                throw new ErrorLimitReached();
+            }
+        }
+    }
+
+    private void applyStylesheet(Stylesheet sheet) {
+        scopes.push();
+        for (ASTNode child : sheet.getChildren()) {
+            if (child instanceof Stylerule) {
+                scopes.push();
+                applyBody(((Stylerule) child).body, Block.STYLERULE, true, true);
+                scopes.pop();
+            } else if (child instanceof VariableAssignment) {
+                applyVariableAssignment((VariableAssignment) child, true, true);
+                topLevelAssignments.add(child);
+            } else {
+                error(child, TypeRules.STYLESHEET_ERROR, true);
+            }
+        }
+        scopes.pop();
+    }
+
+    /*
+     A body being checked and/or evaluated, with what changes in it when it was evaluated
+     */
+    private static class Frame {
+        final ArrayList<ASTNode> body;
+        final Block block;
+        final boolean check;
+        final boolean evaluate;
+        final List<ASTNode> removed = new ArrayList<>();
+        final List<ArrayList<ASTNode>> added = new ArrayList<>();
+        int next = 0;
+        //Whether the frame opened a scope that ends with it
+        boolean scoped;
+        //Set on the body of an if-clause whose else-clause is evaluated next, when evaluating
+        IfClause elseFollows;
+
+        Frame(ArrayList<ASTNode> body, Block block, boolean check, boolean evaluate) {
+            this.body = body;
+            this.block = block;
+            this.check = check;
+            this.evaluate = evaluate;
+        }
+    }
+
+    /*
+     Checks and/or evaluates a body. Like the Evaluator, an evaluated body loses its variable assignments
+     and its if-clauses are replaced by the contents of the chosen branch, at the end.
+     Nested bodies are kept on a stack of frames instead of recursing, so any nesting depth fits.
+     */
+    private void applyBody(ArrayList<ASTNode> body, Block block, boolean check, boolean evaluate) {
+        ArrayDeque<Frame> frames = new ArrayDeque<>();
+        frames.push(new Frame(body, block, check, evaluate));
+        while (!frames.isEmpty()) {
+            Frame frame = frames.peek();
+            if (frame.next == frame.body.size()) {
+                frames.pop();
+                endBody(frame, frames);
+                continue;
+            }
+            ASTNode node = frame.body.get(frame.next++);
+            if (node instanceof Declaration) {
+                applyDeclaration((Declaration) node, frame.check, frame.evaluate);
+            } else if (node instanceof VariableAssignment) {
+                applyVariableAssignment((VariableAssignment) node, frame.check, frame.evaluate);
+                frame.removed.add(node);
+            } else if (node instanceof IfClause) {
+                frames.push(applyIfClause((IfClause) node, frame));
+                frame.removed.add(node);
+            } else if (node instanceof ElseClause && frame.block == Block.IF_CLAUSE) {
+                scopes.push();
+                Frame elseFrame = new Frame(((ElseClause) node).body, Block.ELSE_CLAUSE, frame.check, false);
+                elseFrame.scoped = true;
+                frames.push(elseFrame);
+            } else {
+                error(node, frame.block.unknownNodeError, frame.check);
+            }
+        }
+    }
+
+    private void endBody(Frame frame, ArrayDeque<Frame> frames) {
+        if (frame.evaluate && isEvaluating()) {
+            changedBodies.add(frame);
+        }
+        if (frame.scoped) {
+            scopes.pop();
+        }
+        //The Checker never looks at else-clauses, but the Evaluator takes them
+        IfClause ifClause = frame.elseFollows;
+        if (ifClause != null && ifClause.elseClause != null && isEvaluating()) {
+            frames.peek().added.add(ifClause.elseClause.body);
+            frames.push(new Frame(ifClause.elseClause.body, Block.ELSE_CLAUSE, false, true));
+        }
+    }
+
+    /*
+     Checks the condition and returns the frame for the body of the if-clause, in a scope of its own.
+     When evaluating, the body of the branch that is taken is added to the parent.
+     */
+    private Frame applyIfClause(IfClause ifClause, Frame parent) {
+        boolean evaluate = parent.evaluate;
+        scopes.push();
+        ExpressionType conditionType = applyExpression(ifClause.conditionalExpression, parent.check);
+        if (conditionType != ExpressionType.BOOL && parent.check) {
+            ifClause.conditionalExpression = unshared(ifClause.conditionalExpression);
+            error(ifClause.conditionalExpression, TypeRules.IF_CONDITION_ERROR, true);
+        }
+        boolean condition = false;
+        if (evaluate && isEvaluating()) {
+            try {
+                condition = ((BoolLiteral) value).value;
+            } catch (RuntimeException e) {
+                evaluationFailure = e;
+            }
+        }
+        Frame frame = new Frame(ifClause.body, Block.IF_CLAUSE, parent.check, evaluate && condition);
+        frame.scoped = true;
+        if (condition) {
+            parent.added.add(ifClause.body);
+        } else if (evaluate) {
+            frame.elseFollows = ifClause;
+        }
+        return frame;
+    }
+
+    private void applyDeclaration(Declaration declaration, boolean check, boolean evaluate) {
+        ExpressionType expressionType = applyExpression(declaration.expression, check);
+        if (check) {
+            String error = TypeRules.declarationError(symbols, declaration.property.symbol(symbols), expressionType);
+            if (error != null) {
+                error(declaration, error, true);
+            }
+        }
+        if (evaluate && isEvaluating()) {
+            change(declaration, value);
+        }
+    }
+
+    private void applyVariableAssignment(VariableAssignment assignment, boolean check, boolean evaluate) {
+        ExpressionType type = applyExpression(assignment.expression, check);
+        Literal literal = evaluate && isEvaluating() ? value : null;
+        scopes.put(assignment.name.symbol(symbols), new Variable(type, literal));
+        if (evaluate && isEvaluating()) {
+            change(assignment, literal);
+        }
+    }
+
+    /*
+     Returns the type of the expression and leaves its value in the value field.
+     Long chains of operations make deep trees, so the operands are visited with a stack instead of recursion.
+     An operation is pushed twice: the first time its operands are pushed after it, the second time
+     their types and values are on the stacks and are combined. Values can be null, hence the list.
+     */
+    private ExpressionType applyExpression(Expression expression, boolean check) {
+        ArrayList<Expression> pending = new ArrayList<>();
+        ArrayDeque<Operation> combining = new ArrayDeque<>();
+        ArrayDeque<ExpressionType> types = new ArrayDeque<>();
+        ArrayList<Literal> values = new ArrayList<>();
+        pending.add(expression);
+        while (!pending.isEmpty()) {
+            Expression next = pending.remove(pending.size() - 1);
+            if (!(next instanceof Operation)) {
+                types.push(applyOperand(next, check));
+            } else if (combining.peek() == next) {
+                combining.pop();
+                ExpressionType rightType = types.pop();
+                ExpressionType leftType = types.pop();
+                Literal right = values.remove(values.size() - 1);
+                Literal left = values.remove(values.size() - 1);
+                types.push(applyOperation((Operation) next, leftType, left, rightType, right, check));
+            } else if (!applyOperationChildren((Operation) next, check)) {
+                types.push(ExpressionType.UNDEFINED);
+            } else {
+                combining.push((Operation) next);
+                pending.add(next);
+                pending.add(((Operation) next).rhs);
+                pending.add(((Operation) next).lhs);
+                continue;
+            }
+            values.add(value);
+        }
+        return types.pop();
+    }
+
+    private ExpressionType applyOperand(Expression expression, boolean check) {
+        if (expression instanceof VariableReference) {
+            VariableReference reference = (VariableReference) expression;
+            Variable variable = scopes.get(reference.symbol(symbols));
+            if (variable != null) {
+                value = variable.value;
+                return variable.type;
+            }
+            value = null;
+            error(expression, TypeRules.undefinedVariableError(reference.name), check);
+            return ExpressionType.UNDEFINED;
+        } else if (expression instanceof Literal) {
+            value = (Literal) expression;
+            return TypeRules.literalType((Literal) expression);
+        }
+        value = null;
+        return ExpressionType.UNDEFINED;
+    }
+
+    /*
+     Whether the operands of the operation are visited: not when checking finds a literal operand that
+     cannot be used in an operation.
+     */
+    private boolean applyOperationChildren(Operation operation, boolean check) {
+        if (check) {
+            for (int i = 0; i < operation.childCount(); i++) {
+                ASTNode child = operation.childAt(i);
+                if (child instanceof ColorLiteral) {
+                    error(unsharedOperand(operation, child), TypeRules.COLOR_OPERAND_ERROR, true);
+                    value = null;
+                    return false;
+                } else if (child instanceof BoolLiteral) {
+                    error(unsharedOperand(operation, child), TypeRules.BOOL_OPERAND_ERROR, true);
+                    value = null;
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private ExpressionType applyOperation(Operation operation, ExpressionType leftType, Literal left,
+                                          ExpressionType rightType, Literal right, boolean check) {
+        boolean multiply = operation instanceof MultiplyOperation;
+        if (multiply) {
+            value = LiteralArithmetic.multiply(left, right);
+        } else if (operation instanceof AddOperation || operation instanceof SubtractOperation) {
+            value = LiteralArithmetic.addOrSubtract(left, right, operation instanceof AddOperation);
+        } else {
+            value = null;
+            error(operation, TypeRules.UNKNOWN_OPERATION_ERROR, check);
+            return ExpressionType.UNDEFINED;
+        }
+        String error = TypeRules.operationError(multiply, leftType, rightType);
+        if (error != null) {
+            error(operation, error, check);
+            return ExpressionType.UNDEFINED;
+        }
+        return TypeRules.operationType(multiply, leftType, rightType);
+    }
+
+    /*
+     Shared literals cannot hold errors, so an erroneous literal is replaced by an unshared copy first
+     */
+    private static Expression unshared(Expression expression) {
+        return expression instanceof Literal ? ((Literal) expression).unshared() : expression;
+    }
+
+    private static Expression unsharedOperand(Operation operation, ASTNode operand) {
+        if (operation.lhs == operand) {
+            return operation.lhs = unshared(operation.lhs);
+        }
+        return operation.rhs = unshared(operation.rhs);
+    }
+}
@@ -1,7 +1,9 @@
 package nl.han.ica.icss.transforms;
 
 import nl.han.ica.datastructures.IHANLinkedList;
+import nl.han.ica.datastructures.ScopeStack;
 import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.ColorLiteral;
 import nl.han.ica.icss.ast.literals.PercentageLiteral;
 import nl.han.ica.icss.ast.literals.PixelLiteral;
 import nl.han.ica.icss.ast.literals.ScalarLiteral;
@@ -9,27 +11,219 @@ import nl.han.ica.icss.ast.operations.AddOperation;
 import nl.han.ica.icss.ast.operations.MultiplyOperation;
 import nl.han.ica.icss.ast.operations.SubtractOperation;
 import nl.han.ica.icss.ast.literals.BoolLiteral;
+import nl.han.ica.icss.checker.LiteralArithmetic;
+import nl.han.ica.icss.jfr.TransformEvent;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 
 public class Evaluator implements Transform {
 
-    private LinkedList<HashMap<String, Literal>> variableValues;
+    //Variable values by symbol. Outside all scopes assignments go to the global scope of applyTopLevel
+    private ScopeStack<Literal> variableValues;
+    private HashMap<String, Literal> globalScope;
+    //The symbols of the AST being applied
+    private SymbolTable symbols;
 
     public Evaluator() {
-        variableValues = new LinkedList<>();
+        variableValues = new ScopeStack<>();
     }
 
     @Override
     public void apply(AST ast) {
+        TransformEvent event = new TransformEvent();
+        if (event.isEnabled()) {
+            event.inputSize = ast.getNodeCount();
+        }
+        event.begin();
+        globalScope = null;
+        symbols = ast.symbols;
         applyStyleSheet(ast.root);
+        event.end();
+        if (event.shouldCommit()) {
+            event.nodeCount = ast.getNodeCount();
+            event.commit();
+        }
+    }
+
+    /**
+     * Evaluates a single top-level node of a stylesheet against an existing global scope.
+     * A top-level variable assignment adds its value to that scope; removing the assignment
+     * from the stylesheet is left to the caller.
+     * @param symbols the symbol table of the AST the node was parsed into
+     */
+    public void applyTopLevel(ASTNode node, SymbolTable symbols, HashMap<String, Literal> globalScope) {
+        this.globalScope = globalScope;
+        this.symbols = symbols;
+        if (node instanceof Stylerule) {
+            applyStylerule((Stylerule) node);
+        } else if (node instanceof VariableAssignment) {
+            applyVariableAssignment((VariableAssignment) node);
+        }
+    }
+
+    /**
+     * Evaluates a checked compact AST into a new one, which holds only the stylerules with their selectors
+     * and declarations, in the order {@link #apply} leaves them.
+     */
+    public CompactAST evaluate(CompactAST ast) {
+        CompactAST result = new CompactAST(ast.size(), ast.symbols());
+        int sheet = result.add(CompactAST.Kind.STYLESHEET, 0, ast.offset(ast.root()));
+        globalScope = null;
+        variableValues.push();
+        for (int child = ast.firstChild(ast.root()); child != CompactAST.NONE; child = ast.nextSibling(child)) {
+            if (ast.kind(child) == CompactAST.Kind.STYLERULE) {
+                variableValues.push();
+                result.appendChild(sheet, evaluateStylerule(ast, child, result));
+                variableValues.pop();
+            } else if (ast.kind(child) == CompactAST.Kind.VARIABLE_ASSIGNMENT) {
+                variableValues.put(ast.payload(child), evaluateExpression(ast, ast.firstChild(child)));
+            }
+        }
+        variableValues.pop();
+        return result;
+    }
+
+    /*
+     Like applyBodyNodes: the declarations of a body come first, followed by those of the branches taken in it.
+     The declarations are added to the result as they are evaluated and put in that order at the end.
+     */
+    private int evaluateStylerule(CompactAST ast, int rule, CompactAST result) {
+        int resultRule = result.add(CompactAST.Kind.STYLERULE, 0, ast.offset(rule));
+        int first = ast.firstChild(rule);
+        while (first != CompactAST.NONE && ast.kind(first).isSelector()) {
+            result.add(resultRule, ast.kind(first), ast.payload(first), ast.offset(first));
+            first = ast.nextSibling(first);
+        }
+        ArrayDeque<CompactBody> bodies = new ArrayDeque<>();
+        bodies.push(new CompactBody(first));
+        while (true) {
+            CompactBody current = bodies.peek();
+            if (current.next == CompactAST.NONE) {
+                bodies.pop();
+                for (List<Integer> branch : current.branches) {
+                    current.declarations.addAll(branch);
+                }
+                if (bodies.isEmpty()) {
+                    for (int declaration : current.declarations) {
+                        result.appendChild(resultRule, declaration);
+                    }
+                    return resultRule;
+                }
+                bodies.peek().branches.add(current.declarations);
+                continue;
+            }
+            int node = current.next;
+            current.next = ast.nextSibling(node);
+            CompactAST.Kind kind = ast.kind(node);
+            if (kind == CompactAST.Kind.DECLARATION) {
+                int declaration = result.add(kind, ast.payload(node), ast.offset(node));
+                addLiteral(result, declaration, evaluateExpression(ast, ast.firstChild(node)), ast.offset(node));
+                current.declarations.add(declaration);
+            } else if (kind == CompactAST.Kind.VARIABLE_ASSIGNMENT) {
+                variableValues.put(ast.payload(node), evaluateExpression(ast, ast.firstChild(node)));
+            } else if (kind == CompactAST.Kind.IF_CLAUSE) {
+                int condition = ast.firstChild(node);
+                int branch;
+                if (((BoolLiteral) evaluateExpression(ast, condition)).value) {
+                    branch = ast.nextSibling(condition);
+                    if (branch != CompactAST.NONE && ast.kind(branch) == CompactAST.Kind.ELSE_CLAUSE) {
+                        branch = CompactAST.NONE;
+                    }
+                } else {
+                    branch = CompactAST.NONE;
+                    for (int child = condition; child != CompactAST.NONE; child = ast.nextSibling(child)) {
+                        if (ast.kind(child) == CompactAST.Kind.ELSE_CLAUSE) {
+                            branch = ast.firstChild(child);
+                        }
+                    }
+                }
+                bodies.push(new CompactBody(branch));
+            }
+        }
+    }
+
+    private static class CompactBody {
+        int next;
+        final List<Integer> declarations = new ArrayList<>();
+        final List<List<Integer>> branches = new ArrayList<>();
+
+        CompactBody(int first) {
+            this.next = first;
+        }
+    }
+
+    private static void addLiteral(CompactAST result, int parent, Literal literal, int offset) {
+        if (literal instanceof ColorLiteral) {
+            result.add(parent, CompactAST.Kind.COLOR_LITERAL, ((ColorLiteral) literal).rgb(), offset);
+        } else if (literal instanceof PercentageLiteral) {
+            result.add(parent, CompactAST.Kind.PERCENTAGE_LITERAL, ((PercentageLiteral) literal).value, offset);
+        } else if (literal instanceof PixelLiteral) {
+            result.add(parent, CompactAST.Kind.PIXEL_LITERAL, ((PixelLiteral) literal).value, offset);
+        } else if (literal instanceof ScalarLiteral) {
+            result.add(parent, CompactAST.Kind.SCALAR_LITERAL, ((ScalarLiteral) literal).value, offset);
+        } else if (literal instanceof BoolLiteral) {
+            result.add(parent, CompactAST.Kind.BOOL_LITERAL, ((BoolLiteral) literal).value ? 1 : 0, offset);
+        }
+    }
+
+    /*
+     Evaluates with the literal classes, so the operations are the same as for the object AST.
+     Operands come before their operation; an operation is on the pending stack a second time as its complement.
+     */
+    private Literal evaluateExpression(CompactAST ast, int expression) {
+        int[] pending = new int[16];
+        int pendingSize = 0;
+        ArrayList<Literal> values = new ArrayList<>();
+        pending[pendingSize++] = expression;
+        while (pendingSize > 0) {
+            int next = pending[--pendingSize];
+            if (next < 0) {
+                Literal rightside = values.remove(values.size() - 1);
+                Literal leftside = values.remove(values.size() - 1);
+                CompactAST.Kind kind = ast.kind(~next);
+                values.add(kind == CompactAST.Kind.MULTIPLY_OPERATION ? LiteralArithmetic.multiply(leftside, rightside)
+                        : LiteralArithmetic.addOrSubtract(leftside, rightside, kind == CompactAST.Kind.ADD_OPERATION));
+            } else if (ast.kind(next).isOperation()) {
+                if (pendingSize + 3 > pending.length) {
+                    pending = Arrays.copyOf(pending, pending.length * 2);
+                }
+                int lhs = ast.firstChild(next);
+                pending[pendingSize++] = ~next;
+                pending[pendingSize++] = ast.nextSibling(lhs);
+                pending[pendingSize++] = lhs;
+            } else {
+                values.add(evaluateOperand(ast, next));
+            }
+        }
+        return values.get(0);
+    }
+
+    private Literal evaluateOperand(CompactAST ast, int operand) {
+        int payload = ast.payload(operand);
+        switch (ast.kind(operand)) {
+            case VARIABLE_REFERENCE:
+                return variableValues.get(payload);
+            case BOOL_LITERAL:
+                return BoolLiteral.of(payload != 0);
+            case COLOR_LITERAL:
+                return ColorLiteral.of(payload);
+            case PERCENTAGE_LITERAL:
+                return PercentageLiteral.of(payload);
+            case PIXEL_LITERAL:
+                return PixelLiteral.of(payload);
+            case SCALAR_LITERAL:
+                return ScalarLiteral.of(payload);
+            default:
+                return null;
+        }
     }
 
     private void applyStyleSheet(Stylesheet sheet) {
-        variableValues.addFirst(new HashMap<>());
+        variableValues.push();
         List<ASTNode> nodesToRemove = new ArrayList<>();
 
         for (ASTNode child : sheet.getChildren()) {
@@ -43,48 +237,81 @@ public class Evaluator implements Transform {
         for (ASTNode child : nodesToRemove) {
             sheet.removeChild(child);
         }
-        variableValues.removeFirst();
+        variableValues.pop();
     }
 
     private void applyStylerule(Stylerule rule) {
-        variableValues.addFirst(new HashMap<>());
+        variableValues.push();
         applyBodyNodes(rule.body);
-        variableValues.removeFirst();
+        variableValues.pop();
     }
 
-    private List<ASTNode> applyIfClause(IfClause ifClause) {
+    /*
+     Returns the body of the branch that is taken, or null when there is none. The body is evaluated by the caller.
+     */
+    private ArrayList<ASTNode> chooseBranch(IfClause ifClause) {
         Literal conditionResult = evaluateExpression(ifClause.conditionalExpression);
         boolean ifClauseIsTrue = ((BoolLiteral) conditionResult).value;
 
         if (ifClauseIsTrue) {
-            applyBodyNodes(ifClause.body);
             return ifClause.body;
         } else if (ifClause.elseClause != null) {
-            applyBodyNodes(ifClause.elseClause.body);
             return ifClause.elseClause.body;
         } else {
-            return new ArrayList<>();
+            return null;
         }
     }
 
+    /*
+     Evaluates a body and the bodies of the branches taken in it. The taken branches are kept on a stack
+     instead of recursing, so deeply nested if-clauses fit. When a body is done its variable assignments and
+     if-clauses are removed, and the contents of the taken branches are added at its end.
+     */
     private void applyBodyNodes(ArrayList<ASTNode> body) {
-        List<ASTNode> nodesToRemove = new ArrayList<>();
-        List<ASTNode> nodesToAdd = new ArrayList<>();
-        
-        for (ASTNode node : body) {
+        ArrayDeque<Body> bodies = new ArrayDeque<>();
+        bodies.push(new Body(body));
+        while (!bodies.isEmpty()) {
+            Body current = bodies.peek();
+            if (current.next == current.nodes.size()) {
+                bodies.pop();
+                current.replaceNodes();
+                continue;
+            }
+            ASTNode node = current.nodes.get(current.next++);
             if (node instanceof Declaration) {
                 applyDeclaration((Declaration) node);
             } else if (node instanceof VariableAssignment) {
                 applyVariableAssignment((VariableAssignment) node);
-                nodesToRemove.add(node);
+                current.nodesToRemove.add(node);
             } else if (node instanceof IfClause) {
-                nodesToAdd.addAll(applyIfClause((IfClause) node));
-                nodesToRemove.add(node);
+                current.nodesToRemove.add(node);
+                ArrayList<ASTNode> branch = chooseBranch((IfClause) node);
+                if (branch != null) {
+                    current.branches.add(branch);
+                    bodies.push(new Body(branch));
+                }
+            }
+        }
+    }
+
+    private static class Body {
+        final ArrayList<ASTNode> nodes;
+        final List<ASTNode> nodesToRemove = new ArrayList<>();
+        final List<ArrayList<ASTNode>> branches = new ArrayList<>();
+        int next = 0;
+
+        Body(ArrayList<ASTNode> nodes) {
+            this.nodes = nodes;
+        }
+
+        void replaceNodes() {
+            List<ASTNode> nodesToAdd = new ArrayList<>();
+            for (ArrayList<ASTNode> branch : branches) {
+                nodesToAdd.addAll(branch);
             }
+            nodes.removeAll(nodesToRemove);
+            nodes.addAll(nodesToAdd);
         }
-        
-        body.removeAll(nodesToRemove);
-        body.addAll(nodesToAdd);
     }
 
     private void applyDeclaration(Declaration declaration) {
@@ -93,73 +320,69 @@ public class Evaluator implements Transform {
 
     private void applyVariableAssignment(VariableAssignment assignment) {
         Literal literal = evaluateExpression(assignment.expression);
-        variableValues.peek().put(assignment.name.name, literal);
+        if (variableValues.depth() == 0) {
+            globalScope.put(assignment.name.name, literal);
+        } else {
+            variableValues.put(assignment.name.symbol(symbols), literal);
+        }
         assignment.expression = literal;
     }
 
+    /*
+     Long chains of operations make deep trees, so they are evaluated with a stack instead of recursion.
+     An operation is pushed twice: the first time its operands are pushed after it, the second time
+     their values are on the value stack and are combined. Values can be null, hence the lists.
+     */
     private Literal evaluateExpression(Expression expression) {
+        ArrayList<Expression> pending = new ArrayList<>();
+        ArrayDeque<Operation> combining = new ArrayDeque<>();
+        ArrayList<Literal> values = new ArrayList<>();
+        pending.add(expression);
+        while (!pending.isEmpty()) {
+            Expression next = pending.remove(pending.size() - 1);
+            if (!(next instanceof Operation)) {
+                values.add(evaluateOperand(next));
+            } else if (combining.peek() == next) {
+                combining.pop();
+                Literal rightside = values.remove(values.size() - 1);
+                Literal leftside = values.remove(values.size() - 1);
+                values.add(evaluateOperation((Operation) next, leftside, rightside));
+            } else {
+                combining.push((Operation) next);
+                pending.add(next);
+                pending.add(((Operation) next).rhs);
+                pending.add(((Operation) next).lhs);
+            }
+        }
+        return values.get(0);
+    }
+
+    private Literal evaluateOperand(Expression expression) {
         if (expression instanceof Literal) {
             return (Literal) expression;
-        } else if (expression instanceof MultiplyOperation) {
-            return evaluateMultiplyOperation((MultiplyOperation) expression);
-        } else if (expression instanceof AddOperation) {
-            return evaluateAddSubtractOperation((AddOperation) expression, true);
-        } else if(expression instanceof  SubtractOperation) {
-            return evaluateAddSubtractOperation((SubtractOperation) expression, false);
         } else if (expression instanceof VariableReference) {
             return evaluateVariableReference((VariableReference) expression);
         }
         return null;
     }
 
-    private Literal evaluateMultiplyOperation(MultiplyOperation operation) {
-        Literal leftside = evaluateExpression(operation.lhs);
-        Literal rightside = evaluateExpression(operation.rhs);
-
-        if (leftside instanceof ScalarLiteral && rightside instanceof ScalarLiteral) {
-            return new ScalarLiteral(((ScalarLiteral) leftside).value * ((ScalarLiteral) rightside).value);
-        }
-        // Ensure scalar is on the right side for easier handling
-        if (leftside instanceof ScalarLiteral) {
-            Literal temp = leftside;
-            leftside = rightside;
-            rightside = temp;
-        }
-        if (rightside instanceof ScalarLiteral) {
-            if (leftside instanceof PixelLiteral) {
-                return new PixelLiteral(((PixelLiteral) leftside).value * ((ScalarLiteral) rightside).value);
-            } else if (leftside instanceof PercentageLiteral) {
-                return new PercentageLiteral(((PercentageLiteral) leftside).value * ((ScalarLiteral) rightside).value);
-            }
-        }
-        return null;
-    }
-
-    private Literal evaluateAddSubtractOperation(Operation operation, boolean isAdd) {
-        Literal leftside = evaluateExpression(operation.lhs);
-        Literal rightside = evaluateExpression(operation.rhs);
-
-        if (leftside instanceof PixelLiteral && rightside instanceof PixelLiteral) {
-            int result = isAdd
-                    ? ((PixelLiteral) leftside).value + ((PixelLiteral) rightside).value
-                    : ((PixelLiteral) leftside).value - ((PixelLiteral) rightside).value;
-            return new PixelLiteral(result);
-        } else if (leftside instanceof PercentageLiteral && rightside instanceof PercentageLiteral) {
-            int result = isAdd
-                    ? ((PercentageLiteral) leftside).value + ((PercentageLiteral) rightside).value
-                    : ((PercentageLiteral) leftside).value - ((PercentageLiteral) rightside).value;
-            return new PercentageLiteral(result);
+    private Literal evaluateOperation(Operation operation, Literal leftside, Literal rightside) {
+        if (operation instanceof MultiplyOperation) {
+            return LiteralArithmetic.multiply(leftside, rightside);
+        } else if (operation instanceof AddOperation) {
+            return LiteralArithmetic.addOrSubtract(leftside, rightside, true);
+        } else if(operation instanceof  SubtractOperation) {
+            return LiteralArithmetic.addOrSubtract(leftside, rightside, false);
         }
         return null;
     }
 
     private Literal evaluateVariableReference(VariableReference reference) {
-        // Search through scope
-        for (HashMap<String, Literal> variableValue : variableValues) {
-            if (variableValue.containsKey(reference.name)) {
-                return variableValue.get(reference.name);
-            }
+        // The innermost definition, then the global scope of applyTopLevel
+        Literal value = variableValues.get(reference.symbol(symbols));
+        if (value == null && globalScope != null) {
+            return globalScope.get(reference.name);
         }
-        return null;
+        return value;
     }
 }
@@ -0,0 +1,103 @@
+package nl.han.ica.icss;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.parser.ParserBackend;
+import nl.han.ica.icss.parser.SourceParser;
+import nl.han.ica.icss.parser.SyntaxErrorCollector;
+import org.antlr.v4.runtime.CharStreams;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+class DeepInputTest {
+
+	static final int DEPTH = 100_000;
+
+	static String longExpression(String term, String operator, String last) {
+		return "p { width: " + (term + " " + operator + " ").repeat(DEPTH - 1) + last + "; }";
+	}
+
+	static String nestedIfClauses() {
+		return "p { " + "if [TRUE] { ".repeat(DEPTH) + "width: 1px; " + "} ".repeat(DEPTH) + "}";
+	}
+
+	static String nestedElseClauses() {
+		return "p { " + "if [FALSE] { color: #000000; } else { ".repeat(DEPTH) + "width: 1px; " + "} ".repeat(DEPTH) + "}";
+	}
+
+	static List<CompileOptions> allBackends() {
+		List<CompileOptions> options = new ArrayList<>();
+		for (ParserBackend backend : ParserBackend.values()) {
+			options.add(CompileOptions.defaults().withParserBackend(backend));
+		}
+		options.add(CompileOptions.defaults().withParserBackend(ParserBackend.RECURSIVE_DESCENT).withFused(true));
+		return options;
+	}
+
+	static void assertCompilesTo(String source, String css) {
+		ICSSCompiler compiler = new ICSSCompiler();
+		for (CompileOptions options : allBackends()) {
+			CompileResult result = compiler.compile(source, options);
+			assertTrue(result.isSuccess(), options + ": " + result.getErrors());
+			assertEquals(css, result.getCss(), options.toString());
+		}
+	}
+
+	@Test
+	void testLongExpressions() {
+		assertCompilesTo(longExpression("1px", "+", "1px"), "p{\n  width: " + DEPTH + "px;\n}\n");
+		assertCompilesTo(longExpression("3px", "-", "3px"), "p{\n  width: " + (3 - 3 * (DEPTH - 1)) + "px;\n}\n");
+		assertCompilesTo(longExpression("1", "*", "2%"), "p{\n  width: 2%;\n}\n");
+		assertCompilesTo(longExpression("2px * 1", "+", "1px"), "p{\n  width: " + (2 * DEPTH - 1) + "px;\n}\n");
+	}
+
+	@Test
+	void testNestedIfClauses() {
+		assertCompilesTo(nestedIfClauses(), "p{\n  width: 1px;\n}\n");
+		assertCompilesTo(nestedElseClauses(), "p{\n  width: 1px;\n}\n");
+	}
+
+	@Test
+	void testErrorsDeepInside() {
+		for (CompileOptions options : allBackends()) {
+			CompileResult result = new ICSSCompiler().compile(longExpression("1px", "+", "1%"), options);
+			assertEquals(List.of("ERROR: Only pixel and percentage expressions are allowed for width", "ERROR: Operands must be of the same type"),
+					result.getErrors(), options.toString());
+
+			result = new ICSSCompiler().compile(nestedIfClauses().replace("width: 1px", "width: X"), options);
+			assertEquals(List.of("ERROR: Only pixel and percentage expressions are allowed for width", "ERROR: Variable X is not defined"),
+					result.getErrors(), options.toString());
+		}
+	}
+
+	@Test
+	void testSyntaxErrorsDeepInside() {
+		String source = nestedIfClauses().replace("width: 1px;", "width: 1px");
+		for (CompileOptions options : allBackends()) {
+			CompileResult result = new ICSSCompiler().compile(source, options);
+			assertFalse(result.isSuccess());
+			assertTrue(result.getErrors().get(0).startsWith("Syntax error"), options.toString());
+		}
+	}
+
+	@Test
+	void testTreeUtilities() throws IOException {
+		for (String source : new String[]{longExpression("1px", "+", "1px"), nestedElseClauses()}) {
+			List<String> errors = new ArrayList<>();
+			AST ast = SourceParser.parse(CharStreams.fromString(source), new SyntaxErrorCollector(errors));
+			AST streamed = SourceParser.parse(new StringReader(source), new SyntaxErrorCollector(errors));
+			assertEquals(List.of(), errors);
+
+			assertEquals(ast, streamed);
+			assertEquals(ast.hashCode(), streamed.hashCode());
+			assertEquals(ast.toString(), streamed.toString());
+			assertTrue(ast.toString().startsWith("[Stylesheet|[Stylerule|"));
+			assertEquals(List.of(), ast.getErrors());
+			assertTrue(ast.getNodeCount() > 2 * DEPTH);
+		}
+	}
+}
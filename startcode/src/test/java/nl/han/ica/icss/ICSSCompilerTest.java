@@ -0,0 +1,149 @@
+package nl.han.ica.icss;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.checker.Checker;
+import nl.han.ica.icss.parser.ErrorLimitReachedException;
+import nl.han.ica.icss.parser.SourceParser;
+import nl.han.ica.icss.parser.SyntaxErrorCollector;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+class ICSSCompilerTest {
+
+	static String readResource(String resource) throws IOException {
+		try (InputStream inputStream = ICSSCompilerTest.class.getClassLoader().getResourceAsStream(resource)) {
+			return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	static String pipelineOutput(String source) {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString(source);
+		assertTrue(pipeline.check());
+		pipeline.transform();
+		return pipeline.generate();
+	}
+
+	@Test
+	void testCompileMatchesPipeline() throws IOException {
+		ICSSCompiler compiler = new ICSSCompiler();
+		for (String level : new String[]{"level0.icss", "level1.icss", "level2.icss", "level3.icss"}) {
+			String source = readResource(level);
+			CompileResult result = compiler.compile(source);
+			assertTrue(result.isSuccess(), level + ": " + result.getErrors());
+			assertEquals(pipelineOutput(source), result.getCss());
+		}
+	}
+
+	@Test
+	void testCompileReportsSemanticErrors() {
+		CompileResult result = new ICSSCompiler().compile("p { width: #ff0000; }");
+		assertFalse(result.isSuccess());
+		assertEquals(List.of("ERROR: Only pixel and percentage expressions are allowed for width"), result.getErrors());
+		assertNull(result.getCss());
+	}
+
+	@Test
+	void testCompileReportsSyntaxErrors() {
+		CompileResult result = new ICSSCompiler().compile("p { width: 10px }");
+		assertFalse(result.isSuccess());
+		assertTrue(result.getErrors().get(0).startsWith("Syntax error"));
+	}
+
+	@Test
+	void testResultKeepsItsOwnErrors() {
+		List<String> errors = new ArrayList<>(List.of("Syntax error: one"));
+		CompileResult result = new CompileResult(null, errors, null, new EnumMap<>(Phase.class));
+		errors.add("Syntax error: two");
+		assertEquals(List.of("Syntax error: one"), result.getErrors());
+	}
+
+	@Test
+	void testErrorLimitStopsParsing() {
+		String source = "p { width: 10px }\n".repeat(50);
+		CompileResult result = new ICSSCompiler().compile(source, CompileOptions.defaults().withErrorLimit(5));
+		assertFalse(result.isSuccess());
+		assertTrue(result.isTruncated());
+		assertEquals(5, result.getErrors().size());
+	}
+
+	@Test
+	void testErrorLimitStopsChecking() {
+		String source = "p { width: #ff0000; }\n".repeat(50);
+		CompileResult limited = new ICSSCompiler().compile(source, CompileOptions.defaults().withErrorLimit(5));
+		assertTrue(limited.isTruncated());
+		assertEquals(5, limited.getErrors().size());
+
+		CompileResult fused = new ICSSCompiler().compile(source, CompileOptions.defaults().withErrorLimit(5).withFused(true));
+		assertTrue(fused.isTruncated());
+		assertEquals(5, fused.getErrors().size());
+
+		CompileResult unlimited = new ICSSCompiler().compile(source);
+		assertFalse(unlimited.isTruncated());
+		assertEquals(50, unlimited.getErrors().size());
+	}
+
+	@Test
+	void testFailFastReportsFirstError() {
+		CompileResult result = new ICSSCompiler().compile("p { width: #ff0000; height: 10%; }",
+				CompileOptions.defaults().withFailFast(true));
+		assertEquals(List.of("ERROR: Only pixel and percentage expressions are allowed for width"), result.getErrors());
+		assertTrue(result.isTruncated());
+	}
+
+	@Test
+	void testFailFastStopsAtTheFirstError() {
+		String rules = "p { width: 10px; }\n".repeat(1000);
+		//The lexer does not read past the first bad character
+		CharStream input = CharStreams.fromString("~ " + rules);
+		List<String> errors = new ArrayList<>();
+		assertThrows(ErrorLimitReachedException.class, () -> SourceParser.parse(input, new SyntaxErrorCollector(errors, 1)));
+		assertEquals(1, errors.size());
+		assertTrue(input.index() < 10, "stopped at " + input.index());
+
+		//With a single error there is nothing more to find, but a fail-fast compile cannot know and stops anyway
+		CompileResult result = new ICSSCompiler().compile("p { width: 10px }\n" + rules,
+				CompileOptions.defaults().withFailFast(true));
+		assertEquals(1, result.getErrors().size());
+		assertTrue(result.isTruncated());
+
+		//The checker skips the statements after the first error
+		AST ast = SourceParser.parse(CharStreams.fromString("p { width: #ff0000; }\n" + rules), new SyntaxErrorCollector(errors));
+		Checker checker = new Checker(1);
+		checker.check(ast);
+		assertTrue(checker.isTruncated());
+		assertEquals(1, ast.getErrors().size());
+	}
+
+	@Test
+	void testSharedCompilerIsThreadSafe() throws Exception {
+		ICSSCompiler compiler = new ICSSCompiler();
+		String source = readResource("level3.icss");
+		String expected = compiler.compile(source).getCss();
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<CompileResult>> futures = new ArrayList<>();
+			for (int i = 0; i < 200; i++) {
+				futures.add(executor.submit(() -> compiler.compile(source)));
+			}
+			for (Future<CompileResult> future : futures) {
+				assertEquals(expected, future.get().getCss());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
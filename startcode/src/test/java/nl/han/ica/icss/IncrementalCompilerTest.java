@@ -0,0 +1,67 @@
+package nl.han.ica.icss;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+
+class IncrementalCompilerTest {
+
+	private static void assertSameAsFullCompile(String source, CompileResult result) {
+		CompileResult expected = new ICSSCompiler().compile(source);
+		assertEquals(expected.getErrors(), result.getErrors());
+		assertEquals(expected.getCss(), result.getCss());
+		assertEquals(expected.getAST(), result.getAST());
+	}
+
+	@Test
+	void testUnchangedInputIsReused() throws IOException {
+		String source = ICSSCompilerTest.readResource("level3.icss");
+		IncrementalCompiler compiler = new IncrementalCompiler();
+
+		assertSameAsFullCompile(source, compiler.compile(source));
+		assertEquals(8, compiler.getRecompiledSegments());
+
+		assertSameAsFullCompile(source, compiler.compile(source));
+		assertEquals(0, compiler.getRecompiledSegments());
+		assertEquals(8, compiler.getReusedSegments());
+	}
+
+	@Test
+	void testOnlyEditedRuleIsRecompiled() throws IOException {
+		String source = ICSSCompilerTest.readResource("level3.icss");
+		IncrementalCompiler compiler = new IncrementalCompiler();
+		compiler.compile(source);
+
+		String edited = source.replace("width: ParWidth + 20px;", "width: ParWidth + 30px;");
+		assertSameAsFullCompile(edited, compiler.compile(edited));
+		assertEquals(1, compiler.getRecompiledSegments());
+	}
+
+	@Test
+	void testRulesDependingOnChangedVariableAreRecompiled() throws IOException {
+		String source = ICSSCompilerTest.readResource("level3.icss");
+		IncrementalCompiler compiler = new IncrementalCompiler();
+		compiler.compile(source);
+
+		//ParWidth is used by p and #menu
+		String edited = source.replace("ParWidth := 500px;", "ParWidth := 400px;");
+		assertSameAsFullCompile(edited, compiler.compile(edited));
+		assertEquals(3, compiler.getRecompiledSegments());
+	}
+
+	@Test
+	void testErrorsAndRecovery() throws IOException {
+		String source = ICSSCompilerTest.readResource("level3.icss");
+		IncrementalCompiler compiler = new IncrementalCompiler();
+		compiler.compile(source);
+
+		String typeError = source.replace("ParWidth := 500px;", "ParWidth := #ffffff;");
+		assertSameAsFullCompile(typeError, compiler.compile(typeError));
+
+		String syntaxError = source.replace("height: 20px;", "height: 20px");
+		assertSameAsFullCompile(syntaxError, compiler.compile(syntaxError));
+
+		assertSameAsFullCompile(source, compiler.compile(source));
+	}
+}
@@ -0,0 +1,50 @@
+package nl.han.ica.icss;
+
+import nl.han.ica.icss.tools.StylesheetGenerator;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+class StreamingCompilerTest {
+
+	private static CompileResult stream(String source, StringBuilder css) throws IOException {
+		return new StreamingCompiler().compile(new StringReader(source), css);
+	}
+
+	@Test
+	void testStreamingMatchesRegularCompile() throws IOException {
+		ICSSCompiler compiler = new ICSSCompiler();
+		for (String level : new String[]{"level0.icss", "level1.icss", "level2.icss", "level3.icss"}) {
+			String source = ICSSCompilerTest.readResource(level);
+			StringBuilder css = new StringBuilder();
+			CompileResult result = stream(source, css);
+			assertTrue(result.isSuccess(), level + ": " + result.getErrors());
+			assertEquals(compiler.compile(source).getCss(), css.toString());
+		}
+		String generated = StylesheetGenerator.defaults().withRules(300).generate();
+		StringBuilder css = new StringBuilder();
+		stream(generated, css);
+		assertEquals(compiler.compile(generated).getCss(), css.toString());
+	}
+
+	@Test
+	void testStreamingReportsSemanticErrors() throws IOException {
+		String source = "Width := 10px;\np { width: Width; }\na { color: Width; }\n.b { height: Undefined; }";
+		CompileResult result = stream(source, new StringBuilder());
+		assertEquals(new ICSSCompiler().compile(source).getErrors(), result.getErrors());
+		assertEquals(3, result.getErrors().size());
+	}
+
+	@Test
+	void testStreamingReportsSyntaxErrorsOnly() throws IOException {
+		CompileResult result = stream("p { color: Undefined; }\na { width: 10px }", new StringBuilder());
+		assertEquals(List.of("Syntax error: missing ';' at '}'"), result.getErrors());
+
+		assertEquals(new ICSSCompiler().compile("").getErrors(), stream("", new StringBuilder()).getErrors());
+		assertEquals(new ICSSCompiler().compile("p { width: 1px; } #").getErrors(),
+				stream("p { width: 1px; } #", new StringBuilder()).getErrors());
+	}
+}
@@ -0,0 +1,51 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.CompileOptions;
+import nl.han.ica.icss.ICSSCompiler;
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.parser.Fixtures;
+import nl.han.ica.icss.tools.StylesheetGenerator;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+class ASTNodeTest {
+
+	void assertSameChildren(ASTNode root) {
+		ArrayDeque<ASTNode> stack = new ArrayDeque<>();
+		stack.push(root);
+		while (!stack.isEmpty()) {
+			ASTNode node = stack.pop();
+			List<ASTNode> children = new ArrayList<>();
+			for (int i = 0; i < node.childCount(); i++) {
+				children.add(node.childAt(i));
+			}
+			assertEquals(node.getChildren(), children, node.getClass().getSimpleName());
+			assertThrows(IndexOutOfBoundsException.class, () -> node.childAt(node.childCount()));
+			for (ASTNode child : children) {
+				if (child != null) {
+					stack.push(child);
+				}
+			}
+		}
+	}
+
+	@Test
+	void testChildAtMatchesGetChildren() {
+		assertSameChildren(Fixtures.uncheckedLevel3().root);
+		assertSameChildren(Fixtures.uncheckedLevel2().root);
+		String source = StylesheetGenerator.defaults().withSeed(3).withRules(20).withIfDepth(3).withExpressionLength(4).generate();
+		assertSameChildren(new ICSSCompiler().compile(source, CompileOptions.defaults().withGenerate(false)).getAST().root);
+
+		//Missing children are skipped, except the condition of an if-clause
+		assertSameChildren(new Declaration());
+		assertSameChildren(new AddOperation().addChild(PixelLiteral.of(1)));
+		assertSameChildren(new IfClause());
+		assertSameChildren(new VariableAssignment());
+		assertSameChildren(new Stylerule());
+	}
+}
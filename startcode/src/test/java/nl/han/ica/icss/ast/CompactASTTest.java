@@ -0,0 +1,143 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.CompileOptions;
+import nl.han.ica.icss.CompileResult;
+import nl.han.ica.icss.ICSSCompiler;
+import nl.han.ica.icss.checker.Checker;
+import nl.han.ica.icss.checker.SemanticError;
+import nl.han.ica.icss.generator.Generator;
+import nl.han.ica.icss.parser.FastLexer;
+import nl.han.ica.icss.parser.RecursiveDescentParser;
+import nl.han.ica.icss.tools.StylesheetGenerator;
+import nl.han.ica.icss.transforms.Evaluator;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class CompactASTTest {
+
+	FastLexer tokenize(String source) {
+		FastLexer lexer = new FastLexer(source.toCharArray());
+		lexer.tokenize(null);
+		return lexer;
+	}
+
+	List<String> errors(ArrayList<SemanticError> errors) {
+		List<String> descriptions = new ArrayList<>();
+		for (SemanticError error : errors) {
+			descriptions.add(error.toString());
+		}
+		return descriptions;
+	}
+
+	String compileCompact(String source) {
+		CompactAST ast = RecursiveDescentParser.parseCompact(tokenize(source));
+		new Checker().check(ast);
+		assertEquals(List.of(), errors(ast.getErrors()), source);
+		return new Generator().generate(new Evaluator().evaluate(ast));
+	}
+
+	List<String> sources() {
+		List<String> sources = new ArrayList<>();
+		sources.add("A := 2px; p { width: A * 3 + 1px; if [TRUE] { color: #aabbcc; } else { height: 5px; } }"
+				+ " B := FALSE; #main { if [B] { width: 1%; } else { if [TRUE] { width: 2%; } height: 3px; } width: 4%; }");
+		for (long seed = 1; seed <= 5; seed++) {
+			sources.add(StylesheetGenerator.defaults().withSeed(seed).withRules(40).withIfDepth(4)
+					.withExpressionLength(6).generate());
+		}
+		return sources;
+	}
+
+	@Test
+	void testSameTreeAsObjectAST() {
+		for (String source : sources()) {
+			AST ast = RecursiveDescentParser.parse(tokenize(source));
+			CompactAST compact = RecursiveDescentParser.parseCompact(tokenize(source));
+			assertEquals(ast, compact.toAST(), source);
+			assertEquals(ast, CompactAST.of(ast).toAST(), source);
+			assertEquals(ast.getNodeCount(), compact.size() + nameNodes(compact), source);
+		}
+		CompactAST compact = RecursiveDescentParser.parseCompact(tokenize("p { width: 1px; }"));
+		int rule = compact.firstChild(compact.root());
+		assertEquals(CompactAST.Kind.STYLERULE, compact.kind(rule));
+		assertEquals(0, compact.offset(rule));
+		int declaration = compact.nextSibling(compact.firstChild(rule));
+		assertEquals("width", compact.text(declaration));
+		assertEquals(4, compact.offset(declaration));
+		assertEquals(1, compact.payload(compact.firstChild(declaration)));
+		assertNull(RecursiveDescentParser.parseCompact(tokenize("p { width: 1px }")));
+	}
+
+	@Test
+	void testColorsAreRgbPayloads() {
+		CompactAST compact = RecursiveDescentParser.parseCompact(tokenize("p { color: #00a0ff; background-color: #000000; }"));
+		int first = compact.nextSibling(compact.firstChild(compact.firstChild(compact.root())));
+		int color = compact.firstChild(first);
+		assertEquals(0x00a0ff, compact.payload(color));
+		assertEquals("#00a0ff", compact.text(color));
+		assertEquals("#000000", compact.text(compact.firstChild(compact.nextSibling(first))));
+		//Only the selector is a symbol besides the properties every table knows
+		assertEquals(5, compact.symbols().size());
+		assertEquals("p{\n  color: #00a0ff;\n  background-color: #000000;\n}\n", new Generator().generate(new Evaluator().evaluate(compact)));
+	}
+
+	//The names of declarations and variable assignments are nodes of their own in the object AST
+	int nameNodes(CompactAST compact) {
+		int names = 0;
+		for (int node = 0; node < compact.size(); node++) {
+			if (compact.kind(node) == CompactAST.Kind.DECLARATION || compact.kind(node) == CompactAST.Kind.VARIABLE_ASSIGNMENT) {
+				names++;
+			}
+		}
+		return names;
+	}
+
+	@Test
+	void testSameErrorsAsObjectAST() {
+		String source = "A := 1px + #aabbcc; p { width: #aabbcc + 1px; color: B; height: 2px * 3px; }"
+				+ " a { if [10px] { color: #aabbcc; } else { width: 1px + 2%; } font: 1px; } C := TRUE + 1;";
+		AST ast = RecursiveDescentParser.parse(tokenize(source));
+		new Checker().check(ast);
+		CompactAST compact = RecursiveDescentParser.parseCompact(tokenize(source));
+		new Checker().check(compact);
+		assertFalse(ast.getErrors().isEmpty());
+		assertEquals(errors(ast.getErrors()), errors(compact.getErrors()));
+		assertEquals(errors(ast.getErrors()), errors(compact.toAST().getErrors()));
+
+		Checker limited = new Checker(2);
+		CompactAST truncated = RecursiveDescentParser.parseCompact(tokenize(source));
+		limited.check(truncated);
+		assertTrue(limited.isTruncated());
+		assertEquals(2, truncated.getErrors().size());
+	}
+
+	@Test
+	void testSameCssAsObjectAST() {
+		for (String source : sources()) {
+			CompileResult result = new ICSSCompiler().compile(source, CompileOptions.defaults());
+			assertTrue(result.isSuccess(), source);
+			assertEquals(result.getCss(), compileCompact(source), source);
+		}
+	}
+
+	@Test
+	void testDeepInput() {
+		int depth = 100_000;
+		StringBuilder source = new StringBuilder("p { width: 1px");
+		for (int i = 0; i < depth; i++) {
+			source.append(" + 1px");
+		}
+		source.append("; ");
+		for (int i = 0; i < depth; i++) {
+			source.append("if [TRUE] { ");
+		}
+		source.append("height: 2px; ");
+		for (int i = 0; i < depth; i++) {
+			source.append("} ");
+		}
+		source.append("}");
+		assertEquals("p{\n  width: " + (depth + 1) + "px;\n  height: 2px;\n}\n", compileCompact(source.toString()));
+	}
+}
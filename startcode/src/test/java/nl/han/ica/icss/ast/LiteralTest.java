@@ -0,0 +1,55 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.CompileOptions;
+import nl.han.ica.icss.CompileResult;
+import nl.han.ica.icss.ICSSCompiler;
+import nl.han.ica.icss.ast.literals.*;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+class LiteralTest {
+
+	@Test
+	void testCommonValuesAreShared() {
+		assertSame(PixelLiteral.of(10), PixelLiteral.of("10px"));
+		assertSame(PercentageLiteral.of(50), PercentageLiteral.of("50%"));
+		assertSame(ScalarLiteral.of(3), ScalarLiteral.of("3"));
+		assertSame(ColorLiteral.of("#aabbcc"), ColorLiteral.of("#aabbcc"));
+		assertSame(BoolLiteral.TRUE, BoolLiteral.of(true));
+		assertNotSame(PixelLiteral.of(100_000), PixelLiteral.of(100_000));
+		assertEquals(PixelLiteral.of(100_000), PixelLiteral.of(100_000));
+		assertEquals(new PixelLiteral(10), PixelLiteral.of(10));
+
+		assertTrue(PixelLiteral.of(10).isShared());
+		assertThrows(IllegalStateException.class, () -> PixelLiteral.of(10).setError("error"));
+		Literal copy = PixelLiteral.of(10).unshared();
+		assertNotSame(PixelLiteral.of(10), copy);
+		assertEquals(PixelLiteral.of(10), copy);
+		copy.setError("error");
+		assertFalse(PixelLiteral.of(10).hasError());
+	}
+
+	@Test
+	void testErrorsStayWithTheirOccurrence() {
+		String source = "p { width: #aabbcc + 1px; color: #aabbcc; } a { if [10px] { color: #aabbcc; } }";
+		for (boolean fused : new boolean[]{false, true}) {
+			for (int i = 0; i < 2; i++) {
+				CompileResult result = new ICSSCompiler().compile(source, CompileOptions.defaults().withFused(fused));
+				assertEquals(List.of("ERROR: Only pixel and percentage expressions are allowed for width",
+						"ERROR: Color literals are not allowed in operations",
+						"ERROR: If condition must be a boolean expression"), result.getErrors());
+			}
+		}
+		assertFalse(ColorLiteral.of("#aabbcc").hasError());
+		assertFalse(PixelLiteral.of(10).hasError());
+	}
+
+	@Test
+	void testEvaluatorReusesLiterals() {
+		AST ast = new ICSSCompiler().compile("p { width: 1px + 2px * 3; }", CompileOptions.defaults().withGenerate(false)).getAST();
+		Declaration declaration = (Declaration) ((Stylerule) ast.root.body.get(0)).body.get(0);
+		assertSame(PixelLiteral.of(7), declaration.expression);
+	}
+}
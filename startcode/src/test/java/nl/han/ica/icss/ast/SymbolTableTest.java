@@ -0,0 +1,87 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.datastructures.ScopeStack;
+import nl.han.ica.icss.checker.Checker;
+import nl.han.ica.icss.parser.SourceParser;
+import nl.han.ica.icss.parser.SyntaxErrorCollector;
+import nl.han.ica.icss.transforms.Evaluator;
+import org.antlr.v4.runtime.CharStreams;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+class SymbolTableTest {
+
+	@Test
+	void testNamesAreInternedOnce() {
+		SymbolTable symbols = new SymbolTable();
+		assertEquals(SymbolTable.WIDTH, symbols.intern("width"));
+		assertEquals(SymbolTable.BACKGROUND_COLOR, symbols.intern("background-color"));
+		int id = symbols.intern(new String("Width"));
+		assertEquals(4, id);
+		assertEquals(id, symbols.intern("Width"));
+		assertEquals(5, symbols.intern("Height"));
+		assertEquals("Width", symbols.name(id));
+		assertEquals(6, symbols.size());
+
+		String source = "Width := 10px; p { width: Width; } p { width: Width; }";
+		AST ast = SourceParser.parse(CharStreams.fromString(source), new SyntaxErrorCollector(new ArrayList<>()));
+		Declaration declaration = (Declaration) ((Stylerule) ast.root.body.get(1)).body.get(0);
+		VariableReference reference = (VariableReference) declaration.expression;
+		VariableReference other = (VariableReference) ((Declaration) ((Stylerule) ast.root.body.get(2)).body.get(0)).expression;
+		assertSame(reference.name, other.name);
+		assertSame(((VariableAssignment) ast.root.body.get(0)).name.name, reference.name);
+		assertSame(((Stylerule) ast.root.body.get(1)).selectors.get(0).toString(), ((Stylerule) ast.root.body.get(2)).selectors.get(0).toString());
+		//The parser stores the ids in the table of the AST
+		assertEquals(ast.symbols.intern("Width"), reference.symbol);
+		assertEquals(reference.symbol, ((VariableAssignment) ast.root.body.get(0)).name.symbol);
+		assertEquals(SymbolTable.WIDTH, declaration.property.symbol);
+	}
+
+	@Test
+	void testNamesDieWithTheirCompilation() {
+		Checker checker = new Checker();
+		Evaluator evaluator = new Evaluator();
+		List<WeakReference<String>> names = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			String source = "Width" + i + " := 10px; .rule" + i + " { width: Width" + i + "; }";
+			AST ast = SourceParser.parse(CharStreams.fromString(source), new SyntaxErrorCollector(new ArrayList<>()));
+			VariableAssignment assignment = (VariableAssignment) ast.root.body.get(0);
+			names.add(new WeakReference<>(assignment.name.name));
+			names.add(new WeakReference<>(((Stylerule) ast.root.body.get(1)).selectors.get(0).toString()));
+			checker.check(ast);
+			assertTrue(ast.getErrors().isEmpty());
+			evaluator.apply(ast);
+			CompactAST.of(ast);
+		}
+		//The checker and evaluator may keep the table of their last compilation until the next one
+		List<WeakReference<String>> earlier = names.subList(0, names.size() - 2);
+		for (int attempt = 0; attempt < 50 && earlier.stream().anyMatch(name -> name.get() != null); attempt++) {
+			System.gc();
+		}
+		assertTrue(earlier.stream().allMatch(name -> name.get() == null));
+	}
+
+	@Test
+	void testScopesShadowAndRestore() {
+		ScopeStack<String> scopes = new ScopeStack<>();
+		scopes.push();
+		scopes.put(3, "outer");
+		scopes.push();
+		assertEquals("outer", scopes.get(3));
+		scopes.put(3, "inner");
+		scopes.put(3, "inner again");
+		scopes.put(1000, "deep");
+		assertEquals("inner again", scopes.get(3));
+		assertEquals(2, scopes.depth());
+		scopes.pop();
+		assertEquals("outer", scopes.get(3));
+		assertNull(scopes.get(1000));
+		assertNull(scopes.get(5000));
+		scopes.pop();
+		assertNull(scopes.get(3));
+	}
+}
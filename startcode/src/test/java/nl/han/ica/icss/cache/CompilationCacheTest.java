@@ -0,0 +1,114 @@
+package nl.han.ica.icss.cache;
+
+import nl.han.ica.icss.CompileOptions;
+import nl.han.ica.icss.CompileResult;
+import nl.han.ica.icss.ICSSCompiler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+class CompilationCacheTest {
+
+	private static final String SOURCE = "Width := 10px;\np { width: Width * 2; }";
+
+	@Test
+	void testMemoryHitsAndMisses() {
+		CompilationCache cache = new CompilationCache(10);
+		ICSSCompiler compiler = new ICSSCompiler(cache);
+
+		CompileResult first = compiler.compile(SOURCE);
+		CompileResult second = compiler.compile(SOURCE);
+		assertEquals(first.getCss(), second.getCss());
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getHits());
+
+		compiler.compile(SOURCE, CompileOptions.defaults().withGenerate(false));
+		assertEquals(2, cache.getMisses());
+	}
+
+	@Test
+	void testLeastRecentlyUsedIsEvicted() {
+		CompilationCache cache = new CompilationCache(2);
+		ICSSCompiler compiler = new ICSSCompiler(cache);
+
+		compiler.compile("p { width: 1px; }");
+		compiler.compile("p { width: 2px; }");
+		compiler.compile("p { width: 1px; }");
+		compiler.compile("p { width: 3px; }");
+		assertEquals(1, cache.getEvictions());
+		assertEquals(2, cache.getMemoryEntries());
+
+		compiler.compile("p { width: 1px; }");
+		assertEquals(2, cache.getHits());
+	}
+
+	@Test
+	void testDiskTierSurvivesRestart(@TempDir Path directory) throws IOException {
+		CompileResult compiled = new ICSSCompiler(new CompilationCache(10, directory, 1 << 20)).compile(SOURCE);
+		CompileResult failed = new ICSSCompiler(new CompilationCache(10, directory, 1 << 20)).compile("p { width: #ffffff; }");
+
+		CompilationCache cache = new CompilationCache(10, directory, 1 << 20);
+		ICSSCompiler compiler = new ICSSCompiler(cache);
+		assertEquals(compiled.getCss(), compiler.compile(SOURCE).getCss());
+		assertEquals(failed.getErrors(), compiler.compile("p { width: #ffffff; }").getErrors());
+		assertEquals(2, cache.getDiskHits());
+		assertEquals(0, cache.getMisses());
+	}
+
+	@Test
+	void testCorruptDiskEntryIsAMiss(@TempDir Path directory) throws IOException {
+		CompileResult compiled = new ICSSCompiler(new CompilationCache(10, directory, 1 << 20)).compile(SOURCE);
+		Path entry;
+		try (Stream<Path> files = Files.list(directory)) {
+			entry = files.filter(file -> file.toString().endsWith(".icsscache")).findFirst().orElseThrow();
+		}
+		byte[] valid = Files.readAllBytes(entry);
+		int format = ByteBuffer.wrap(valid).getInt();
+		byte[][] corruptions = {
+				//An error count far beyond the file size
+				ByteBuffer.allocate(8).putInt(format).putInt(Integer.MAX_VALUE).array(),
+				//No errors and a negative length for the CSS
+				ByteBuffer.allocate(13).putInt(format).putInt(0).put((byte) 1).putInt(-5).array(),
+				Arrays.copyOf(valid, valid.length / 2),
+		};
+		for (byte[] corruption : corruptions) {
+			Files.write(entry, corruption);
+			CompilationCache cache = new CompilationCache(10, directory, 1 << 20);
+			assertEquals(compiled.getCss(), new ICSSCompiler(cache).compile(SOURCE).getCss());
+			assertEquals(1, cache.getMisses());
+			assertArrayEquals(valid, Files.readAllBytes(entry));
+		}
+	}
+
+	@Test
+	void testStaleTemporaryFilesAreDeleted(@TempDir Path directory) throws IOException {
+		Path stale = Files.createFile(directory.resolve("crashed.tmp"));
+		Files.setLastModifiedTime(stale, FileTime.fromMillis(System.currentTimeMillis() - 3_600_000));
+		Path recent = Files.createFile(directory.resolve("writing.tmp"));
+		new ICSSCompiler(new CompilationCache(10, directory, 1 << 20)).compile(SOURCE);
+		assertFalse(Files.exists(stale));
+		assertTrue(Files.exists(recent));
+		try (Stream<Path> files = Files.list(directory)) {
+			assertEquals(1, files.filter(file -> file.toString().endsWith(".tmp")).count());
+		}
+	}
+
+	@Test
+	void testDiskTierStaysBelowMaximumSize(@TempDir Path directory) throws IOException {
+		CompilationCache cache = new CompilationCache(1, directory, 200);
+		ICSSCompiler compiler = new ICSSCompiler(cache);
+		for (int i = 0; i < 20; i++) {
+			compiler.compile("p { width: " + i + "px; }");
+		}
+		assertTrue(cache.getDiskBytes() <= 200);
+		assertTrue(cache.getDiskEvictions() > 0);
+	}
+}
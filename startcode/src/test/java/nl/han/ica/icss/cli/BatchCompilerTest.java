@@ -0,0 +1,74 @@
+package nl.han.ica.icss.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+class BatchCompilerTest {
+
+	void write(Path file, String content) throws IOException {
+		Files.createDirectories(file.getParent());
+		Files.writeString(file, content);
+	}
+
+	@Test
+	void testDirectoryAndGlobDiscovery(@TempDir Path directory) throws IOException {
+		write(directory.resolve("top.icss"), "p { width: 1px; }");
+		write(directory.resolve("themes/dark.icss"), "p { width: 1px; }");
+		write(directory.resolve("themes/notes.txt"), "not a stylesheet");
+		write(directory.resolve("themes/light/base.icss"), "p { width: 1px; }");
+
+		assertEquals(List.of(directory.resolve("themes/dark.icss"), directory.resolve("themes/light/base.icss"),
+				directory.resolve("top.icss")), BatchCompiler.findSources(directory.toString()));
+		assertEquals(List.of(directory.resolve("themes/dark.icss")),
+				BatchCompiler.findSources(directory + "/themes/*.icss"));
+		assertEquals(List.of(directory.resolve("themes/dark.icss"), directory.resolve("themes/light/base.icss")),
+				BatchCompiler.findSources(directory + "/**/*.icss"));
+	}
+
+	@Test
+	void testOutputMirrorsSourceTree(@TempDir Path directory) throws IOException, InterruptedException {
+		Path sources = directory.resolve("src");
+		Path out = directory.resolve("out");
+		write(sources.resolve("a.icss"), "p { width: 1px; }");
+		write(sources.resolve("nested/b.icss"), "a { color: #ffffff; }");
+
+		int exitCode = BatchCompiler.run(new String[]{sources.toString(), "--out", out.toString(), "--threads", "2"},
+				new PrintStream(new ByteArrayOutputStream()));
+		assertEquals(0, exitCode);
+		assertEquals("p{\n  width: 1px;\n}\n", Files.readString(out.resolve("a.css")));
+		assertEquals("a{\n  color: #ffffff;\n}\n", Files.readString(out.resolve("nested/b.css")));
+		assertFalse(Files.exists(sources.resolve("a.css")));
+
+		//Without --out the CSS goes next to the source
+		assertEquals(0, BatchCompiler.run(new String[]{sources.toString()}, new PrintStream(new ByteArrayOutputStream())));
+		assertTrue(Files.exists(sources.resolve("nested/b.css")));
+	}
+
+	@Test
+	void testFailuresAreReported(@TempDir Path directory) throws IOException, InterruptedException {
+		write(directory.resolve("good.icss"), "p { width: 1px; }");
+		write(directory.resolve("bad.icss"), "p { width: #ffffff; }");
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		int exitCode = BatchCompiler.run(new String[]{directory.toString()}, new PrintStream(output, true, StandardCharsets.UTF_8));
+		String report = output.toString(StandardCharsets.UTF_8);
+
+		assertEquals(1, exitCode);
+		assertTrue(report.contains(directory.resolve("bad.icss") + ": ERROR: Only pixel and percentage expressions are allowed for width"), report);
+		assertFalse(report.contains("good.icss"), report);
+		assertTrue(report.contains("Compiled 2 files (1 failed)"), report);
+		assertTrue(Files.exists(directory.resolve("good.css")));
+		assertFalse(Files.exists(directory.resolve("bad.css")));
+
+		assertEquals(2, BatchCompiler.run(new String[]{}, new PrintStream(output)));
+	}
+}
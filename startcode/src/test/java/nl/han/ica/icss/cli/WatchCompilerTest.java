@@ -0,0 +1,121 @@
+package nl.han.ica.icss.cli;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+class WatchCompilerTest {
+
+	private static final long TIMEOUT_MILLIS = 10_000;
+
+	private final ByteArrayOutputStream log = new ByteArrayOutputStream();
+	private Thread thread;
+
+	WatchCompiler start(Path directory, long debounceMillis) {
+		WatchCompiler watcher = new WatchCompiler(directory, null, debounceMillis,
+				new PrintStream(log, true, StandardCharsets.UTF_8));
+		thread = new Thread(() -> {
+			try {
+				watcher.run();
+			} catch (IOException | InterruptedException e) {
+				//Stopped by the test
+			}
+		});
+		thread.start();
+		waitFor(() -> log().contains("Watching"));
+		return watcher;
+	}
+
+	@AfterEach
+	void stop() throws InterruptedException {
+		if (thread != null) {
+			thread.interrupt();
+			thread.join(TIMEOUT_MILLIS);
+		}
+	}
+
+	String log() {
+		return log.toString(StandardCharsets.UTF_8);
+	}
+
+	void waitFor(BooleanSupplier condition) {
+		long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		while (!condition.getAsBoolean()) {
+			assertTrue(System.currentTimeMillis() < deadline, "Timed out, log:\n" + log());
+			try {
+				Thread.sleep(20);
+			} catch (InterruptedException e) {
+				fail(e);
+			}
+		}
+	}
+
+	String read(Path file) {
+		try {
+			return Files.exists(file) ? Files.readString(file) : null;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	@Test
+	void testChangedVariableRecompilesDependents(@TempDir Path directory) throws IOException {
+		Path source = directory.resolve("style.icss");
+		Path css = directory.resolve("style.css");
+		Files.writeString(source, "W := 1px;\np { width: W; }\na { height: 2px; }");
+		start(directory, 50);
+		assertEquals("p{\n  width: 1px;\n}\na{\n  height: 2px;\n}\n", read(css));
+
+		Files.writeString(source, "W := 5px;\np { width: W; }\na { height: 2px; }");
+		waitFor(() -> "p{\n  width: 5px;\n}\na{\n  height: 2px;\n}\n".equals(read(css)));
+		waitFor(() -> log().contains("(2 of 3 statements recompiled)"));
+	}
+
+	@Test
+	void testBurstOfSavesCompilesOnce(@TempDir Path directory) throws IOException, InterruptedException {
+		Path source = directory.resolve("style.icss");
+		Files.writeString(source, "p { width: 0px; }");
+		WatchCompiler watcher = start(directory, 500);
+		long compilations = watcher.getCompilations();
+
+		for (int i = 1; i <= 5; i++) {
+			Files.writeString(source, "p { width: " + i + "px; }");
+			Thread.sleep(20);
+		}
+		waitFor(() -> "p{\n  width: 5px;\n}\n".equals(read(directory.resolve("style.css"))));
+		Thread.sleep(700);
+		assertEquals(compilations + 1, watcher.getCompilations());
+	}
+
+	@Test
+	void testSurvivesDirectoriesThatVanish(@TempDir Path directory) throws IOException {
+		Path source = directory.resolve("style.icss");
+		Files.writeString(source, "p { width: 1px; }");
+		start(directory, 50);
+
+		for (int i = 0; i < 50; i++) {
+			Path temporary = directory.resolve("tmp" + i);
+			Files.createDirectories(temporary.resolve("nested/deeper"));
+			Files.writeString(temporary.resolve("nested/a.icss"), "p { width: 1px; }");
+			try (Stream<Path> files = Files.walk(temporary)) {
+				for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+					Files.delete(file);
+				}
+			}
+		}
+		Files.writeString(source, "p { width: 9px; }");
+		waitFor(() -> "p{\n  width: 9px;\n}\n".equals(read(directory.resolve("style.css"))));
+		assertTrue(thread.isAlive());
+	}
+}
@@ -0,0 +1,52 @@
+package nl.han.ica.icss.generator;
+
+import nl.han.ica.icss.CompileOptions;
+import nl.han.ica.icss.ICSSCompiler;
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.Declaration;
+import nl.han.ica.icss.ast.Stylerule;
+import nl.han.ica.icss.ast.Stylesheet;
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+import nl.han.ica.icss.tools.StylesheetGenerator;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+class GeneratorTest {
+
+	@Test
+	void testAllSinksWriteTheSameCss() throws IOException {
+		String source = StylesheetGenerator.defaults().withRules(500).generate();
+		AST ast = new ICSSCompiler().compile(source, CompileOptions.defaults().withGenerate(false)).getAST();
+		Generator generator = new Generator();
+		String css = generator.generate(ast);
+
+		StringBuilder appended = new StringBuilder();
+		generator.generate(ast, appended);
+		assertEquals(css, appended.toString());
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		generator.generate(ast, bytes);
+		assertEquals(css, bytes.toString(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void testOutputStreamIsUtf8() throws IOException {
+		Stylerule rule = new Stylerule();
+		rule.addChild(new TagSelector("café-😀"));
+		Declaration declaration = new Declaration("width");
+		declaration.addChild(new PixelLiteral(10));
+		rule.addChild(declaration);
+		Stylesheet sheet = new Stylesheet();
+		sheet.addChild(rule);
+		AST ast = new AST(sheet);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new Generator().generate(ast, bytes);
+		assertEquals(new Generator().generate(ast), bytes.toString(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,111 @@
+package nl.han.ica.icss.jfr;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import nl.han.ica.icss.ICSSCompiler;
+import nl.han.ica.icss.ast.CompactAST;
+import nl.han.ica.icss.generator.Generator;
+import nl.han.ica.icss.parser.FastLexer;
+import nl.han.ica.icss.parser.RecursiveDescentParser;
+import nl.han.ica.icss.transforms.Evaluator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+class CompilePhaseEventTest {
+
+	private static final String[] PHASES = {"Lex", "Parse", "AstBuild", "Check", "Transform", "Generate"};
+
+	List<RecordedEvent> record(Path directory, Runnable compilations) throws IOException {
+		Path file = directory.resolve("compile.jfr");
+		try (Recording recording = new Recording()) {
+			for (String phase : PHASES) {
+				recording.enable("nl.han.ica.icss." + phase);
+			}
+			recording.start();
+			compilations.run();
+			recording.stop();
+			recording.dump(file);
+		}
+		String thread = Thread.currentThread().getName();
+		return RecordingFile.readAllEvents(file).stream()
+				.filter(event -> event.getThread() != null && thread.equals(event.getThread().getJavaName()))
+				.collect(Collectors.toList());
+	}
+
+	List<RecordedEvent> ofPhase(List<RecordedEvent> events, String phase) {
+		List<RecordedEvent> found = new ArrayList<>();
+		for (RecordedEvent event : events) {
+			if (event.getEventType().getName().equals("nl.han.ica.icss." + phase)) {
+				found.add(event);
+			}
+		}
+		return found;
+	}
+
+	@Test
+	void testEveryPhaseFiresOncePerCompilation(@TempDir Path directory) throws IOException {
+		ICSSCompiler compiler = new ICSSCompiler();
+		List<RecordedEvent> events = record(directory, () -> {
+			assertTrue(compiler.compile("W := 1px;\np { width: W + 2px; }").isSuccess());
+			assertTrue(compiler.compile("a { height: 3px; }").isSuccess());
+		});
+
+		for (String phase : PHASES) {
+			List<RecordedEvent> phaseEvents = ofPhase(events, phase);
+			assertEquals(2, phaseEvents.size(), phase);
+			for (RecordedEvent event : phaseEvents) {
+				assertTrue(event.getLong("inputSize") > 0, phase);
+				assertEquals(0, event.getInt("errorCount"), phase);
+				//The parse event measures the parse tree, which has no AST nodes yet
+				if (!phase.equals("Lex") && !phase.equals("Parse")) {
+					assertTrue(event.getLong("nodeCount") > 0, phase);
+				}
+			}
+		}
+		//Stylesheet, assignment with name and value, stylerule, selector, declaration, property, add with two operands
+		assertEquals(11, ofPhase(events, "AstBuild").get(0).getLong("nodeCount"));
+		assertEquals(11, ofPhase(events, "Check").get(0).getLong("inputSize"));
+		assertEquals("p{\n  width: 3px;\n}\n".length(), ofPhase(events, "Generate").get(0).getLong("outputSize"));
+	}
+
+	@Test
+	void testCompactGenerateFires(@TempDir Path directory) throws IOException {
+		List<RecordedEvent> events = record(directory, () -> {
+			FastLexer lexer = new FastLexer("p { width: 1px + 2px; }".toCharArray());
+			lexer.tokenize(null);
+			CompactAST ast = new Evaluator().evaluate(RecursiveDescentParser.parseCompact(lexer));
+			assertEquals("p{\n  width: 3px;\n}\n", new Generator().generate(ast));
+		});
+
+		List<RecordedEvent> generate = ofPhase(events, "Generate");
+		assertEquals(1, generate.size());
+		assertTrue(generate.get(0).getLong("nodeCount") > 0);
+		assertEquals("p{\n  width: 3px;\n}\n".length(), generate.get(0).getLong("outputSize"));
+	}
+
+	@Test
+	void testErrorsAreCounted(@TempDir Path directory) throws IOException {
+		List<RecordedEvent> events = record(directory, () -> {
+			assertFalse(new ICSSCompiler().compile("p { width: #ffffff; }").isSuccess());
+			assertFalse(new ICSSCompiler().compile("p { width: 1px; ").isSuccess());
+		});
+
+		List<RecordedEvent> check = ofPhase(events, "Check");
+		assertEquals(1, check.size());
+		assertEquals(1, check.get(0).getInt("errorCount"));
+		List<RecordedEvent> parse = ofPhase(events, "Parse");
+		assertEquals(2, parse.size());
+		assertEquals(0, parse.get(0).getInt("errorCount"));
+		assertEquals(1, parse.get(1).getInt("errorCount"));
+		assertTrue(ofPhase(events, "Transform").isEmpty());
+		assertTrue(ofPhase(events, "Generate").isEmpty());
+	}
+}
@@ -0,0 +1,41 @@
+package nl.han.ica.icss.metrics;
+
+import nl.han.ica.icss.Pipeline;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsRegistryTest {
+
+	@Test
+	void testPercentilesAreWithinBucketPrecision() {
+		Histogram histogram = new Histogram();
+		for (long i = 1; i <= 1000; i++) {
+			histogram.record(i * 1000);
+		}
+		assertEquals(1000, histogram.getCount());
+		assertEquals(1_000_000, histogram.getMax());
+		assertEquals(500_000, histogram.getPercentile(0.50), 500_000 * 0.13);
+		assertEquals(990_000, histogram.getPercentile(0.99), 990_000 * 0.13);
+		assertEquals(0, new Histogram().getPercentile(0.5));
+	}
+
+	@Test
+	void testPipelineRecordsEveryPhase() {
+		MetricsRegistry metrics = new MetricsRegistry();
+		Pipeline pipeline = new Pipeline(metrics);
+		pipeline.parseString("Width := 10px; p { width: Width + 2px; }");
+		assertTrue(pipeline.check());
+		pipeline.transform();
+		pipeline.generate();
+
+		for (String phase : new String[]{"parse", "check", "transform", "generate"}) {
+			assertEquals(1, metrics.getCounter(phase + ".runs"), phase);
+			assertEquals(1, metrics.histogram(phase + ".wall").getCount(), phase);
+		}
+		//Stylesheet, assignment with name and value, stylerule, selector, declaration, property, add with two operands
+		assertEquals(11, metrics.getCounter("parse.nodes"));
+		//Counted once after parsing, not again after the transform removed nodes
+		assertEquals(11, metrics.getCounter("generate.nodes"));
+		assertTrue(metrics.getHistogramSummaries().containsKey("check.wall.p99"));
+	}
+}
@@ -0,0 +1,121 @@
+package nl.han.ica.icss.parser;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import nl.han.ica.icss.tools.StylesheetGenerator;
+import org.antlr.v4.runtime.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+class FastLexerTest {
+
+	static class ErrorRecorder extends BaseErrorListener {
+		final List<String> errors = new ArrayList<>();
+
+		@Override
+		public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+								int charPositionInLine, String msg, RecognitionException e) {
+			errors.add(line + ":" + charPositionInLine + " " + msg);
+		}
+	}
+
+	String readResource(String resource) throws IOException {
+		try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream(resource)) {
+			return CharStreams.fromStream(inputStream).toString();
+		}
+	}
+
+	static String describe(int type, int start, int stop, int line, int column, String text) {
+		return type + " " + start + "-" + stop + " " + line + ":" + column + " " + text;
+	}
+
+	void assertSameAsAntlr(String source) {
+		assertSameAsAntlr(source, new FastLexer(source.toCharArray()));
+		assertSameAsAntlr(source, new FastLexer(CharStreams.fromString(source)));
+	}
+
+	void assertSameAsAntlr(String source, FastLexer lexer) {
+		ErrorRecorder antlrErrors = new ErrorRecorder();
+		ICSSLexer reference = new ICSSLexer(CharStreams.fromString(source));
+		reference.removeErrorListeners();
+		reference.addErrorListener(antlrErrors);
+		List<String> expected = new ArrayList<>();
+		for (Token token = reference.nextToken(); ; token = reference.nextToken()) {
+			expected.add(describe(token.getType(), token.getStartIndex(), token.getStopIndex(), token.getLine(),
+					token.getCharPositionInLine(), token.getText()));
+			if (token.getType() == Token.EOF) {
+				break;
+			}
+		}
+
+		ErrorRecorder fastErrors = new ErrorRecorder();
+		int count = lexer.tokenize(fastErrors);
+		List<String> actual = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			actual.add(describe(lexer.getType(i), lexer.getStartIndex(i), lexer.getStopIndex(i), lexer.getLine(i),
+					lexer.getCharPositionInLine(i), lexer.getText(i)));
+		}
+
+		assertEquals(expected, actual, source);
+		assertEquals(antlrErrors.errors, fastErrors.errors, source);
+		assertEquals(antlrErrors.errors.size(), lexer.getErrorCount());
+	}
+
+	@Test
+	void testSameTokensAsAntlr() throws IOException {
+		for (String level : new String[]{"level0.icss", "level1.icss", "level2.icss", "level3.icss"}) {
+			assertSameAsAntlr(readResource(level));
+		}
+		assertSameAsAntlr(StylesheetGenerator.defaults().withRules(50).generate());
+		assertSameAsAntlr("");
+		assertSameAsAntlr("if iffy else elsewhere TRUE TRUEX FALSE_ #abcdef #abcdefa #abcde #abcdeg .a-1 10px 10p 10pxa 5% 7 := : -");
+	}
+
+	@Test
+	void testSameErrorsAsAntlr() {
+		assertSameAsAntlr("p { width: 10px; } @ ~");
+		assertSameAsAntlr("# . #\n.\t#\r# A");
+		assertSameAsAntlr("p { color: #ABCDEF; }");
+		assertSameAsAntlr("aéb x #");
+		//A stream counts code points like ANTLR, where a char[] has two chars for these
+		assertSameAsAntlr("p { 😀 width: 10px; } #😀", new FastLexer(CharStreams.fromString("p { 😀 width: 10px; } #😀")));
+	}
+
+	@Test
+	void testRandomInputMatchesAntlr() {
+		String alphabet = "aipx%#.-:=;{}[]+*AEFRTU_019 \t\r\n@é";
+		Random random = new Random(42);
+		for (int i = 0; i < 2000; i++) {
+			StringBuilder source = new StringBuilder();
+			int length = random.nextInt(40);
+			for (int j = 0; j < length; j++) {
+				source.append(alphabet.charAt(random.nextInt(alphabet.length())));
+			}
+			assertSameAsAntlr(source.toString());
+		}
+	}
+
+	@Test
+	void testTokenSourceFeedsTheParser() throws IOException {
+		String source = readResource("level3.icss");
+		List<String> errors = new ArrayList<>();
+		assertEquals(Fixtures.uncheckedLevel3(), SourceParser.parse(CharStreams.fromString(source),
+				new SyntaxErrorCollector(errors), ParseMode.SLL_THEN_LL, LexerBackend.FAST));
+		assertEquals(List.of(), errors);
+
+		//Also outside the BMP, where the fast lexer reads code points from the stream like ANTLR does
+		for (String broken : new String[]{"p { width: 10px }\n@ a { color: ; }", "p { 😀 width: 10px; }"}) {
+			List<String> expected = new ArrayList<>();
+			List<String> actual = new ArrayList<>();
+			SourceParser.parse(CharStreams.fromString(broken), new SyntaxErrorCollector(expected), ParseMode.LL, LexerBackend.ANTLR);
+			SourceParser.parse(CharStreams.fromString(broken), new SyntaxErrorCollector(actual), ParseMode.LL, LexerBackend.FAST);
+			assertFalse(expected.isEmpty());
+			assertEquals(expected, actual);
+		}
+	}
+}
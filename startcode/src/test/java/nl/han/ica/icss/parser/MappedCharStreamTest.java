@@ -0,0 +1,69 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.icss.CompileOptions;
+import nl.han.ica.icss.CompileResult;
+import nl.han.ica.icss.ICSSCompiler;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+class MappedCharStreamTest {
+
+	@Test
+	void testBehavesLikeStringStream(@TempDir Path directory) throws IOException {
+		String source = "p {\n\twidth: 10px;\n}";
+		Path file = Files.writeString(directory.resolve("a.icss"), source);
+		CharStream mapped = MappedCharStream.fromPath(file);
+		CharStream string = CharStreams.fromString(source);
+		assertTrue(mapped instanceof MappedCharStream);
+
+		assertEquals(string.size(), mapped.size());
+		assertEquals(source, mapped.getText(Interval.of(0, source.length() + 5)));
+		while (string.LA(1) != IntStream.EOF) {
+			assertEquals(string.LA(1), mapped.LA(1));
+			assertEquals(string.LA(-1), mapped.LA(-1));
+			string.consume();
+			mapped.consume();
+		}
+		assertEquals(IntStream.EOF, mapped.LA(1));
+		mapped.seek(4);
+		assertEquals("\twidth", mapped.getText(Interval.of(mapped.index(), 9)));
+	}
+
+	@Test
+	void testCompileFileMatchesCompileString(@TempDir Path directory) throws IOException {
+		String source;
+		try (InputStream in = getClass().getClassLoader().getResourceAsStream("level3.icss")) {
+			source = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+		Path file = Files.writeString(directory.resolve("level3.icss"), source);
+		ICSSCompiler compiler = new ICSSCompiler();
+		CompileResult fromFile = compiler.compile(file);
+		assertTrue(fromFile.isSuccess(), fromFile.getErrors().toString());
+		assertEquals(compiler.compile(source).getCss(), fromFile.getCss());
+
+		//The fast lexer scans the mapping in place
+		for (ParserBackend backend : new ParserBackend[]{ParserBackend.ANTLR, ParserBackend.RECURSIVE_DESCENT}) {
+			CompileOptions options = CompileOptions.defaults().withLexerBackend(LexerBackend.FAST).withParserBackend(backend);
+			assertEquals(fromFile.getCss(), compiler.compile(file, options).getCss(), backend.name());
+		}
+	}
+
+	@Test
+	void testNonAsciiFileIsDecoded(@TempDir Path directory) throws IOException {
+		String source = "p { width: 10px; } é";
+		Path file = Files.writeString(directory.resolve("b.icss"), source);
+		assertFalse(MappedCharStream.fromPath(file) instanceof MappedCharStream);
+		assertEquals(new ICSSCompiler().compile(source).getErrors(), new ICSSCompiler().compile(file).getErrors());
+	}
+}
@@ -0,0 +1,95 @@
+package nl.han.ica.icss.parser;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.tools.StylesheetGenerator;
+import org.antlr.v4.runtime.CharStreams;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+class RecursiveDescentParserTest {
+
+	AST parseDirect(String source) {
+		FastLexer lexer = new FastLexer(source.toCharArray());
+		lexer.tokenize(null);
+		return RecursiveDescentParser.parse(lexer);
+	}
+
+	void assertSameAsAntlr(String source) {
+		List<String> errors = new ArrayList<>();
+		AST expected = SourceParser.parse(CharStreams.fromString(source), new SyntaxErrorCollector(errors), ParseMode.LL);
+		AST actual = parseDirect(source);
+		if (errors.isEmpty()) {
+			assertEquals(expected, actual, source);
+		} else {
+			assertNull(actual, source);
+		}
+	}
+
+	String readResource(String resource) throws IOException {
+		try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream(resource)) {
+			return CharStreams.fromStream(inputStream).toString();
+		}
+	}
+
+	@Test
+	void testParseLevels() throws IOException {
+		assertEquals(Fixtures.uncheckedLevel0(), parseDirect(readResource("level0.icss")));
+		assertEquals(Fixtures.uncheckedLevel1(), parseDirect(readResource("level1.icss")));
+		assertEquals(Fixtures.uncheckedLevel2(), parseDirect(readResource("level2.icss")));
+		assertEquals(Fixtures.uncheckedLevel3(), parseDirect(readResource("level3.icss")));
+	}
+
+	@Test
+	void testSameASTAsAntlr() {
+		assertSameAsAntlr("p { width: 1px + 2px * 3 - 4px - 5px * 6 * 7; }");
+		assertSameAsAntlr("$A := 1 - 2 + 3; p { if [TRUE] { if [$B] { color: #aabbcc; } else { width: 1%; } } }");
+		for (long seed = 1; seed <= 5; seed++) {
+			assertSameAsAntlr(StylesheetGenerator.defaults().withSeed(seed).withRules(40).withIfDepth(4)
+					.withExpressionLength(6).generate());
+		}
+	}
+
+	@Test
+	void testGivesUpOnErrors() {
+		assertNull(parseDirect(""));
+		assertNull(parseDirect("p { width: 10px }"));
+		assertNull(parseDirect("p { width: @; }"));
+		assertNull(parseDirect("p { } }"));
+	}
+
+	@Test
+	void testRandomTokensMatchAntlr() {
+		String[] words = {"p", "#id", ".c", "$X", "X", ":=", ":", ";", "{", "}", "[", "]", "if", "else",
+				"TRUE", "1", "2px", "3%", "#aabbcc", "+", "-", "*"};
+		Random random = new Random(7);
+		for (int i = 0; i < 3000; i++) {
+			StringBuilder source = new StringBuilder();
+			int length = random.nextInt(25);
+			for (int j = 0; j < length; j++) {
+				source.append(words[random.nextInt(words.length)]).append(' ');
+			}
+			assertSameAsAntlr(source.toString());
+		}
+	}
+
+	@Test
+	void testFallbackReportsAntlrErrors() {
+		String source = "p { width: 10px }\na { color: ; }";
+		List<String> expected = new ArrayList<>();
+		List<String> actual = new ArrayList<>();
+		SourceParser.parse(CharStreams.fromString(source), new SyntaxErrorCollector(expected), ParseMode.SLL_THEN_LL,
+				LexerBackend.ANTLR, ParserBackend.ANTLR);
+		AST ast = SourceParser.parse(CharStreams.fromString(source), new SyntaxErrorCollector(actual), ParseMode.SLL_THEN_LL,
+				LexerBackend.ANTLR, ParserBackend.RECURSIVE_DESCENT);
+		assertFalse(expected.isEmpty());
+		assertEquals(expected, actual);
+		assertEquals(new AST(), ast);
+	}
+}
@@ -0,0 +1,188 @@
+package nl.han.ica.icss.parser;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.tools.StylesheetGenerator;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+class SourceParserTest {
+
+	AST parseTestFile(String resource, ParseMode mode) throws IOException {
+		try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream(resource)) {
+			List<String> errors = new ArrayList<>();
+			AST ast = SourceParser.parse(CharStreams.fromStream(inputStream), new SyntaxErrorCollector(errors), mode);
+			assertEquals(List.of(), errors);
+			return ast;
+		}
+	}
+
+	String readResource(String resource) throws IOException {
+		try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream(resource)) {
+			return CharStreams.fromStream(inputStream).toString();
+		}
+	}
+
+	List<String> syntaxErrors(String source, ParseMode mode) {
+		List<String> errors = new ArrayList<>();
+		AST ast = SourceParser.parse(CharStreams.fromString(source), new SyntaxErrorCollector(errors), mode);
+		assertEquals(new AST(), ast);
+		return errors;
+	}
+
+	@Test
+	void testBothModesBuildTheSameAST() throws IOException {
+		assertEquals(Fixtures.uncheckedLevel0(), parseTestFile("level0.icss", ParseMode.SLL_THEN_LL));
+		assertEquals(Fixtures.uncheckedLevel1(), parseTestFile("level1.icss", ParseMode.SLL_THEN_LL));
+		assertEquals(Fixtures.uncheckedLevel2(), parseTestFile("level2.icss", ParseMode.SLL_THEN_LL));
+		assertEquals(Fixtures.uncheckedLevel3(), parseTestFile("level3.icss", ParseMode.SLL_THEN_LL));
+		assertEquals(parseTestFile("level3.icss", ParseMode.LL), parseTestFile("level3.icss", ParseMode.SLL_THEN_LL));
+	}
+
+	@Test
+	void testFallbackReportsTheSameErrors() {
+		String source = "p { width: 10px }\na { color: ; }\n#id { height 5px; }";
+		List<String> errors = syntaxErrors(source, ParseMode.SLL_THEN_LL);
+		assertFalse(errors.isEmpty());
+		assertEquals(syntaxErrors(source, ParseMode.LL), errors);
+	}
+
+	@Test
+	void testReusedParserRecoversAfterErrors() throws IOException {
+		for (int i = 0; i < 3; i++) {
+			assertFalse(syntaxErrors("p { width: }", ParseMode.LL).isEmpty());
+			assertFalse(syntaxErrors("p { width: }", ParseMode.SLL_THEN_LL).isEmpty());
+			assertEquals(Fixtures.uncheckedLevel2(), parseTestFile("level2.icss", ParseMode.LL));
+			assertEquals(Fixtures.uncheckedLevel2(), parseTestFile("level2.icss", ParseMode.SLL_THEN_LL));
+		}
+	}
+
+	@Test
+	void testWarmUpFillsTheDfaCache() {
+		int before = SourceParser.getDfaStateCount();
+		int after = SourceParser.warmUp(List.of("$X := 10px; p { width: $X + 2 * 5px; if [TRUE] { color: #ffffff; } else { height: 1px; } }"));
+		assertTrue(after > 0);
+		assertTrue(after >= before);
+		assertEquals(after, SourceParser.warmUp(List.of("$X := 10px; p { width: $X + 2 * 5px; if [TRUE] { color: #ffffff; } else { height: 1px; } }")));
+	}
+
+	@Test
+	void testStreamingBuildsTheSameAST() throws IOException {
+		assertEquals(Fixtures.uncheckedLevel3(), SourceParser.parse(CharStreams.fromString(readResource("level3.icss")),
+				new SyntaxErrorCollector(new ArrayList<>()), ParseMode.LL, LexerBackend.ANTLR, ParserBackend.ANTLR_STREAMING));
+		String source = StylesheetGenerator.defaults().withRules(100).withIfDepth(3).withExpressionLength(5).generate();
+		List<String> errors = new ArrayList<>();
+		assertEquals(SourceParser.parse(CharStreams.fromString(source), new SyntaxErrorCollector(errors)),
+				SourceParser.parse(new StringReader(source), new SyntaxErrorCollector(errors)));
+		assertEquals(List.of(), errors);
+	}
+
+	@Test
+	void testStreamingReportsTheSameErrors() {
+		String[] words = {"p", "#id", ".c", "X", ":=", ":", ";", "{", "}", "[", "]", "if", "else",
+				"TRUE", "1", "2px", "3%", "#aabbcc", "+", "-", "*", "@", "#"};
+		Random random = new Random(3);
+		for (int i = 0; i < 2000; i++) {
+			StringBuilder source = new StringBuilder();
+			int length = random.nextInt(25);
+			for (int j = 0; j < length; j++) {
+				source.append(words[random.nextInt(words.length)]).append(random.nextBoolean() ? " " : "");
+			}
+			List<String> expected = new ArrayList<>();
+			List<String> actual = new ArrayList<>();
+			AST expectedAST = SourceParser.parse(CharStreams.fromString(source.toString()), new SyntaxErrorCollector(expected), ParseMode.LL);
+			AST actualAST = SourceParser.parse(new StringReader(source.toString()), new SyntaxErrorCollector(actual));
+			//Lexer errors are met while parsing, so only the order can differ
+			Collections.sort(expected);
+			Collections.sort(actual);
+			assertEquals(expected, actual, source.toString());
+			assertEquals(expectedAST, actualAST, source.toString());
+		}
+	}
+
+	@Test
+	void testDeepParsesShareFewThreads() throws Exception {
+		String source = "p { " + "if [TRUE] { ".repeat(1000) + "width: 1px; " + "} ".repeat(1000) + "}";
+		AST expected = SourceParser.parse(CharStreams.fromString(source), new SyntaxErrorCollector(new ArrayList<>()));
+		ExecutorService callers = Executors.newFixedThreadPool(SourceParser.DEEP_PARSER_THREADS * 4);
+		try {
+			List<Future<AST>> results = new ArrayList<>();
+			for (int i = 0; i < SourceParser.DEEP_PARSER_THREADS * 4; i++) {
+				results.add(callers.submit(() -> SourceParser.parse(CharStreams.fromString(source),
+						new SyntaxErrorCollector(new ArrayList<>()))));
+			}
+			for (Future<AST> result : results) {
+				assertEquals(expected, result.get());
+			}
+		} finally {
+			callers.shutdown();
+		}
+		long deepParsers = Thread.getAllStackTraces().keySet().stream()
+				.filter(thread -> thread.getName().equals("icss-deep-parser")).count();
+		assertTrue(deepParsers <= SourceParser.DEEP_PARSER_THREADS, deepParsers + " threads");
+	}
+
+	@Test
+	void testStreamingMovesToALargeStackOnlyWhenDeep() {
+		List<String> threads = new ArrayList<>();
+		BaseErrorListener whereReported = new BaseErrorListener() {
+			@Override
+			public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+									int charPositionInLine, String msg, RecognitionException e) {
+				threads.add(Thread.currentThread().getName());
+			}
+		};
+		SourceParser.parse(new StringReader("p { width: }"), whereReported);
+		assertEquals(List.of(Thread.currentThread().getName()), threads);
+
+		//Errors before, within and after the deep statement, which is parsed again on the large stack
+		String source = "A := 1px; p { width: ; } #id { color: @ ; " + "if [TRUE] { ".repeat(1000) + "width: A; "
+				+ "} ".repeat(1000) + "} .c { height: }";
+		List<String> expected = new ArrayList<>();
+		List<String> actual = new ArrayList<>();
+		SourceParser.parse(CharStreams.fromString(source), new SyntaxErrorCollector(expected), ParseMode.LL);
+		SourceParser.parse(new StringReader(source), new SyntaxErrorCollector(actual));
+		Collections.sort(expected);
+		Collections.sort(actual);
+		assertEquals(4, expected.size());
+		assertEquals(expected, actual);
+		threads.clear();
+		SourceParser.parse(new StringReader(source), whereReported);
+		assertEquals("icss-deep-parser", threads.get(threads.size() - 1));
+
+		String valid = "A := 1px; p { width: A; } #id { " + "if [TRUE] { ".repeat(1000) + "width: A; "
+				+ "} ".repeat(1000) + "} .c { height: 2px; }";
+		assertEquals(SourceParser.parse(CharStreams.fromString(valid), new SyntaxErrorCollector(expected)),
+				SourceParser.parse(new StringReader(valid), new SyntaxErrorCollector(actual)));
+		assertEquals(8, expected.size() + actual.size());
+	}
+
+	@Test
+	void testThreadsPerParseReuseThePooledParsers() throws Exception {
+		SourceParser.parse(CharStreams.fromString("p { width: 1px; }"), new SyntaxErrorCollector(new ArrayList<>()));
+		int idle = SourceParser.idleParsers();
+		for (int i = 0; i < 20; i++) {
+			//Like a server that starts a thread per request
+			Thread thread = new Thread(() -> SourceParser.parse(CharStreams.fromString("p { width: 1px; }"),
+					new SyntaxErrorCollector(new ArrayList<>())));
+			thread.start();
+			thread.join();
+		}
+		assertEquals(idle, SourceParser.idleParsers());
+	}
+}
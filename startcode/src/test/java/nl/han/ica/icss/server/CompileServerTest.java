@@ -0,0 +1,92 @@
+package nl.han.ica.icss.server;
+
+import nl.han.ica.icss.metrics.MetricsRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+
+class CompileServerTest {
+
+	private CompileServer server;
+	private final HttpClient client = HttpClient.newHttpClient();
+
+	@BeforeEach
+	void start() throws IOException {
+		server = new CompileServer(new InetSocketAddress("localhost", 0), null, new MetricsRegistry(), 100, 1024);
+		server.start();
+	}
+
+	@AfterEach
+	void stop() {
+		server.stop(0);
+	}
+
+	HttpResponse<String> post(String path, String body) throws IOException, InterruptedException {
+		HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path))
+				.POST(HttpRequest.BodyPublishers.ofString(body)).build();
+		return client.send(request, HttpResponse.BodyHandlers.ofString());
+	}
+
+	HttpResponse<String> get(String path) throws IOException, InterruptedException {
+		HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path)).build();
+		return client.send(request, HttpResponse.BodyHandlers.ofString());
+	}
+
+	@Test
+	void testCompile() throws IOException, InterruptedException {
+		HttpResponse<String> response = post("/compile", "p { width: 1px; }");
+		assertEquals(200, response.statusCode());
+		assertTrue(response.body().startsWith("{\"success\":true,\"truncated\":false,\"css\":\"p{\\n  width: 1px;\\n}\\n\",\"errors\":[]"),
+				response.body());
+	}
+
+	@Test
+	void testErrors() throws IOException, InterruptedException {
+		HttpResponse<String> response = post("/compile", "p { width: #ffffff; }");
+		assertEquals(422, response.statusCode());
+		assertTrue(response.body().contains("\"css\":null,\"errors\":[\"ERROR: Only pixel and percentage expressions are allowed for width\"]"),
+				response.body());
+
+		assertEquals(405, get("/compile").statusCode());
+	}
+
+	@Test
+	void testGenerateParameter() throws IOException, InterruptedException {
+		assertTrue(post("/compile?generate=false", "p { width: 1px; }").body().contains("\"css\":null"));
+		assertTrue(post("/compile?x=1&generate=0", "p { width: 1px; }").body().contains("\"css\":null"));
+		assertTrue(post("/compile?generate=%31", "p { width: 1px; }").body().contains("\"css\":\"p{"));
+		//Only the key generate counts, not a value or another key that contains it
+		assertTrue(post("/compile?x=generate=false", "p { width: 1px; }").body().contains("\"css\":\"p{"));
+		assertTrue(post("/compile?regenerate=false", "p { width: 1px; }").body().contains("\"css\":\"p{"));
+		assertEquals(400, post("/compile?generate=no", "p { width: 1px; }").statusCode());
+
+		assertEquals(Map.of("a", "1", "b", "", "c d", "e"), CompileServer.parseQuery("a=1&b&&c+d=e"));
+		assertThrows(IllegalArgumentException.class, () -> CompileServer.parseQuery("generate=%zz"));
+	}
+
+	@Test
+	void testRequestTooLarge() throws IOException, InterruptedException {
+		HttpResponse<String> response = post("/compile", "p { width: 1px; }".repeat(100));
+		assertEquals(413, response.statusCode());
+		assertEquals("Request body exceeds 1024 bytes", response.body());
+	}
+
+	@Test
+	void testMetrics() throws IOException, InterruptedException {
+		post("/compile", "p { width: 1px; }");
+		HttpResponse<String> response = get("/metrics");
+		assertEquals(200, response.statusCode());
+		assertTrue(response.body().contains("parse.runs"), response.body());
+		assertTrue(response.body().contains("parser.dfa.states"), response.body());
+		assertEquals("ok", get("/health").body());
+	}
+}
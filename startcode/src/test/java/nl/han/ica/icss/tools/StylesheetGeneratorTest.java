@@ -0,0 +1,31 @@
+package nl.han.ica.icss.tools;
+
+import nl.han.ica.icss.CompileResult;
+import nl.han.ica.icss.ICSSCompiler;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class StylesheetGeneratorTest {
+
+	@Test
+	void testSameSeedGeneratesSameStylesheet() {
+		StylesheetGenerator generator = StylesheetGenerator.defaults().withRules(50);
+		assertEquals(generator.generate(), generator.generate());
+		assertNotEquals(generator.generate(), generator.withSeed(2).generate());
+	}
+
+	@Test
+	void testGeneratedStylesheetsCompile() {
+		StylesheetGenerator[] generators = {
+				StylesheetGenerator.defaults().withRules(200),
+				StylesheetGenerator.defaults().withRules(50).withIfDepth(6).withExpressionLength(10),
+				StylesheetGenerator.defaults().withRules(50).withVariablesPerScope(0).withLiteralMix(0, 1, 0),
+				StylesheetGenerator.defaults().withRules(50).withVariablesPerScope(10).withDeclarationsPerBlock(0)
+		};
+		ICSSCompiler compiler = new ICSSCompiler();
+		for (StylesheetGenerator generator : generators) {
+			CompileResult result = compiler.compile(generator.generate());
+			assertTrue(result.isSuccess(), generator + ": " + result.getErrors());
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package nl.han.ica.icss.transforms;
+
+import nl.han.ica.icss.CompileOptions;
+import nl.han.ica.icss.ICSSCompiler;
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.checker.Checker;
+import nl.han.ica.icss.parser.SourceParser;
+import nl.han.ica.icss.parser.SyntaxErrorCollector;
+import nl.han.ica.icss.tools.StylesheetGenerator;
+import org.antlr.v4.runtime.CharStreams;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+class CheckingEvaluatorTest {
+
+	private static AST parse(String source) {
+		List<String> errors = new ArrayList<>();
+		AST ast = SourceParser.parse(CharStreams.fromString(source), new SyntaxErrorCollector(errors));
+		assertEquals(List.of(), errors);
+		return ast;
+	}
+
+	private static void assertSameAsSeparatePasses(String source) {
+		AST separate = parse(source);
+		new Checker().check(separate);
+		if (separate.getErrors().isEmpty()) {
+			new Evaluator().apply(separate);
+		}
+		AST fused = parse(source);
+		new CheckingEvaluator().apply(fused);
+
+		assertEquals(separate.getErrors().toString(), fused.getErrors().toString(), source);
+		assertEquals(separate.toString(), fused.toString(), source);
+		assertEquals(separate, fused, source);
+	}
+
+	@Test
+	void testBundledExamples() throws IOException {
+		for (String level : new String[]{"level0.icss", "level1.icss", "level2.icss", "level3.icss"}) {
+			try (InputStream in = getClass().getClassLoader().getResourceAsStream(level)) {
+				assertSameAsSeparatePasses(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+			}
+		}
+	}
+
+	@Test
+	void testGeneratedStylesheets() {
+		for (int seed = 1; seed <= 5; seed++) {
+			assertSameAsSeparatePasses(StylesheetGenerator.defaults().withSeed(seed).withRules(100)
+					.withIfDepth(seed).withExpressionLength(seed + 1).generate());
+		}
+	}
+
+	@Test
+	void testSemanticErrors() {
+		assertSameAsSeparatePasses("p { width: #ff0000; color: 10px; height: 5%; border: 1px; }");
+		assertSameAsSeparatePasses("A := 10px; p { width: A + B; height: A * A; color: #ffffff + 2; }");
+		assertSameAsSeparatePasses("p { if [10px] { width: 1px; } else { width: #000000; } }");
+		//Else-clauses are evaluated but never checked
+		assertSameAsSeparatePasses("p { if [FALSE] { width: 1px; } else { width: 1px + 2%; height: 3px; } }");
+		assertSameAsSeparatePasses("A := TRUE; p { width: 1px; if [A] { width: 2px; } height: 3px; } a { width: A; }");
+	}
+
+	@Test
+	void testFusedCompileMatchesRegularCompile() {
+		String source = StylesheetGenerator.defaults().withRules(200).generate();
+		ICSSCompiler compiler = new ICSSCompiler();
+		assertEquals(compiler.compile(source).getCss(),
+				compiler.compile(source, CompileOptions.defaults().withFused(true)).getCss());
+	}
+}